@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.values.AccessPolicyValues;
+
+/**
+ * Insertion of many records of a category with a single transaction,
+ * performed by calling {@link #METHOD} on the records ContentProviders.
+ * <p>
+ * The result of each record is reported in the same position of the
+ * {@link #EXTRA_RESULTS} of the returned {@link Bundle}.
+ *
+ * @see ContentResolver#call(Uri, String, String, Bundle)
+ */
+public final class BulkInsert {
+
+    private BulkInsert() {
+    }
+
+    @NonNull
+    public static final String METHOD = "org.lineageos.mod.health:insert-all";
+
+    /**
+     * Records to be inserted.
+     *
+     * {@link ContentValues} array: the values of each record, including its metric.
+     */
+    @NonNull
+    public static final String EXTRA_VALUES = "org.lineageos.mod.health:insert-all-values";
+
+    /**
+     * Results of the insertion.
+     *
+     * <code>long</code> array: the id of each inserted record,
+     * {@link #RESULT_FAILURE} or {@link #RESULT_DENIED}.
+     */
+    @NonNull
+    public static final String EXTRA_RESULTS = "org.lineageos.mod.health:insert-all-results";
+
+    /**
+     * Result of a record that could not be inserted.
+     */
+    public static final long RESULT_FAILURE = -1L;
+
+    /**
+     * Result of a record whose insertion was blocked by a policy.
+     */
+    public static final long RESULT_DENIED = AccessPolicyValues.DENIED_COUNT;
+}
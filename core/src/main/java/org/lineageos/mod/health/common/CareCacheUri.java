@@ -39,9 +39,18 @@ public final class CareCacheUri {
      * Base {@link Uri} for the Activity ContentProvider.
      *
      * <ul>
-     *     <li><code>/#</code>: all elements of a metric. Can be used for insert and queries</li>
+     *     <li><code>/</code>: all elements of the metrics of the category. Can be used for
+     *         queries and delete</li>
+     *     <li><code>/#</code>: all elements of a metric. Can be used for insert, queries
+     *         and delete</li>
      *     <li><code>/#/#</code>: a specific element of a metric. Can be used for update and delete</li>
+     *     <li><code>/#/aggregate</code>: aggregated values of a metric. Can be used for queries</li>
+     *     <li><code>/#/summary</code>: summary of a metric. Can be used for queries</li>
+     *     <li><code>/#/series</code>: chunks of samples of a metric. Can be used for queries
+     *         and delete</li>
      * </ul>
+     *
+     * @see Param
      */
     @NonNull
     public static final Uri ACTIVITY = Uri.parse(PROTOCOL + Authority.ACTIVITY);
@@ -50,9 +59,18 @@ public final class CareCacheUri {
      * Base {@link Uri} for the Body ContentProvider.
      *
      * <ul>
-     *     <li><code>/#</code>: all elements of a metric. Can be used for insert and queries</li>
+     *     <li><code>/</code>: all elements of the metrics of the category. Can be used for
+     *         queries and delete</li>
+     *     <li><code>/#</code>: all elements of a metric. Can be used for insert, queries
+     *         and delete</li>
      *     <li><code>/#/#</code>: a specific element of a metric. Can be used for update and delete</li>
+     *     <li><code>/#/aggregate</code>: aggregated values of a metric. Can be used for queries</li>
+     *     <li><code>/#/summary</code>: summary of a metric. Can be used for queries</li>
+     *     <li><code>/#/series</code>: chunks of samples of a metric. Can be used for queries
+     *         and delete</li>
      * </ul>
+     *
+     * @see Param
      */
     @NonNull
     public static final Uri BODY = Uri.parse(PROTOCOL + Authority.BODY);
@@ -61,9 +79,18 @@ public final class CareCacheUri {
      * Base {@link Uri} for the Breathing ContentProvider.
      *
      * <ul>
-     *     <li><code>/#</code>: all elements of a metric. Can be used for insert and queries</li>
+     *     <li><code>/</code>: all elements of the metrics of the category. Can be used for
+     *         queries and delete</li>
+     *     <li><code>/#</code>: all elements of a metric. Can be used for insert, queries
+     *         and delete</li>
      *     <li><code>/#/#</code>: a specific element of a metric. Can be used for update and delete</li>
+     *     <li><code>/#/aggregate</code>: aggregated values of a metric. Can be used for queries</li>
+     *     <li><code>/#/summary</code>: summary of a metric. Can be used for queries</li>
+     *     <li><code>/#/series</code>: chunks of samples of a metric. Can be used for queries
+     *         and delete</li>
      * </ul>
+     *
+     * @see Param
      */
     @NonNull
     public static final Uri BREATHING = Uri.parse(PROTOCOL + Authority.BREATHING);
@@ -72,9 +99,18 @@ public final class CareCacheUri {
      * Base {@link Uri} for the Heart &amp; Blood ContentProvider.
      *
      * <ul>
-     *     <li><code>/#</code>: all elements of a metric. Can be used for insert and queries</li>
+     *     <li><code>/</code>: all elements of the metrics of the category. Can be used for
+     *         queries and delete</li>
+     *     <li><code>/#</code>: all elements of a metric. Can be used for insert, queries
+     *         and delete</li>
      *     <li><code>/#/#</code>: a specific element of a metric. Can be used for update and delete</li>
+     *     <li><code>/#/aggregate</code>: aggregated values of a metric. Can be used for queries</li>
+     *     <li><code>/#/summary</code>: summary of a metric. Can be used for queries</li>
+     *     <li><code>/#/series</code>: chunks of samples of a metric. Can be used for queries
+     *         and delete</li>
      * </ul>
+     *
+     * @see Param
      */
     @NonNull
     public static final Uri HEART_BLOOD = Uri.parse(PROTOCOL + Authority.HEART_BLOOD);
@@ -83,9 +119,18 @@ public final class CareCacheUri {
      * Base {@link Uri} for the Mindfulness ContentProvider.
      *
      * <ul>
-     *     <li><code>/#</code>: all elements of a metric. Can be used for insert and queries</li>
+     *     <li><code>/</code>: all elements of the metrics of the category. Can be used for
+     *         queries and delete</li>
+     *     <li><code>/#</code>: all elements of a metric. Can be used for insert, queries
+     *         and delete</li>
      *     <li><code>/#/#</code>: a specific element of a metric. Can be used for update and delete</li>
+     *     <li><code>/#/aggregate</code>: aggregated values of a metric. Can be used for queries</li>
+     *     <li><code>/#/summary</code>: summary of a metric. Can be used for queries</li>
+     *     <li><code>/#/series</code>: chunks of samples of a metric. Can be used for queries
+     *         and delete</li>
      * </ul>
+     *
+     * @see Param
      */
     @NonNull
     public static final Uri MINDFULNESS = Uri.parse(PROTOCOL + Authority.MINDFULNESS);
@@ -96,6 +141,43 @@ public final class CareCacheUri {
     @NonNull
     public static final Uri MEDICAL_PROFILE = Uri.parse(PROTOCOL + Authority.MEDICAL_PROFILE);
 
+    /**
+     * Query parameters of the records {@link Uri}s.
+     */
+    public static final class Param {
+        private Param() {
+        }
+
+        /**
+         * Lower bound (inclusive) of the time of the records to be deleted,
+         * in milliseconds since epoch.
+         */
+        @NonNull
+        public static final String FROM = "from";
+
+        /**
+         * Upper bound (exclusive) of the time of the records to be deleted,
+         * in milliseconds since epoch.
+         */
+        @NonNull
+        public static final String TO = "to";
+
+        /**
+         * Comma-separated ids of the records of a metric to be deleted.
+         */
+        @NonNull
+        public static final String IDS = "ids";
+
+        /**
+         * When <code>true</code>, the record insertion is committed in a single
+         * transaction together with the other insertions that are
+         * received concurrently, trading a few milliseconds of latency
+         * for fewer disk writes.
+         */
+        @NonNull
+        public static final String GROUP_COMMIT = "group_commit";
+    }
+
     /**
      * ContentProviders authorities.
      */
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common;
+
+import android.content.ContentResolver;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.db.AggregateColumns;
+import org.lineageos.mod.health.common.db.RecordColumns;
+import org.lineageos.mod.health.common.values.TimeBucket;
+
+/**
+ * Keys of the extra arguments that can be passed to the records ContentProviders
+ * through the query {@link Bundle}.
+ *
+ * @see ContentResolver#query(android.net.Uri, String[], Bundle, android.os.CancellationSignal)
+ */
+public final class QueryArgs {
+
+    private QueryArgs() {
+    }
+
+    /**
+     * Lower bound (inclusive) of the {@link RecordColumns#TIME} of the records.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    public static final String TIME_FROM = "org.lineageos.mod.health:query-arg-time-from";
+
+    /**
+     * Upper bound (exclusive) of the {@link RecordColumns#TIME} of the records.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    public static final String TIME_TO = "org.lineageos.mod.health:query-arg-time-to";
+
+    /**
+     * {@link RecordColumns#TIME} of the last record of the previous page.
+     * Must be used together with {@link #SEEK_ID}.
+     *
+     * When specified, only the records that come after the given one in the
+     * <code>time DESC, _id DESC</code> order are returned. Combine it with
+     * {@link ContentResolver#QUERY_ARG_LIMIT} to read the records page by page.
+     * Queries with a limit are always sorted by <code>time DESC, _id DESC</code>.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    public static final String SEEK_TIME = "org.lineageos.mod.health:query-arg-seek-time";
+
+    /**
+     * {@link RecordColumns#_ID} of the last record of the previous page.
+     * Must be used together with {@link #SEEK_TIME}.
+     *
+     * {@link Long}: record id.
+     */
+    @NonNull
+    public static final String SEEK_ID = "org.lineageos.mod.health:query-arg-seek-id";
+
+    /**
+     * Size of the buckets in which the records are grouped when querying the
+     * aggregate URI of a metric (<code>&lt;metric&gt;/aggregate</code>).
+     *
+     * {@link Integer}: one of {@link TimeBucket} values. Defaults to {@link TimeBucket#DAY}.
+     *
+     * @see AggregateColumns
+     */
+    @NonNull
+    public static final String BUCKET = "org.lineageos.mod.health:query-arg-bucket";
+
+    /**
+     * Numerical column of the records to be aggregated when querying the
+     * aggregate URI of a metric (<code>&lt;metric&gt;/aggregate</code>).
+     *
+     * {@link String}: one of the numerical {@link RecordColumns}.
+     * Defaults to {@link RecordColumns#VALUE}.
+     *
+     * @see AggregateColumns
+     */
+    @NonNull
+    public static final String AGGREGATE_COLUMN =
+            "org.lineageos.mod.health:query-arg-aggregate-column";
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.db.SeriesColumns;
+import org.lineageos.mod.health.common.series.SampleCodec;
+import org.lineageos.mod.health.common.values.AccessPolicyValues;
+
+/**
+ * Series of (time, value) samples of a metric recorded at a high frequency,
+ * such as the readings of a heart rate sensor.
+ * <p>
+ * The samples are stored in chunks compressed with {@link SampleCodec} rather
+ * than as individual records. Samples are appended by calling {@link #METHOD_APPEND}
+ * on the records ContentProviders and read from the chunks returned by querying
+ * the series URI of a metric (<code>&lt;metric&gt;/series</code>).
+ * <p>
+ * Queries of the series URI return the chunks that may contain samples within
+ * {@link QueryArgs#TIME_FROM} and {@link QueryArgs#TIME_TO}, sorted by time.
+ * Deletions of the series URI remove the samples within
+ * {@link CareCacheUri.Param#FROM} and {@link CareCacheUri.Param#TO}.
+ *
+ * @see ContentResolver#call(Uri, String, String, Bundle)
+ * @see SeriesColumns
+ */
+public final class SampleSeries {
+
+    private SampleSeries() {
+    }
+
+    /**
+     * Maximum number of samples of a stored chunk: an hour of samples at 1 Hz.
+     */
+    public static final int MAX_CHUNK_SAMPLES = 3600;
+
+    @NonNull
+    public static final String METHOD_APPEND = "org.lineageos.mod.health:append-samples";
+
+    /**
+     * Metric of the samples.
+     *
+     * <code>int</code>: a metric of the category of the ContentProvider.
+     */
+    @NonNull
+    public static final String EXTRA_METRIC = "org.lineageos.mod.health:append-samples-metric";
+
+    /**
+     * Samples to be appended.
+     *
+     * <code>byte</code> array: samples encoded with {@link SampleCodec}, with
+     * non-negative times that are not before the ones already appended by the caller.
+     */
+    @NonNull
+    public static final String EXTRA_SAMPLES = "org.lineageos.mod.health:append-samples-data";
+
+    /**
+     * Result of the append.
+     *
+     * <code>int</code>: the number of appended samples or
+     * {@link AccessPolicyValues#DENIED_COUNT}.
+     */
+    @NonNull
+    public static final String EXTRA_RESULT = "org.lineageos.mod.health:append-samples-result";
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.db;
+
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.values.TimeBucket;
+
+/**
+ * Columns of the aggregated records.
+ *
+ * Each row represents a {@link TimeBucket} in which at least one record was found.
+ *
+ * @see TimeBucket
+ */
+public interface AggregateColumns {
+
+    /**
+     * Start of the bucket.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    String BUCKET_START = "bucket_start";
+
+    /**
+     * Number of records in the bucket.
+     *
+     * {@link Integer}
+     */
+    @NonNull
+    String COUNT = "count";
+
+    /**
+     * Minimum value of the aggregated column.
+     *
+     * {@link Double}
+     */
+    @NonNull
+    String MIN = "min";
+
+    /**
+     * Maximum value of the aggregated column.
+     *
+     * {@link Double}
+     */
+    @NonNull
+    String MAX = "max";
+
+    /**
+     * Average value of the aggregated column.
+     *
+     * {@link Double}
+     */
+    @NonNull
+    String AVG = "avg";
+
+    /**
+     * Sum of the values of the aggregated column.
+     *
+     * {@link Double}
+     */
+    @NonNull
+    String SUM = "sum";
+
+    /**
+     * Value of the aggregated column of the most recent record in the bucket.
+     * Only available for the {@link TimeBucket#UTC_HOUR} and
+     * {@link TimeBucket#UTC_DAY} buckets.
+     *
+     * {@link Double}
+     */
+    @NonNull
+    String LAST = "last";
+}
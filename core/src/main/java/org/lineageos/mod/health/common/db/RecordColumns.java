@@ -47,6 +47,14 @@ public interface RecordColumns extends BaseColumns {
     @NonNull
     String _VERSION = "_version";
 
+    /**
+     * Package name of the app that inserted this record.
+     *
+     * {@link String}: set by the ContentProvider, any value given by the caller is ignored.
+     */
+    @NonNull
+    String _SOURCE = "_source";
+
     /**
      * Average speed in kilometers per hour (Km/h).
      *
@@ -81,6 +89,16 @@ public interface RecordColumns extends BaseColumns {
     @NonNull
     String ELEVATION_GAIN = "elevation_gain";
 
+    /**
+     * Identifier of the record assigned by the app that inserted it.
+     *
+     * {@link String}: may be null. When not null, it is unique among the records
+     * of the same {@link #_METRIC} inserted by the same {@link #_SOURCE}, and it can
+     * be used to insert or update a record with a single upsert operation.
+     */
+    @NonNull
+    String EXTERNAL_ID = "external_id";
+
     /**
      * Duration in milliseconds (ms).
      *
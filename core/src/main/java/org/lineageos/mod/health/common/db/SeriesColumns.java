@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.db;
+
+import android.provider.BaseColumns;
+
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.SampleSeries;
+import org.lineageos.mod.health.common.series.SampleCodec;
+
+/**
+ * Columns of the chunks of a {@link SampleSeries}.
+ *
+ * Each row contains the samples of a metric appended by a single app
+ * in a time interval.
+ */
+public interface SeriesColumns extends BaseColumns {
+
+    /**
+     * @see RecordColumns#_METRIC
+     */
+    @NonNull
+    String _METRIC = RecordColumns._METRIC;
+
+    /**
+     * @see RecordColumns#_SOURCE
+     */
+    @NonNull
+    String _SOURCE = RecordColumns._SOURCE;
+
+    /**
+     * Time of the first sample of the chunk.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    String START_TIME = "start_time";
+
+    /**
+     * Time of the last sample of the chunk.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    String END_TIME = "end_time";
+
+    /**
+     * Number of samples of the chunk.
+     *
+     * {@link Integer}
+     */
+    @NonNull
+    String COUNT = "count";
+
+    /**
+     * Samples of the chunk.
+     *
+     * <code>byte</code> array: samples encoded with {@link SampleCodec}.
+     */
+    @NonNull
+    String SAMPLES = "samples";
+}
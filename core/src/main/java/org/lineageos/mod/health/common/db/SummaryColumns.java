@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.db;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Columns of the summary of a metric.
+ *
+ * The summary row also contains all the {@link RecordColumns} of the most
+ * recent record of the metric. If the metric has no records, no row is returned.
+ */
+public interface SummaryColumns extends RecordColumns {
+
+    /**
+     * Number of records of the metric.
+     *
+     * {@link Integer}
+     */
+    @NonNull
+    String SUMMARY_COUNT = "summary_count";
+
+    /**
+     * Time of the oldest record of the metric.
+     *
+     * {@link Long}: time in milliseconds since epoch.
+     */
+    @NonNull
+    String SUMMARY_FIRST_TIME = "summary_first_time";
+}
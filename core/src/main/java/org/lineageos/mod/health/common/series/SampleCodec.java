@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.series;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact encoding of a chunk of (time, value) samples sorted by time.
+ * <p>
+ * The times are stored as the difference between consecutive deltas and
+ * the values as the XOR with the previous value, as in the Gorilla
+ * time series database. Samples taken at a regular rate whose value changes
+ * slowly (such as a heart rate sensor at 1 Hz) take about 2 bytes each.
+ * <p>
+ * Layout: number of samples (32 bits), time and value of the first sample
+ * (64 bits each), then a variable-length record for each following sample.
+ */
+public final class SampleCodec {
+
+    private SampleCodec() {
+    }
+
+    private static final int COUNT_BITS = 32;
+    private static final int MAX_LEADING_ZEROS = 31;
+    private static final int FIRST_SAMPLE_BITS = 128;
+    private static final int TAIL_BYTES = 30;
+
+    /**
+     * Encode the samples in the [from, to) range of the given arrays.
+     *
+     * @throws IllegalArgumentException if the times are not sorted
+     */
+    @NonNull
+    public static byte[] encode(@NonNull long[] times, @NonNull double[] values,
+                                int from, int to) {
+        final Encoder encoder = new Encoder();
+        for (int i = from; i < to; i++) {
+            encoder.append(times[i], values[i]);
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Appends samples to a chunk.
+     */
+    public static final class Encoder {
+        @NonNull
+        private byte[] buffer = new byte[64];
+        private int bitLength = COUNT_BITS;
+        private int count;
+
+        private long firstTime;
+        private long lastTime;
+        private long lastDelta;
+        private long lastValueBits;
+        private int lastLeading = -1;
+        private int lastTrailing;
+
+        /**
+         * Continue appending to encoded samples from their tail (see {@link #getTail()}),
+         * without decoding them.
+         *
+         * @throws IllegalArgumentException if the tail doesn't match the samples
+         */
+        @NonNull
+        public static Encoder resume(@NonNull byte[] samples, @NonNull byte[] tail) {
+            if (tail.length != TAIL_BYTES) {
+                throw new IllegalArgumentException("Invalid tail size " + tail.length);
+            }
+
+            final Encoder encoder = new Encoder();
+            final ByteBuffer state = ByteBuffer.wrap(tail);
+            encoder.bitLength = state.getInt();
+            encoder.lastTime = state.getLong();
+            encoder.lastDelta = state.getLong();
+            encoder.lastValueBits = state.getLong();
+            encoder.lastLeading = state.get();
+            encoder.lastTrailing = state.get();
+            if (encoder.bitLength < COUNT_BITS + FIRST_SAMPLE_BITS ||
+                    (encoder.bitLength + 7) >>> 3 != samples.length ||
+                    encoder.lastLeading < -1 || encoder.lastLeading > MAX_LEADING_ZEROS ||
+                    encoder.lastTrailing < 0 || encoder.lastTrailing >= 64) {
+                throw new IllegalArgumentException("Tail doesn't match the samples");
+            }
+
+            // Only the header and the first sample are read
+            final Decoder decoder = new Decoder(samples);
+            if (!decoder.hasNext()) {
+                throw new IllegalArgumentException("Tail doesn't match the samples");
+            }
+            decoder.next();
+            encoder.count = decoder.getCount();
+            encoder.firstTime = decoder.getTime();
+            encoder.buffer = Arrays.copyOf(samples, Math.max(64, samples.length * 2));
+            return encoder;
+        }
+
+        /**
+         * @throws IllegalArgumentException if the time is before the one of the last sample
+         */
+        public void append(long time, double value) {
+            final long valueBits = Double.doubleToRawLongBits(value);
+            if (count == 0) {
+                writeBits(time, 64);
+                writeBits(valueBits, 64);
+                firstTime = time;
+            } else {
+                if (time < lastTime) {
+                    throw new IllegalArgumentException("Unsorted sample time " + time +
+                            " (last was " + lastTime + ")");
+                }
+                final long delta = time - lastTime;
+                writeDeltaOfDelta(delta - lastDelta);
+                writeXor(valueBits ^ lastValueBits);
+                lastDelta = delta;
+            }
+            lastTime = time;
+            lastValueBits = valueBits;
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return The time of the first sample, undefined if there are no samples
+         */
+        public long getFirstTime() {
+            return firstTime;
+        }
+
+        /**
+         * @return The time of the last sample, undefined if there are no samples
+         */
+        public long getLastTime() {
+            return lastTime;
+        }
+
+        /**
+         * @return The state needed to append to the encoded samples with {@link #resume}
+         */
+        @NonNull
+        public byte[] getTail() {
+            return ByteBuffer.allocate(TAIL_BYTES)
+                    .putInt(bitLength)
+                    .putLong(lastTime)
+                    .putLong(lastDelta)
+                    .putLong(lastValueBits)
+                    .put((byte) lastLeading)
+                    .put((byte) lastTrailing)
+                    .array();
+        }
+
+        /**
+         * @return The encoded samples. More samples can be appended afterwards
+         */
+        @NonNull
+        public byte[] toByteArray() {
+            final byte[] bytes = Arrays.copyOf(buffer, (bitLength + 7) >>> 3);
+            for (int i = 0; i < 4; i++) {
+                bytes[i] = (byte) (count >>> (24 - 8 * i));
+            }
+            return bytes;
+        }
+
+        private void writeDeltaOfDelta(long dod) {
+            if (dod == 0L) {
+                writeBits(0b0, 1);
+            } else if (dod >= -64L && dod < 64L) {
+                writeBits(0b10, 2);
+                writeBits(dod, 7);
+            } else if (dod >= -256L && dod < 256L) {
+                writeBits(0b110, 3);
+                writeBits(dod, 9);
+            } else if (dod >= -2048L && dod < 2048L) {
+                writeBits(0b1110, 4);
+                writeBits(dod, 12);
+            } else {
+                writeBits(0b1111, 4);
+                writeBits(dod, 64);
+            }
+        }
+
+        private void writeXor(long xor) {
+            if (xor == 0L) {
+                writeBits(0b0, 1);
+                return;
+            }
+
+            final int leading = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+            final int trailing = Long.numberOfTrailingZeros(xor);
+            if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+                // The meaningful bits fit in the window of the previous value
+                writeBits(0b10, 2);
+                writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+            } else {
+                final int significant = 64 - leading - trailing;
+                writeBits(0b11, 2);
+                writeBits(leading, 5);
+                writeBits(significant - 1, 6);
+                writeBits(xor >>> trailing, significant);
+                lastLeading = leading;
+                lastTrailing = trailing;
+            }
+        }
+
+        /**
+         * Write the lowest <code>bits</code> bits of the value, most significant first
+         */
+        private void writeBits(long value, int bits) {
+            final int required = (bitLength + bits + 7) >>> 3;
+            if (required > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+            }
+
+            while (bits > 0) {
+                final int free = 8 - (bitLength & 7);
+                final int n = Math.min(free, bits);
+                final int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+                buffer[bitLength >>> 3] |= (byte) (chunk << (free - n));
+                bits -= n;
+                bitLength += n;
+            }
+        }
+    }
+
+    /**
+     * Reads the samples of a chunk one by one, without decoding the following ones.
+     * <pre>
+     * final SampleCodec.Decoder decoder = new SampleCodec.Decoder(bytes);
+     * while (decoder.hasNext()) {
+     *     decoder.next();
+     *     use(decoder.getTime(), decoder.getValue());
+     * }
+     * </pre>
+     */
+    public static final class Decoder {
+        @NonNull
+        private final byte[] data;
+        private final int count;
+        private int bitPosition;
+        private int index;
+
+        private long time;
+        private long delta;
+        private long valueBits;
+        private int leading;
+        private int trailing;
+
+        /**
+         * @throws IllegalArgumentException if the data is not a valid chunk
+         */
+        public Decoder(@NonNull byte[] data) {
+            this.data = data;
+            this.count = (int) readBits(COUNT_BITS);
+            if (count < 0) {
+                throw new IllegalArgumentException("Invalid sample count " + count);
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        /**
+         * Decode the next sample.
+         *
+         * @throws IllegalArgumentException if the data is truncated or corrupted
+         */
+        public void next() {
+            if (index >= count) {
+                throw new NoSuchElementException();
+            }
+
+            if (index == 0) {
+                time = readBits(64);
+                valueBits = readBits(64);
+            } else {
+                delta += readDeltaOfDelta();
+                time += delta;
+                valueBits ^= readXor();
+            }
+            index++;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public double getValue() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        private long readDeltaOfDelta() {
+            if (readBits(1) == 0L) {
+                return 0L;
+            } else if (readBits(1) == 0L) {
+                return readSigned(7);
+            } else if (readBits(1) == 0L) {
+                return readSigned(9);
+            } else if (readBits(1) == 0L) {
+                return readSigned(12);
+            } else {
+                return readBits(64);
+            }
+        }
+
+        private long readXor() {
+            if (readBits(1) == 0L) {
+                return 0L;
+            }
+
+            if (readBits(1) == 1L) {
+                leading = (int) readBits(5);
+                final int significant = (int) readBits(6) + 1;
+                trailing = 64 - leading - significant;
+                if (trailing < 0) {
+                    throw new IllegalArgumentException("Corrupted samples");
+                }
+            }
+            return readBits(64 - leading - trailing) << trailing;
+        }
+
+        private long readSigned(int bits) {
+            final int shift = 64 - bits;
+            return (readBits(bits) << shift) >> shift;
+        }
+
+        private long readBits(int bits) {
+            if (bitPosition + (long) bits > data.length * 8L) {
+                throw new IllegalArgumentException("Truncated samples");
+            }
+
+            long value = 0L;
+            while (bits > 0) {
+                final int free = 8 - (bitPosition & 7);
+                final int n = Math.min(free, bits);
+                final int b = data[bitPosition >>> 3] & 0xFF;
+                value = (value << n) | ((b >>> (free - n)) & ((1 << n) - 1));
+                bits -= n;
+                bitPosition += n;
+            }
+            return value;
+        }
+    }
+}
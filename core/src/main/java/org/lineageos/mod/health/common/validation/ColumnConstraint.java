@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.validation;
+
+import android.content.ContentValues;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Constraint on the value of a numerical column of a record.
+ * <p>
+ * The value is read once and compared without conversions:
+ * a missing value is accepted unless the column is {@link #required()}.
+ *
+ * @see RecordConstraints
+ */
+public final class ColumnConstraint {
+    @NonNull
+    private final String column;
+    private final double min;
+    private final double max;
+    private final boolean maxExclusive;
+    private final boolean required;
+
+    private ColumnConstraint(@NonNull String column, double min, double max,
+                             boolean maxExclusive, boolean required) {
+        this.column = column;
+        this.min = min;
+        this.max = max;
+        this.maxExclusive = maxExclusive;
+        this.required = required;
+    }
+
+    /**
+     * The value must be in the [min, max] interval.
+     */
+    @NonNull
+    public static ColumnConstraint range(@NonNull String column, double min, double max) {
+        return new ColumnConstraint(column, min, max, false, false);
+    }
+
+    /**
+     * The value must not be negative.
+     */
+    @NonNull
+    public static ColumnConstraint nonNegative(@NonNull String column) {
+        return range(column, 0.0, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * The value must be a combination of the lowest <code>width</code> bits.
+     */
+    @NonNull
+    public static ColumnConstraint bitmask(@NonNull String column, int width) {
+        return new ColumnConstraint(column, 0.0, 1L << width, true, false);
+    }
+
+    /**
+     * @return A copy of this constraint that also rejects missing values
+     */
+    @NonNull
+    public ColumnConstraint required() {
+        return new ColumnConstraint(column, min, max, maxExclusive, true);
+    }
+
+    @NonNull
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * @return A description of the violation, or null if the value is valid
+     */
+    @Nullable
+    public String check(@NonNull ContentValues cv) {
+        final Object value = cv.get(column);
+        if (value == null) {
+            return required ? "Missing " + column : null;
+        }
+
+        final double number;
+        if (value instanceof Number) {
+            number = ((Number) value).doubleValue();
+        } else {
+            try {
+                number = Double.parseDouble(value.toString());
+            } catch (NumberFormatException e) {
+                return "Invalid non-numerical " + column + " (was " + value + ")";
+            }
+        }
+
+        // Negated comparisons to reject NaN too
+        if (!(number >= min) || !(maxExclusive ? number < max : number <= max)) {
+            return "Out-of-range " + column + " (was " + value + ")";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.validation;
+
+import android.content.ContentValues;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.lineageos.mod.health.common.Metric;
+import org.lineageos.mod.health.common.db.RecordColumns;
+
+/**
+ * Constraints on the columns of the records of each metric.
+ * <p>
+ * The constraints of each metric, including the ones shared by all the
+ * records, are collected once in a flat array that is then checked in order.
+ */
+public final class RecordConstraints {
+
+    private RecordConstraints() {
+    }
+
+    private static final double SPEED_OF_LIGHT = 2.998e8;
+
+    private static final ColumnConstraint[] COMMON = {
+            ColumnConstraint.nonNegative(RecordColumns.TIME).required(),
+            ColumnConstraint.nonNegative(RecordColumns.DURATION),
+    };
+
+    private static final ColumnConstraint VALUE_NON_NEG =
+            ColumnConstraint.nonNegative(RecordColumns.VALUE);
+    private static final ColumnConstraint VALUE_PERCENT =
+            ColumnConstraint.range(RecordColumns.VALUE, 0.0, 1.0);
+
+    private static final ColumnConstraint[] ACTIVITY = {
+            ColumnConstraint.range(RecordColumns.AVG_SPEED, 0.0, SPEED_OF_LIGHT),
+            ColumnConstraint.nonNegative(RecordColumns.CALORIES),
+            ColumnConstraint.nonNegative(RecordColumns.DISTANCE),
+            ColumnConstraint.nonNegative(RecordColumns.STEPS).required(),
+    };
+
+    private static final SparseArray<ColumnConstraint[]> PLANS = new SparseArray<>();
+
+    static {
+        for (final int metric : new int[]{
+                Metric.ABDOMINAL_CIRCUMFERENCE,
+                Metric.BODY_TEMPERATURE,
+                Metric.UV_INDEX,
+                Metric.WATER_INTAKE,
+                Metric.WEIGHT,
+                Metric.PEAK_EXPIRATORY_FLOW,
+                Metric.RESPIRATORY_RATE,
+                Metric.VITAL_CAPACITY,
+                Metric.HEART_RATE,
+        }) {
+            put(metric, VALUE_NON_NEG);
+        }
+
+        for (final int metric : new int[]{
+                Metric.LEAN_BODY_MASS,
+                Metric.OXYGEN_SATURATION,
+                Metric.BLOOD_ALCOHOL_CONCENTRATION,
+                Metric.PERFUSION_INDEX,
+        }) {
+            put(metric, VALUE_PERCENT);
+        }
+
+        for (final int metric : new int[]{
+                Metric.CYCLING,
+                Metric.RUNNING,
+                Metric.WALKING,
+                Metric.WORKOUT,
+        }) {
+            put(metric, ACTIVITY);
+        }
+
+        put(Metric.MENSTRUAL_CYCLE,
+                VALUE_NON_NEG,
+                ColumnConstraint.bitmask(RecordColumns.SEXUAL_ACTIVITY, 4),
+                ColumnConstraint.bitmask(RecordColumns.SYMPTOMS_OTHER, 8).required(),
+                ColumnConstraint.bitmask(RecordColumns.SYMPTOMS_PHYSICAL, 9));
+        put(Metric.BLOOD_PRESSURE,
+                ColumnConstraint.nonNegative(RecordColumns.PRESSURE_SYSTOLIC),
+                ColumnConstraint.nonNegative(RecordColumns.PRESSURE_DIASTOLIC));
+        put(Metric.GLUCOSE,
+                VALUE_NON_NEG,
+                ColumnConstraint.range(RecordColumns.MEAL_RELATION, 0, 2).required());
+        put(Metric.MOOD,
+                ColumnConstraint.bitmask(RecordColumns.MOOD, 11).required());
+
+        // Only the common constraints
+        put(Metric.BODY_MASS_INDEX);
+        put(Metric.INHALER_USAGE);
+        put(Metric.MEDITATION);
+        put(Metric.SLEEP);
+    }
+
+    private static void put(int metric, @NonNull ColumnConstraint... constraints) {
+        final ColumnConstraint[] plan = new ColumnConstraint[COMMON.length + constraints.length];
+        System.arraycopy(COMMON, 0, plan, 0, COMMON.length);
+        System.arraycopy(constraints, 0, plan, COMMON.length, constraints.length);
+        PLANS.put(metric, plan);
+    }
+
+    /**
+     * Check the values of a record.
+     *
+     * @return A description of the first violated constraint,
+     * or null if the record is valid
+     */
+    @Nullable
+    public static String check(int metric, @NonNull ContentValues cv) {
+        final ColumnConstraint[] plan = PLANS.get(metric);
+        if (plan == null) {
+            return "Unsupported metric " + metric;
+        }
+
+        for (final ColumnConstraint constraint : plan) {
+            final String error = constraint.check(cv);
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.common.values;
+
+import androidx.annotation.IntDef;
+
+import org.lineageos.mod.health.common.QueryArgs;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Size of the time intervals in which records are grouped when aggregated.
+ *
+ * Intervals are aligned to the local time of the device: days start at midnight,
+ * weeks start on Monday and months start on their first day.
+ * <p>
+ * {@link #UTC_HOUR} and {@link #UTC_DAY} intervals are aligned to UTC instead.
+ * They are read from aggregates kept up to date as the records change,
+ * so their cost depends on the number of buckets rather than the number of records.
+ * A bucket is included if its start is within the requested time interval.
+ *
+ * @see QueryArgs#BUCKET
+ */
+public final class TimeBucket {
+
+    private TimeBucket() {
+    }
+
+    public static final int HOUR = 0;
+    public static final int DAY = 1;
+    public static final int WEEK = 2;
+    public static final int MONTH = 3;
+    public static final int UTC_HOUR = 4;
+    public static final int UTC_DAY = 5;
+
+    @IntDef({
+            HOUR,
+            DAY,
+            WEEK,
+            MONTH,
+            UTC_HOUR,
+            UTC_DAY,
+    })
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Value {
+    }
+}
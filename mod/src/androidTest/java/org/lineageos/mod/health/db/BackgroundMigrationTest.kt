@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.Context
+import android.os.SystemClock
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import net.sqlcipher.database.SQLiteDatabase
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.lineageos.mod.health.db.migrations.BackgroundMigrator
+import org.lineageos.mod.health.db.migrations.IndexMigration
+import org.lineageos.mod.health.db.migrations.RowRangeMigration
+import org.lineageos.mod.health.db.tables.MigrationTable
+import org.lineageos.mod.health.db.tables.Table
+import java.io.PrintWriter
+import java.io.StringWriter
+
+@RunWith(AndroidJUnit4::class)
+class BackgroundMigrationTest {
+
+    companion object {
+        private const val ROWS = 2500
+        private const val CHUNK_SIZE = 1000
+
+        private const val HELPER_DB = "background_migration_test"
+        private const val TIMEOUT_MILLIS = 10_000L
+        private val KEY = ByteArray(32) { 1 }
+    }
+
+    private val table = object : Table {
+        override val backgroundMigrations = listOf(
+            RowRangeMigration(
+                "test_double_value",
+                2,
+                "test",
+                "UPDATE test SET value = value * 2 WHERE _id > ? AND _id <= ?",
+                CHUNK_SIZE
+            ),
+            IndexMigration(
+                "test_value_index",
+                3,
+                "CREATE INDEX IF NOT EXISTS test_value ON test (value)"
+            )
+        )
+
+        override fun onCreate(db: SQLiteDatabase) {
+            db.execSQL("CREATE TABLE test (_id INTEGER PRIMARY KEY, value INTEGER)")
+        }
+
+        override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        }
+    }
+    private val migrationTable = MigrationTable(arrayOf(table))
+
+    private lateinit var db: SQLiteDatabase
+
+    @Before
+    fun setup() {
+        SqlCipherLoader.loadLibs(InstrumentationRegistry.getInstrumentation().targetContext)
+        db = SQLiteDatabase.create(null, "")
+        table.onCreate(db)
+        db.execSQL(
+            "WITH RECURSIVE ids(id) AS (SELECT 1 UNION ALL SELECT id + 1 FROM ids " +
+                "WHERE id < $ROWS) INSERT INTO test (_id, value) SELECT id, id FROM ids"
+        )
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun newDatabase() {
+        migrationTable.onCreate(db)
+        Assert.assertTrue(migrationTable.getPending(db).isEmpty())
+    }
+
+    @Test
+    fun upgradeRunsNewerMigrationsOnly() {
+        migrationTable.onUpgrade(db, 2, 3)
+        val pending = migrationTable.getPending(db)
+        Assert.assertEquals(listOf("test_value_index"), pending.map { it.first.name })
+
+        BackgroundMigrator("test", migrationTable).run(db)
+        Assert.assertTrue(migrationTable.getPending(db).isEmpty())
+        // The values were not doubled
+        Assert.assertEquals(0L, countWrongValues(1L))
+        Assert.assertTrue(hasIndex(db))
+    }
+
+    @Test
+    fun resumeInterruptedMigration() {
+        migrationTable.onUpgrade(db, 1, 3)
+        val (migration, position) = migrationTable.getPending(db).first()
+        Assert.assertEquals(0L, position)
+
+        // Run a single chunk, as if the process was killed right after it
+        db.beginTransaction()
+        try {
+            val next = migration.migrateChunk(db, position)
+            migrationTable.setPosition(db, migration, next)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        Assert.assertEquals(CHUNK_SIZE.toLong(), migrationTable.getPending(db).first().second)
+
+        val migrator = BackgroundMigrator("test", migrationTable)
+        migrator.run(db)
+        Assert.assertTrue(migrationTable.getPending(db).isEmpty())
+        // Each row was doubled exactly once
+        Assert.assertEquals(0L, countWrongValues(2L))
+
+        val dump = StringWriter()
+        PrintWriter(dump).use { migrator.dump(it, "") }
+        Assert.assertTrue(dump.toString().contains("test_double_value: done"))
+    }
+
+    @Test
+    fun upgradeThroughHelper() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        context.deleteDatabase(HELPER_DB)
+        try {
+            TestDbHelper(context, 2).apply {
+                getWritableDatabase(KEY)
+                close()
+            }
+
+            val helper = TestDbHelper(context, 3)
+            val helperDb = helper.getWritableDatabase(KEY)
+            // The index is built by the migrator thread
+            val deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS
+            while (helper.migrationTable.getPending(helperDb).isNotEmpty()) {
+                Assert.assertTrue(SystemClock.uptimeMillis() < deadline)
+                Thread.sleep(10L)
+            }
+            Assert.assertTrue(hasIndex(helperDb))
+            helper.close()
+        } finally {
+            context.deleteDatabase(HELPER_DB)
+        }
+    }
+
+    private fun hasIndex(db: SQLiteDatabase): Boolean {
+        return db.rawQuery(
+            "SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = 'test_value'",
+            null
+        ).use { it.moveToFirst() }
+    }
+
+    private fun countWrongValues(factor: Long): Long {
+        val condition = "value != _id * $factor"
+        return db.rawQuery("SELECT COUNT(*) FROM test WHERE $condition", null).use {
+            it.moveToFirst()
+            it.getLong(0)
+        }
+    }
+
+    /**
+     * Database with the test table, whose index is added by an [IndexMigration]
+     */
+    private inner class TestDbHelper(
+        context: Context,
+        version: Int
+    ) : WalDbHelper(context, HELPER_DB, version) {
+
+        public override val migrationTable = MigrationTable(arrayOf(table))
+
+        override fun onCreate(db: SQLiteDatabase?) {
+            if (db != null) {
+                table.onCreate(db)
+                migrationTable.onCreate(db)
+            }
+        }
+
+        override fun onUpgrade(db: SQLiteDatabase?, oldVersion: Int, newVersion: Int) {
+            if (db != null) {
+                table.onUpgrade(db, oldVersion, newVersion)
+                migrationTable.onUpgrade(db, oldVersion, newVersion)
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.ContentValues
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import net.sqlcipher.database.SQLiteDatabase
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.lineageos.mod.health.common.Metric
+import org.lineageos.mod.health.common.db.AggregateColumns
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.db.tables.HeartBloodTable
+import org.lineageos.mod.health.db.tables.RecordArchiveTable
+import org.lineageos.mod.health.db.tables.RecordRollupTable
+import org.lineageos.mod.health.db.tables.RecordSummaryTable
+
+@RunWith(AndroidJUnit4::class)
+class RecordArchiveTest {
+
+    companion object {
+        private const val DAY = RecordRollupTable.DAY_MILLIS
+        private const val HOUR = RecordRollupTable.HOUR_MILLIS
+        private const val DAYS = 4
+
+        // 2019-01-01T00:00:00Z
+        private const val START = 1_546_300_800_000L
+    }
+
+    private val table = HeartBloodTable.NAME
+    private val summaryTable = RecordSummaryTable(table)
+    private val rollupTable = RecordRollupTable(table, arrayOf(RecordColumns.VALUE))
+    private val archiveTable = RecordArchiveTable(table)
+    private val archive = RecordArchive(table, archiveTable, summaryTable, rollupTable)
+
+    private lateinit var db: SQLiteDatabase
+
+    @Before
+    fun setup() {
+        SqlCipherLoader.loadLibs(InstrumentationRegistry.getInstrumentation().targetContext)
+        db = SQLiteDatabase.create(null, "")
+        arrayOf(HeartBloodTable, summaryTable, rollupTable, archiveTable).forEach {
+            it.onCreate(db)
+        }
+        for (day in 0 until DAYS) {
+            for (hour in 0 until 24) {
+                db.insert(table, null, ContentValues().apply {
+                    put(RecordColumns._METRIC, Metric.HEART_RATE)
+                    put(RecordColumns.TIME, START + day * DAY + hour * HOUR + 1L)
+                    put(RecordColumns._SOURCE, "test")
+                    put(RecordColumns.EXTERNAL_ID, "$day-$hour")
+                    put(RecordColumns.VALUE, day * 24.0 + hour)
+                })
+            }
+        }
+        archive.open(db)
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun archiveOldDays() {
+        val rollups = getRollups()
+        Assert.assertTrue(archive.archiveOldestDay(db, START + 2 * DAY))
+        Assert.assertTrue(archive.archiveOldestDay(db, START + 2 * DAY))
+        Assert.assertFalse(archive.archiveOldestDay(db, START + 2 * DAY))
+
+        Assert.assertEquals(48L, count(table))
+        Assert.assertEquals(DAYS * 24L, count(archive.getSource()))
+        Assert.assertEquals(DAYS * 24L, getSummaryCount())
+        Assert.assertEquals(rollups, getRollups())
+
+        // Recent queries don't read the archive
+        Assert.assertEquals(table, archive.getSource(START + 2 * DAY, null))
+        Assert.assertEquals(48L, count(archive.getSource(null, START + 2 * DAY)))
+
+        // The periods are loaded when the database is opened again
+        val reopened = RecordArchive(table, archiveTable, summaryTable, rollupTable)
+        reopened.open(db)
+        Assert.assertEquals(archive.getSource(), reopened.getSource())
+    }
+
+    @Test
+    fun deleteArchived() {
+        Assert.assertTrue(archive.archiveOldestDay(db, START + DAY))
+
+        val to = START + 12 * HOUR
+        val count = archive.delete(
+            db,
+            "${RecordColumns._METRIC} = ? AND ${RecordColumns.TIME} < ?",
+            arrayOf(Metric.HEART_RATE.toString(), to.toString()),
+            null,
+            to
+        )
+        Assert.assertEquals(12, count)
+        Assert.assertEquals(DAYS * 24L - 12L, getSummaryCount())
+        db.rawQuery(
+            "SELECT ${AggregateColumns.COUNT}, ${RecordRollupTable.minOf(RecordColumns.VALUE)} " +
+                "FROM ${rollupTable.dayName} WHERE ${AggregateColumns.BUCKET_START} = ?",
+            arrayOf(START.toString())
+        ).use {
+            Assert.assertTrue(it.moveToFirst())
+            Assert.assertEquals(12L, it.getLong(0))
+            Assert.assertEquals(12.0, it.getDouble(1), 0.0)
+        }
+    }
+
+    @Test
+    fun unarchiveForUpdate() {
+        val rollups = getRollups()
+        Assert.assertTrue(archive.archiveOldestDay(db, START + DAY))
+
+        val moved = archive.unarchive(
+            db,
+            "${RecordColumns._SOURCE} = ? AND ${RecordColumns._METRIC} = ? AND " +
+                "${RecordColumns.EXTERNAL_ID} = ?",
+            arrayOf("test", Metric.HEART_RATE.toString(), "0-5")
+        )
+        Assert.assertEquals(1, moved)
+        Assert.assertEquals(DAYS * 24L - 23L, count(table))
+        Assert.assertEquals(DAYS * 24L, count(archive.getSource()))
+        Assert.assertEquals(DAYS * 24L, getSummaryCount())
+        Assert.assertEquals(rollups, getRollups())
+    }
+
+    @Test
+    fun unarchiveReusedExternalId() {
+        Assert.assertTrue(archive.archiveOldestDay(db, START + DAY))
+        // The unique index of the records table doesn't see the archived external ids
+        db.insert(table, null, ContentValues().apply {
+            put(RecordColumns._METRIC, Metric.HEART_RATE)
+            put(RecordColumns.TIME, START + 2 * DAY)
+            put(RecordColumns._SOURCE, "test")
+            put(RecordColumns.EXTERNAL_ID, "0-5")
+        })
+
+        val moved = archive.unarchive(
+            db,
+            "${RecordColumns._SOURCE} = ? AND ${RecordColumns._METRIC} = ? AND " +
+                "${RecordColumns.EXTERNAL_ID} = ?",
+            arrayOf("test", Metric.HEART_RATE.toString(), "0-5")
+        )
+        // The archived record is kept
+        Assert.assertEquals(0, moved)
+        Assert.assertEquals(DAYS * 24L - 24L + 1L, count(table))
+        Assert.assertEquals(DAYS * 24L + 1L, count(archive.getSource()))
+        Assert.assertEquals(DAYS * 24L + 1L, getSummaryCount())
+    }
+
+    @Test
+    fun deleteNextToArchived() {
+        Assert.assertTrue(archive.archiveOldestDay(db, START + DAY))
+        val rollups = getRollups()
+
+        // A late record in an archived hour, holding its min, max and last values
+        val id = db.insert(table, null, ContentValues().apply {
+            put(RecordColumns._METRIC, Metric.HEART_RATE)
+            put(RecordColumns.TIME, START + 5 * HOUR + 2L)
+            put(RecordColumns._SOURCE, "test")
+            put(RecordColumns.VALUE, -1.0)
+        })
+        db.insert(table, null, ContentValues().apply {
+            put(RecordColumns._METRIC, Metric.HEART_RATE)
+            put(RecordColumns.TIME, START + 5 * HOUR + 3L)
+            put(RecordColumns._SOURCE, "test")
+            put(RecordColumns.VALUE, 100.0)
+        })
+        db.delete(table, "${RecordColumns.VALUE} = ?", arrayOf("100.0"))
+        db.delete(table, "${RecordColumns._ID} = ?", arrayOf(id.toString()))
+
+        // The hour is recomputed from the archived records
+        Assert.assertEquals(rollups, getRollups())
+    }
+
+    private fun count(source: String): Long {
+        return db.rawQuery("SELECT COUNT(*) FROM $source", null).use {
+            it.moveToFirst()
+            it.getLong(0)
+        }
+    }
+
+    private fun getSummaryCount(): Long {
+        return db.rawQuery(
+            "SELECT ${RecordSummaryTable.COUNT} FROM ${summaryTable.name} " +
+                "WHERE ${RecordColumns._METRIC} = ?",
+            arrayOf(Metric.HEART_RATE.toString())
+        ).use {
+            it.moveToFirst()
+            it.getLong(0)
+        }
+    }
+
+    private fun getRollups(): List<String> {
+        return listOf(rollupTable.hourName, rollupTable.dayName).flatMap { name ->
+            db.rawQuery("SELECT * FROM $name ORDER BY 1, 2", null).use {
+                val rows = mutableListOf<String>()
+                while (it.moveToNext()) {
+                    rows += (0 until it.columnCount).joinToString { i -> it.getString(i) }
+                }
+                rows
+            }
+        }
+    }
+}
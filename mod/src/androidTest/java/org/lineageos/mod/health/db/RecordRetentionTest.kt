@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.ContentValues
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import net.sqlcipher.database.SQLiteDatabase
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.lineageos.mod.health.common.Metric
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.db.tables.HeartBloodTable
+import org.lineageos.mod.health.db.tables.RecordArchiveTable
+import org.lineageos.mod.health.db.tables.RecordRetentionTable
+import org.lineageos.mod.health.db.tables.RecordRollupTable
+import org.lineageos.mod.health.db.tables.RecordSummaryTable
+import org.lineageos.mod.health.db.tables.SampleSeriesTable
+import org.lineageos.mod.health.partner.RetentionPolicy
+
+@RunWith(AndroidJUnit4::class)
+class RecordRetentionTest {
+
+    companion object {
+        private const val DAY = RecordRollupTable.DAY_MILLIS
+        private const val HOUR = RecordRollupTable.HOUR_MILLIS
+        private const val MINUTES = 5L * 60_000L
+        private const val DAYS = 3
+
+        // 2019-01-01T00:00:00Z
+        private const val START = 1_546_300_800_000L
+        private const val NOW = START + DAYS * DAY
+    }
+
+    private val table = HeartBloodTable.NAME
+    private val summaryTable = RecordSummaryTable(table)
+    private val rollupTable = RecordRollupTable(table, arrayOf(RecordColumns.VALUE))
+    private val archiveTable = RecordArchiveTable(table)
+    private val retentionTable = RecordRetentionTable(table)
+    private val archive = RecordArchive(table, archiveTable, summaryTable, rollupTable)
+    private val retention = RecordRetention(
+        table,
+        arrayOf(RecordColumns.VALUE),
+        archive,
+        retentionTable
+    )
+
+    private lateinit var db: SQLiteDatabase
+
+    @Before
+    fun setup() {
+        SqlCipherLoader.loadLibs(InstrumentationRegistry.getInstrumentation().targetContext)
+        db = SQLiteDatabase.create(null, "")
+        arrayOf(
+            HeartBloodTable,
+            summaryTable,
+            rollupTable,
+            archiveTable,
+            retentionTable,
+            SampleSeriesTable(table)
+        ).forEach { it.onCreate(db) }
+        // A record every 5 minutes, with the minute of the hour as value
+        var time = START
+        while (time < NOW) {
+            db.insert(table, null, ContentValues().apply {
+                put(RecordColumns._METRIC, Metric.HEART_RATE)
+                put(RecordColumns.TIME, time)
+                put(RecordColumns._SOURCE, "test")
+                put(RecordColumns.VALUE, (time % HOUR / 60_000L).toDouble())
+            })
+            time += MINUTES
+        }
+        archive.open(db)
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun downsample() {
+        val policy = RetentionPolicy(
+            Metric.HEART_RATE,
+            listOf(RetentionPolicy.Stage(1, HOUR))
+        )
+        retention.apply(db, listOf(policy), NOW)
+
+        // The first two days are hourly averages, the last one is untouched
+        Assert.assertEquals(2 * 24L + 24L * 12L, count(table))
+        Assert.assertEquals(2 * 24L + 24L * 12L, getSummaryCount())
+        db.rawQuery(
+            "SELECT ${RecordColumns.VALUE} FROM $table WHERE ${RecordColumns.TIME} = ?",
+            arrayOf((START + HOUR).toString())
+        ).use {
+            Assert.assertTrue(it.moveToFirst())
+            Assert.assertEquals(27.5, it.getDouble(0), 0.0)
+        }
+
+        // Days are downsampled once
+        val ids = getIds()
+        retention.apply(db, listOf(policy), NOW)
+        Assert.assertEquals(ids, getIds())
+    }
+
+    @Test
+    fun downsampleTwice() {
+        // Only the second half of the first hour
+        db.delete(table, "${RecordColumns.TIME} < ?", arrayOf((START + HOUR / 2).toString()))
+
+        arrayOf(HOUR, DAY).forEach { interval ->
+            retention.apply(
+                db,
+                listOf(
+                    RetentionPolicy(Metric.HEART_RATE, listOf(RetentionPolicy.Stage(2, interval)))
+                ),
+                NOW
+            )
+        }
+
+        // The average of the original records rather than the one of the hourly averages
+        db.rawQuery(
+            "SELECT ${RecordColumns.VALUE} FROM $table WHERE ${RecordColumns.TIME} = ?",
+            arrayOf(START.toString())
+        ).use {
+            Assert.assertTrue(it.moveToFirst())
+            Assert.assertEquals(
+                (6 * 42.5 + 23 * 12 * 27.5) / (6 + 23 * 12),
+                it.getDouble(0),
+                1e-9
+            )
+        }
+    }
+
+    @Test
+    fun downsampleArchived() {
+        Assert.assertTrue(archive.archiveOldestDay(db, START + DAY))
+
+        retention.apply(
+            db,
+            listOf(RetentionPolicy(Metric.HEART_RATE, listOf(RetentionPolicy.Stage(2, DAY)))),
+            NOW
+        )
+        Assert.assertEquals(1L + 2 * 24L * 12L, count(archive.getSource()))
+        Assert.assertEquals(1L + 2 * 24L * 12L, getSummaryCount())
+    }
+
+    @Test
+    fun delete() {
+        Assert.assertTrue(archive.archiveOldestDay(db, START + DAY))
+
+        retention.apply(
+            db,
+            listOf(RetentionPolicy(Metric.HEART_RATE, listOf(RetentionPolicy.Stage(1, 0L)))),
+            NOW
+        )
+        Assert.assertEquals(24L * 12L, count(archive.getSource()))
+        Assert.assertEquals(24L * 12L, getSummaryCount())
+        Assert.assertEquals(START + 2 * DAY, getFirstTime())
+    }
+
+    private fun count(source: String): Long {
+        return db.rawQuery("SELECT COUNT(*) FROM $source", null).use {
+            it.moveToFirst()
+            it.getLong(0)
+        }
+    }
+
+    private fun getSummaryCount(): Long {
+        return db.rawQuery(
+            "SELECT ${RecordSummaryTable.COUNT} FROM ${summaryTable.name} " +
+                "WHERE ${RecordColumns._METRIC} = ?",
+            arrayOf(Metric.HEART_RATE.toString())
+        ).use {
+            it.moveToFirst()
+            it.getLong(0)
+        }
+    }
+
+    private fun getFirstTime(): Long {
+        return db.rawQuery(
+            "SELECT MIN(${RecordColumns.TIME}) FROM ${archive.getSource()}",
+            null
+        ).use {
+            it.moveToFirst()
+            it.getLong(0)
+        }
+    }
+
+    private fun getIds(): List<Long> {
+        return db.rawQuery("SELECT ${RecordColumns._ID} FROM $table ORDER BY 1", null).use {
+            val ids = mutableListOf<Long>()
+            while (it.moveToNext()) {
+                ids += it.getLong(0)
+            }
+            ids
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.os.SystemClock
+import android.util.Log
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+@RunWith(JUnit4::class)
+class SqlCheckerTest {
+
+    companion object {
+        private const val TAG = "SqlCheckerBenchmark"
+        private const val ITERATIONS = 10000
+
+        private const val SELECTION = "_metric = ? AND time >= ? AND time < ? " +
+            "AND (value > 60 OR \"value\" IS NULL) -- filter\n"
+        private const val SORT_ORDER = "time DESC, _id DESC"
+    }
+
+    private val checker = SqlChecker(listOf("Access", "hearth_blood", "select"))
+
+    @Test
+    fun validSql() {
+        checker.ensureNoInvalidTokens(SELECTION)
+        checker.ensureNoInvalidTokens(SORT_ORDER)
+        // Validated twice: the second time it's read from the cache
+        checker.ensureNoInvalidTokens(SELECTION)
+        checker.ensureSingleTokenOnly("value")
+        checker.ensureSingleTokenOnly("value")
+    }
+
+    @Test(expected = SqlChecker.InvalidSqlException::class)
+    fun invalidTokenIgnoresCase() {
+        checker.ensureNoInvalidTokens("_id IN (SeLeCt _id FROM access)")
+    }
+
+    @Test(expected = SqlChecker.InvalidSqlException::class)
+    fun privatePrefix() {
+        checker.ensureNoInvalidTokens("X_secret = 1")
+    }
+
+    @Test(expected = SqlChecker.InvalidSqlException::class)
+    fun semicolon() {
+        checker.ensureNoInvalidTokens("time > 0; DROP TABLE hearth_blood")
+    }
+
+    @Test(expected = SqlChecker.InvalidSqlException::class)
+    fun multipleTokens() {
+        checker.ensureSingleTokenOnly("value, time")
+    }
+
+    @Test
+    fun invalidIsNotCached() {
+        repeat(2) {
+            try {
+                checker.ensureNoInvalidTokens("time IN (select time FROM hearth_blood)")
+                Assert.fail("Did not throw InvalidSqlException")
+            } catch (e: SqlChecker.InvalidSqlException) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    fun benchmark() {
+        val uncached = measure {
+            // A new checker has an empty cache
+            SqlChecker(listOf("access", "hearth_blood", "select")).run {
+                ensureNoInvalidTokens(SELECTION)
+                ensureNoInvalidTokens(SORT_ORDER)
+            }
+        }
+        val cached = measure {
+            checker.ensureNoInvalidTokens(SELECTION)
+            checker.ensureNoInvalidTokens(SORT_ORDER)
+        }
+        Log.i(TAG, "selection + sort order: uncached=${uncached}ns, cached=${cached}ns")
+    }
+
+    /**
+     * @return Average duration of [block] in nanoseconds
+     */
+    private fun measure(block: () -> Unit): Long {
+        // Warm up
+        repeat(ITERATIONS / 10) { block() }
+
+        val start = SystemClock.elapsedRealtimeNanos()
+        repeat(ITERATIONS) { block() }
+        return (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS
+    }
+}
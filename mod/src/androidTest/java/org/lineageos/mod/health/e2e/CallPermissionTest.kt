@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.lineageos.mod.health.e2e
+
+import android.content.ContentProvider
+import android.content.ContentProviderClient
+import android.content.ContentValues
+import android.os.Binder
+import android.os.Bundle
+import android.os.Process
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.lineageos.mod.health.common.BulkInsert
+import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.Metric
+import org.lineageos.mod.health.common.SampleSeries
+import org.lineageos.mod.health.common.db.RecordColumns
+
+@RunWith(AndroidJUnit4::class)
+class CallPermissionTest {
+    companion object {
+        private const val NOBODY_UID = 9999
+    }
+
+    private lateinit var client: ContentProviderClient
+    private lateinit var provider: ContentProvider
+
+    @Before
+    fun setup() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        client = context.contentResolver.acquireContentProviderClient(CareCacheUri.HEART_BLOOD)!!
+        provider = client.localContentProvider!!
+    }
+
+    @After
+    fun tearDown() {
+        client.close()
+    }
+
+    @Test(expected = SecurityException::class)
+    fun bulkInsertWithoutPermission() {
+        val extras = Bundle().apply {
+            putParcelableArray(
+                BulkInsert.EXTRA_VALUES,
+                arrayOf(
+                    ContentValues().apply {
+                        put(RecordColumns._METRIC, Metric.HEART_RATE)
+                        put(RecordColumns.TIME, System.currentTimeMillis())
+                        put(RecordColumns.VALUE, 60.0)
+                    }
+                )
+            )
+        }
+        callAsOtherApp(BulkInsert.METHOD, extras)
+    }
+
+    @Test(expected = SecurityException::class)
+    fun appendSamplesWithoutPermission() {
+        val extras = Bundle().apply {
+            putInt(SampleSeries.EXTRA_METRIC, Metric.HEART_RATE)
+            putByteArray(SampleSeries.EXTRA_SAMPLES, ByteArray(0))
+        }
+        callAsOtherApp(SampleSeries.METHOD_APPEND, extras)
+    }
+
+    /**
+     * Call [method] as if it came from an app without any permission.
+     */
+    private fun callAsOtherApp(method: String, extras: Bundle): Bundle? {
+        val identity = Binder.clearCallingIdentity()
+        try {
+            Binder.restoreCallingIdentity((NOBODY_UID.toLong() shl 32) or Process.myPid().toLong())
+            return provider.call(method, null, extras)
+        } finally {
+            Binder.restoreCallingIdentity(identity)
+        }
+    }
+}
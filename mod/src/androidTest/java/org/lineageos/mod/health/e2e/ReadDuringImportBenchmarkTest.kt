@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.e2e
+
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.lineageos.mod.health.common.Metric
+import org.lineageos.mod.health.sdk.model.records.heartblood.HeartRateRecord
+import org.lineageos.mod.health.sdk.repo.HeartBloodRecordsRepo
+import org.lineageos.mod.health.sdk.repo.OperationResult
+
+/**
+ * Measures the latency of the queries performed while another thread
+ * is importing records in a single large batch. The results are logged
+ * with the [TAG] tag so they can be compared across builds.
+ */
+@RunWith(AndroidJUnit4::class)
+class ReadDuringImportBenchmarkTest {
+    companion object {
+        private const val TAG = "ReadDuringImportBenchmark"
+        private const val ROWS = 20000
+
+        // 2001-01-01, far from the records of the other tests
+        private const val BASE_TIME = 978307200000L
+    }
+
+    private lateinit var repo: HeartBloodRecordsRepo
+
+    @Before
+    fun setup() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        repo = HeartBloodRecordsRepo.getInstance(context.contentResolver)
+        repo.deleteByTime(Metric.HEART_RATE, BASE_TIME, BASE_TIME + ROWS)
+        Assert.assertTrue(
+            repo.insert(HeartRateRecord(0L, BASE_TIME, 60.0)) is OperationResult.Success<*>
+        )
+    }
+
+    @After
+    fun tearDown() {
+        repo.deleteByTime(Metric.HEART_RATE, BASE_TIME, BASE_TIME + ROWS)
+    }
+
+    @Test
+    fun readDuringImport() {
+        var results = emptyArray<OperationResult>()
+        val importer = Thread {
+            results = repo.executeBatch { ops ->
+                (1 until ROWS).forEach {
+                    ops.insert(HeartRateRecord(0L, BASE_TIME + it, 60.0 + it % 40))
+                }
+            }
+        }
+
+        val latencies = mutableListOf<Long>()
+        importer.start()
+        while (importer.isAlive) {
+            val start = SystemClock.elapsedRealtimeNanos()
+            Assert.assertNotNull(repo.getLatest(Metric.HEART_RATE))
+            latencies += (SystemClock.elapsedRealtimeNanos() - start) / 1000L
+        }
+        importer.join()
+
+        Assert.assertEquals(ROWS - 1, results.size)
+        Assert.assertFalse(latencies.isEmpty())
+        latencies.sort()
+        Log.i(
+            TAG,
+            "${latencies.size} queries: " +
+                "p50=${latencies[latencies.size / 2]}us, " +
+                "p95=${latencies[latencies.size * 95 / 100]}us, " +
+                "max=${latencies.last()}us"
+        )
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.e2e
+
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.lineageos.mod.health.common.Metric
+import org.lineageos.mod.health.sdk.model.records.heartblood.HeartRateRecord
+import org.lineageos.mod.health.sdk.repo.HeartBloodRecordsRepo
+import org.lineageos.mod.health.sdk.repo.OperationResult
+
+/**
+ * Measures the throughput of batch writes. The results are logged
+ * as rows/sec with the [TAG] tag so they can be compared across builds.
+ */
+@RunWith(AndroidJUnit4::class)
+class RecordWriteBenchmarkTest {
+    companion object {
+        private const val TAG = "RecordWriteBenchmark"
+        private const val ROWS = 5000
+
+        /**
+         * Too many operations for a single binder transaction
+         */
+        private const val LARGE_ROWS = 50_000
+
+        // 2000-01-01, far from the records of the other tests
+        private const val BASE_TIME = 946684800000L
+    }
+
+    private lateinit var repo: HeartBloodRecordsRepo
+
+    @Before
+    fun setup() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        repo = HeartBloodRecordsRepo.getInstance(context.contentResolver)
+        repo.deleteByTime(Metric.HEART_RATE, BASE_TIME, BASE_TIME + LARGE_ROWS)
+    }
+
+    @After
+    fun tearDown() {
+        repo.deleteByTime(Metric.HEART_RATE, BASE_TIME, BASE_TIME + LARGE_ROWS)
+    }
+
+    @Test
+    fun batchWrites() {
+        var records = (0 until ROWS).map {
+            HeartRateRecord(0L, BASE_TIME + it, 60.0 + it % 40)
+        }
+        val ids = measure("insert") {
+            repo.executeBatch { ops -> records.forEach { ops.insert(it) } }
+        }.map { (it as OperationResult.Success<*>).result as Long }
+
+        records = records.mapIndexed { i, it ->
+            HeartRateRecord(ids[i], it.time, it.value + 1.0)
+        }
+        measure("update") {
+            repo.executeBatch { ops -> records.forEach { ops.update(it) } }
+        }
+        measure("delete") {
+            repo.executeBatch { ops -> records.forEach { ops.delete(it) } }
+        }
+
+        Assert.assertEquals(
+            0,
+            repo.getTimeSeries(Metric.HEART_RATE, BASE_TIME, BASE_TIME + ROWS).size()
+        )
+    }
+
+    @Test
+    fun largeImport() {
+        val records = (0 until LARGE_ROWS).map {
+            HeartRateRecord(0L, BASE_TIME + it, 60.0 + it % 40)
+        }
+        val start = SystemClock.elapsedRealtimeNanos()
+        val results = repo.executeBatch { ops -> records.forEach { ops.insert(it) } }
+        val elapsed = SystemClock.elapsedRealtimeNanos() - start
+
+        Assert.assertEquals(LARGE_ROWS, results.size)
+        results.forEach { Assert.assertTrue(it is OperationResult.Success<*>) }
+        Log.i(TAG, "large import: ${LARGE_ROWS * 1_000_000_000L / elapsed} rows/sec")
+    }
+
+    private fun measure(
+        name: String,
+        block: () -> Array<OperationResult>
+    ): Array<OperationResult> {
+        val start = SystemClock.elapsedRealtimeNanos()
+        val results = block()
+        val elapsed = SystemClock.elapsedRealtimeNanos() - start
+
+        Assert.assertEquals(ROWS, results.size)
+        results.forEach { Assert.assertTrue(it is OperationResult.Success<*>) }
+        Log.i(TAG, "$name: ${ROWS * 1_000_000_000L / elapsed} rows/sec")
+        return results
+    }
+}
@@ -18,6 +18,7 @@ package org.lineageos.mod.health.e2e.heartblood
 
 import android.content.ContentResolver
 import android.content.ContentValues
+import android.database.ContentObserver
 import android.net.Uri
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.platform.app.InstrumentationRegistry
@@ -28,9 +29,21 @@ import org.junit.runner.RunWith
 import org.lineageos.mod.health.common.CareCacheUri
 import org.lineageos.mod.health.common.Metric
 import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.common.values.TimeBucket
+import org.lineageos.mod.health.sdk.model.records.AggregateBucket
+import org.lineageos.mod.health.sdk.model.records.TimeSeries
+import org.lineageos.mod.health.sdk.model.records.TimeValue
+import org.lineageos.mod.health.sdk.model.records.heartblood.BloodPressureRecord
+import org.lineageos.mod.health.sdk.model.records.heartblood.HeartBloodRecord
 import org.lineageos.mod.health.sdk.model.records.heartblood.HeartRateRecord
+import org.lineageos.mod.health.sdk.model.records.heartblood.PerfusionIndexRecord
+import org.lineageos.mod.health.sdk.model.values.PressureValue
 import org.lineageos.mod.health.sdk.repo.HeartBloodRecordsRepo
 import org.lineageos.mod.health.sdk.repo.OperationResult
+import org.lineageos.mod.health.sdk.repo.RecordProjection
+import java.util.Calendar
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
 
 @RunWith(AndroidJUnit4::class)
 class HeartBloodRecordsTest {
@@ -61,6 +74,408 @@ class HeartBloodRecordsTest {
         Assert.assertTrue(repo.delete(fromDb) is OperationResult.Success<*>)
     }
 
+    @Test
+    fun timeRange() {
+        val now = System.currentTimeMillis()
+        val a = HeartRateRecord(0L, now - 3_600_000L, 60.0)
+        val b = HeartRateRecord(0L, now - 60_000L, 72.0)
+        val c = HeartRateRecord(0L, now, 81.0)
+        listOf(a, b, c).forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val inRange = repo.getHeartRateRecords(now - 120_000L, now)
+        Assert.assertEquals(listOf(b), inRange)
+
+        val all = repo.getHeartRateRecords(now - 3_600_000L, now + 1L)
+        Assert.assertEquals(listOf(c, b, a), all)
+
+        all.forEach(repo::delete)
+    }
+
+    @Test
+    fun paging() {
+        val now = System.currentTimeMillis()
+        val records = (0 until 5).map { HeartRateRecord(0L, now - it * 1_000L, 60.0 + it) }
+        records.forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val firstPage = repo.getPage(Metric.HEART_RATE, now - 10_000L, now + 1L, 2, null)
+        Assert.assertEquals(records.subList(0, 2), firstPage.records)
+        Assert.assertTrue(firstPage.hasNext())
+
+        val secondPage = repo.getPage(
+            Metric.HEART_RATE, now - 10_000L, now + 1L, 2, firstPage.continuationToken
+        )
+        Assert.assertEquals(records.subList(2, 4), secondPage.records)
+        Assert.assertTrue(secondPage.hasNext())
+
+        val lastPage = repo.getPage(
+            Metric.HEART_RATE, now - 10_000L, now + 1L, 2, secondPage.continuationToken
+        )
+        Assert.assertEquals(records.subList(4, 5), lastPage.records)
+        Assert.assertFalse(lastPage.hasNext())
+
+        (firstPage.records + secondPage.records + lastPage.records).forEach(repo::delete)
+    }
+
+    @Test
+    fun iteration() {
+        val now = System.currentTimeMillis()
+        val records = (0 until 3).map { HeartRateRecord(0L, now - it * 1_000L, 70.0 + it) }
+        records.forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val visited = mutableListOf<HeartBloodRecord<*>>()
+        repo.forEach(Metric.HEART_RATE, now - 10_000L, now + 1L) { visited.add(it) }
+        Assert.assertEquals(records, visited)
+
+        val iterated = mutableListOf<HeartBloodRecord<*>>()
+        repo.iterator(Metric.HEART_RATE, now - 10_000L, now + 1L).use {
+            while (it.hasNext()) {
+                iterated.add(it.next())
+            }
+        }
+        Assert.assertEquals(records, iterated)
+
+        iterated.forEach(repo::delete)
+    }
+
+    @Test
+    fun projection() {
+        val now = System.currentTimeMillis()
+        val a = HeartRateRecord(0L, now - 1_000L, 64.0)
+        val b = HeartRateRecord(0L, now, 68.0)
+        listOf(a, b).forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val values = repo.getProjected(
+            Metric.HEART_RATE, now - 10_000L, now + 1L, RecordProjection.TIME_VALUE
+        )
+        Assert.assertEquals(listOf(TimeValue(now, 68.0), TimeValue(now - 1_000L, 64.0)), values)
+
+        repo.getHeartRateRecords(now - 10_000L, now + 1L).forEach(repo::delete)
+    }
+
+    @Test
+    fun timeline() {
+        val now = System.currentTimeMillis()
+        val a = HeartRateRecord(0L, now - 2_000L, 80.0)
+        val b = BloodPressureRecord(0L, now - 1_000L, PressureValue.mmHg(120.0),
+            PressureValue.mmHg(80.0))
+        val c = HeartRateRecord(0L, now, 82.0)
+        listOf(a, b, c).forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val timeline = repo.all.takeLast(3)
+        Assert.assertEquals(listOf<HeartBloodRecord<*>>(a, b, c), timeline)
+
+        timeline.forEach(repo::delete)
+    }
+
+    @Test
+    fun timeSeries() {
+        val now = System.currentTimeMillis()
+        val records = (0 until 3).map { HeartRateRecord(0L, now - it * 1_000L, 90.0 + it) }
+        records.forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val series = repo.getTimeSeries(Metric.HEART_RATE, now - 10_000L, now + 1L)
+        Assert.assertEquals(3, series.size())
+        Assert.assertArrayEquals(longArrayOf(now - 2_000L, now - 1_000L, now), series.times)
+        Assert.assertArrayEquals(doubleArrayOf(92.0, 91.0, 90.0), series.values, 0.0)
+
+        repo.getHeartRateRecords(now - 10_000L, now + 1L).forEach(repo::delete)
+    }
+
+    @Test
+    fun aggregates() {
+        val dayStart = Calendar.getInstance().apply {
+            set(2021, Calendar.JANUARY, 15, 0, 0, 0)
+            set(Calendar.MILLISECOND, 0)
+        }.timeInMillis
+        val noon = dayStart + 12 * 3_600_000L
+        val records = listOf(
+            HeartRateRecord(0L, noon, 60.0),
+            HeartRateRecord(0L, noon + 60_000L, 70.0),
+            HeartRateRecord(0L, noon + 120_000L, 80.0),
+        )
+        records.forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        val days = repo.getAggregates(Metric.HEART_RATE, TimeBucket.DAY, dayStart, noon + 1L)
+        Assert.assertEquals(listOf(AggregateBucket(dayStart, 1, 60.0, 60.0, 60.0, 60.0)), days)
+
+        val hours = repo.getAggregates(
+            Metric.HEART_RATE, TimeBucket.HOUR, dayStart, dayStart + 86_400_000L
+        )
+        Assert.assertEquals(listOf(AggregateBucket(noon, 3, 60.0, 80.0, 70.0, 210.0)), hours)
+
+        repo.getHeartRateRecords(noon, noon + 120_001L).forEach(repo::delete)
+    }
+
+    @Test
+    fun rollups() {
+        // 2021-01-16T00:00:00Z
+        val dayStart = 1_610_755_200_000L
+        val noon = dayStart + 12 * 3_600_000L
+        val records = listOf(
+            HeartRateRecord(0L, noon, 60.0),
+            HeartRateRecord(0L, noon + 60_000L, 90.0),
+            HeartRateRecord(0L, noon + 3_600_000L, 75.0),
+        )
+        records.forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+        val dayEnd = dayStart + 86_400_000L
+
+        val hours = repo.getAggregates(Metric.HEART_RATE, TimeBucket.UTC_HOUR, dayStart, dayEnd)
+        Assert.assertEquals(
+            listOf(
+                AggregateBucket(noon, 2, 60.0, 90.0, 75.0, 150.0, 90.0),
+                AggregateBucket(noon + 3_600_000L, 1, 75.0, 75.0, 75.0, 75.0, 75.0),
+            ),
+            hours
+        )
+        val days = repo.getAggregates(Metric.HEART_RATE, TimeBucket.UTC_DAY, dayStart, dayEnd)
+        Assert.assertEquals(listOf(AggregateBucket(dayStart, 3, 60.0, 90.0, 75.0, 225.0, 75.0)),
+            days)
+
+        // Deleting the maximum and the last value recomputes them
+        val fromDb = repo.getHeartRateRecords(dayStart, dayEnd)
+        fromDb.filter { it.time != noon }.forEach(repo::delete)
+        Assert.assertEquals(
+            listOf(AggregateBucket(dayStart, 1, 60.0, 60.0, 60.0, 60.0, 60.0)),
+            repo.getAggregates(Metric.HEART_RATE, TimeBucket.UTC_DAY, dayStart, dayEnd)
+        )
+
+        repo.getHeartRateRecords(dayStart, dayEnd).forEach(repo::delete)
+        Assert.assertTrue(
+            repo.getAggregates(Metric.HEART_RATE, TimeBucket.UTC_HOUR, dayStart, dayEnd).isEmpty()
+        )
+    }
+
+    @Test
+    fun samples() {
+        val start = System.currentTimeMillis()
+        val times = LongArray(5_000) { start + it * 1_000L }
+        val values = DoubleArray(times.size) { 60.0 + it % 30 }
+        // Appended in two steps, filling more than a chunk
+        val first = TimeSeries(times.copyOf(3_000), values.copyOf(3_000))
+        val second = TimeSeries(
+            times.copyOfRange(3_000, times.size),
+            values.copyOfRange(3_000, times.size)
+        )
+        listOf(first, second).forEach {
+            val result = repo.appendSamples(Metric.HEART_RATE, it)
+            Assert.assertEquals(it.size(), (result as OperationResult.Success<*>).result)
+        }
+        // Samples before the last one are rejected
+        Assert.assertTrue(
+            repo.appendSamples(Metric.HEART_RATE, first) is OperationResult.Failure
+        )
+
+        val end = times.last() + 1L
+        val all = repo.getSamples(Metric.HEART_RATE, start, end)
+        Assert.assertArrayEquals(times, all.times)
+        Assert.assertArrayEquals(values, all.values, 0.0)
+
+        val range = repo.getSamples(Metric.HEART_RATE, times[3_590], times[3_610])
+        Assert.assertArrayEquals(times.copyOfRange(3_590, 3_610), range.times)
+
+        var count = 0
+        repo.samplesIterator(Metric.HEART_RATE, start, end).use {
+            while (it.moveToNext()) {
+                Assert.assertEquals(times[count], it.time)
+                count++
+            }
+        }
+        Assert.assertEquals(times.size, count)
+
+        // Deleting part of a chunk keeps the rest of it
+        val deleted = repo.deleteSamples(Metric.HEART_RATE, times[100], times[200])
+        Assert.assertEquals(100, (deleted as OperationResult.Success<*>).result)
+        Assert.assertEquals(
+            times.size - 100,
+            repo.getSamples(Metric.HEART_RATE, start, end).size()
+        )
+
+        repo.deleteSamples(Metric.HEART_RATE, start, end)
+        Assert.assertEquals(0, repo.getSamples(Metric.HEART_RATE, start, end).size())
+    }
+
+    @Test
+    fun summary() {
+        val before = repo.getSummary(Metric.PERFUSION_INDEX)
+        val now = System.currentTimeMillis()
+        val a = PerfusionIndexRecord(0L, now - 1_000L, 0.4)
+        val b = PerfusionIndexRecord(0L, now, 0.5)
+        listOf(a, b).forEach {
+            Assert.assertTrue(repo.insert(it) is OperationResult.Success<*>)
+        }
+
+        Assert.assertEquals(b, repo.getLatest(Metric.PERFUSION_INDEX))
+        val summary = repo.getSummary(Metric.PERFUSION_INDEX)
+        Assert.assertEquals(before.count + 2, summary.count)
+        Assert.assertEquals(now, summary.lastTime)
+        Assert.assertEquals(b, summary.latest)
+
+        repo.getPerfusionIndexRecords(now - 1_000L, now + 1L).forEach(repo::delete)
+        Assert.assertEquals(before.count, repo.getSummary(Metric.PERFUSION_INDEX).count)
+    }
+
+    @Test
+    fun rangeDelete() {
+        val now = System.currentTimeMillis()
+        val records = (0 until 4).map { HeartRateRecord(0L, now - it * 1_000L, 100.0 + it) }
+        val ids = records.map {
+            (repo.insert(it) as OperationResult.Success<*>).result as Long
+        }
+
+        val byTime = repo.deleteByTime(Metric.HEART_RATE, now - 1_000L, now + 1L)
+        Assert.assertEquals(2, (byTime as OperationResult.Success<*>).result)
+        Assert.assertEquals(
+            records.subList(2, 4),
+            repo.getHeartRateRecords(now - 10_000L, now + 1L)
+        )
+
+        val byIds = repo.deleteByIds(Metric.HEART_RATE, *ids.toLongArray())
+        Assert.assertEquals(2, (byIds as OperationResult.Success<*>).result)
+        Assert.assertTrue(repo.getHeartRateRecords(now - 10_000L, now + 1L).isEmpty())
+    }
+
+    @Test
+    fun upsert() {
+        val now = System.currentTimeMillis()
+        val a = HeartRateRecord(0L, now, 65.0).apply { externalId = "sync-1" }
+        val idA = (repo.upsert(a) as OperationResult.Success<*>).result as Long
+
+        // Sending the same record again does not create a duplicate
+        val idAgain = (repo.upsert(a) as OperationResult.Success<*>).result as Long
+        Assert.assertEquals(idA, idAgain)
+        Assert.assertEquals(1, repo.getHeartRateRecords(now, now + 1L).size)
+
+        val b = HeartRateRecord(0L, now, 66.0).apply { externalId = "sync-1" }
+        val idB = (repo.upsert(b) as OperationResult.Success<*>).result as Long
+        Assert.assertEquals(idA, idB)
+
+        val fromDb = repo.getHeartRateRecord(idA)
+        Assert.assertEquals(b, fromDb)
+        Assert.assertEquals("sync-1", fromDb?.externalId)
+
+        Assert.assertTrue(repo.deleteByIds(Metric.HEART_RATE, idA) is OperationResult.Success<*>)
+    }
+
+    @Test
+    fun groupCommit() {
+        val now = System.currentTimeMillis()
+        val ids = ConcurrentLinkedQueue<Long>()
+        repo.setGroupCommit(true)
+        try {
+            val threads = (0 until 4).map { t ->
+                Thread {
+                    repeat(10) {
+                        val record = HeartRateRecord(0L, now - t * 100L - it, 70.0 + it)
+                        ids += (repo.insert(record) as OperationResult.Success<*>).result as Long
+                    }
+                }
+            }
+            threads.forEach(Thread::start)
+            threads.forEach(Thread::join)
+        } finally {
+            repo.setGroupCommit(false)
+        }
+
+        Assert.assertEquals(40, ids.toSet().size)
+        Assert.assertEquals(40, repo.getHeartRateRecords(now - 1_000L, now + 1L).size)
+        Assert.assertTrue(
+            repo.deleteByIds(Metric.HEART_RATE, *ids.toLongArray()) is OperationResult.Success<*>
+        )
+    }
+
+    @Test
+    fun insertAll() {
+        val now = System.currentTimeMillis()
+        val records = listOf(
+            HeartRateRecord(0L, now - 2_000L, 60.0),
+            // Invalid value: not inserted, but does not affect the others
+            HeartRateRecord(0L, now - 1_000L, -1.0),
+            HeartRateRecord(0L, now, 62.0)
+        )
+
+        val results = repo.insertAll(records)
+        Assert.assertEquals(3, results.size)
+        Assert.assertTrue(results[0] is OperationResult.Success<*>)
+        Assert.assertTrue(results[1] is OperationResult.Failure)
+        Assert.assertTrue(results[2] is OperationResult.Success<*>)
+        val ids = longArrayOf(
+            (results[0] as OperationResult.Success<*>).result as Long,
+            (results[2] as OperationResult.Success<*>).result as Long
+        )
+        Assert.assertEquals(60.0, repo.getHeartRateRecord(ids[0])!!.value, 0.0)
+        Assert.assertEquals(62.0, repo.getHeartRateRecord(ids[1])!!.value, 0.0)
+
+        // bulkInsert only counts the inserted records
+        val uri = Uri.withAppendedPath(CareCacheUri.HEART_BLOOD, "${Metric.HEART_RATE}")
+        val values = records.map { it.toContentValues() }.toTypedArray()
+        Assert.assertEquals(2, cr.bulkInsert(uri, values))
+
+        Assert.assertTrue(
+            repo.deleteByTime(Metric.HEART_RATE, now - 2_000L, now + 1L)
+                is OperationResult.Success<*>
+        )
+    }
+
+    @Test
+    fun notifications() {
+        val heartRateChanges = AtomicInteger()
+        val perfusionChanges = AtomicInteger()
+        val heartRateObserver = object : ContentObserver(null) {
+            override fun onChange(selfChange: Boolean) {
+                heartRateChanges.incrementAndGet()
+            }
+        }
+        val perfusionObserver = object : ContentObserver(null) {
+            override fun onChange(selfChange: Boolean) {
+                perfusionChanges.incrementAndGet()
+            }
+        }
+        val heartRateUri = Uri.withAppendedPath(CareCacheUri.HEART_BLOOD, "${Metric.HEART_RATE}")
+        val perfusionUri = Uri.withAppendedPath(
+            CareCacheUri.HEART_BLOOD,
+            "${Metric.PERFUSION_INDEX}"
+        )
+        cr.registerContentObserver(heartRateUri, true, heartRateObserver)
+        cr.registerContentObserver(perfusionUri, true, perfusionObserver)
+
+        val now = System.currentTimeMillis()
+        val results = try {
+            val results = repo.executeBatch { ops ->
+                (0 until 3).forEach { ops.insert(HeartRateRecord(0L, now - it, 90.0 + it)) }
+            }
+            Thread.sleep(500L)
+            results
+        } finally {
+            cr.unregisterContentObserver(heartRateObserver)
+            cr.unregisterContentObserver(perfusionObserver)
+        }
+
+        // A single notification for the whole batch, only for the changed metric
+        Assert.assertEquals(1, heartRateChanges.get())
+        Assert.assertEquals(0, perfusionChanges.get())
+
+        val ids = results.map { (it as OperationResult.Success<*>).result as Long }
+        Assert.assertTrue(
+            repo.deleteByIds(Metric.HEART_RATE, *ids.toLongArray()) is OperationResult.Success<*>
+        )
+    }
+
     @Test(expected = IllegalArgumentException::class)
     fun invalidInsert() {
         val cv = ContentValues().apply {
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.series
+
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import org.lineageos.mod.health.common.series.SampleCodec
+
+@RunWith(JUnit4::class)
+class SampleCodecTest {
+
+    companion object {
+        private const val START = 1_610_755_200_000L
+        private const val SAMPLES = 3600
+    }
+
+    @Test
+    fun roundTrip() {
+        val times = LongArray(SAMPLES) { START + it * 1_000L + (if (it % 97 == 0) 13L else 0L) }
+        val values = DoubleArray(SAMPLES) { 60.0 + (it * 7 % 41) / 3.0 }
+        // Irregular gaps and special values
+        times[10] = times[9]
+        values[5] = Double.NaN
+        values[6] = -0.0
+        values[7] = 1e300
+        for (i in 11 until SAMPLES) {
+            times[i] += 1L shl 40
+        }
+
+        assertDecodes(times, values, SampleCodec.encode(times, values, 0, SAMPLES))
+    }
+
+    @Test
+    fun appendAfterEncoding() {
+        val encoder = SampleCodec.Encoder()
+        encoder.append(START, 70.0)
+        val first = encoder.toByteArray()
+        encoder.append(START + 1_000L, 71.0)
+
+        assertDecodes(longArrayOf(START), doubleArrayOf(70.0), first)
+        assertDecodes(
+            longArrayOf(START, START + 1_000L),
+            doubleArrayOf(70.0, 71.0),
+            encoder.toByteArray()
+        )
+        Assert.assertEquals(START, encoder.firstTime)
+        Assert.assertEquals(START + 1_000L, encoder.lastTime)
+    }
+
+    @Test
+    fun resumeFromTail() {
+        val times = LongArray(SAMPLES) { START + it * 1_000L + it % 3 }
+        val values = DoubleArray(SAMPLES) { 60.0 + (it % 7) * 0.5 }
+        val middle = SAMPLES / 2
+        val first = SampleCodec.Encoder()
+        for (i in 0 until middle) {
+            first.append(times[i], values[i])
+        }
+
+        val encoder = SampleCodec.Encoder.resume(first.toByteArray(), first.tail)
+        for (i in middle until SAMPLES) {
+            encoder.append(times[i], values[i])
+        }
+        Assert.assertArrayEquals(
+            SampleCodec.encode(times, values, 0, SAMPLES),
+            encoder.toByteArray()
+        )
+        Assert.assertEquals(START, encoder.firstTime)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun resumeFromMismatchedTail() {
+        val encoder = SampleCodec.Encoder()
+        encoder.append(START, 70.0)
+        val tail = encoder.tail
+        encoder.append(START + 1_000L, 71.0)
+        SampleCodec.Encoder.resume(encoder.toByteArray(), tail)
+    }
+
+    @Test
+    fun compression() {
+        // A heart rate sensor at 1 Hz
+        val times = LongArray(SAMPLES) { START + it * 1_000L }
+        val values = DoubleArray(SAMPLES) { 60.0 + Math.round(10 * Math.sin(it / 60.0)) }
+        val bytes = SampleCodec.encode(times, values, 0, SAMPLES)
+        Assert.assertTrue("${bytes.size} bytes", bytes.size < SAMPLES)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun unsorted() {
+        SampleCodec.encode(longArrayOf(START, START - 1L), doubleArrayOf(1.0, 2.0), 0, 2)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun truncated() {
+        val times = LongArray(100) { START + it * 1_000L }
+        val values = DoubleArray(100) { it.toDouble() }
+        val bytes = SampleCodec.encode(times, values, 0, 100)
+        val decoder = SampleCodec.Decoder(bytes.copyOf(bytes.size / 2))
+        while (decoder.hasNext()) {
+            decoder.next()
+        }
+    }
+
+    private fun assertDecodes(times: LongArray, values: DoubleArray, bytes: ByteArray) {
+        val decoder = SampleCodec.Decoder(bytes)
+        Assert.assertEquals(times.size, decoder.count)
+        for (i in times.indices) {
+            Assert.assertTrue(decoder.hasNext())
+            decoder.next()
+            Assert.assertEquals(times[i], decoder.time)
+            Assert.assertEquals(values[i].toRawBits(), decoder.value.toRawBits())
+        }
+        Assert.assertFalse(decoder.hasNext())
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.validators
+
+import android.content.ContentValues
+import android.os.SystemClock
+import android.util.Log
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import org.lineageos.mod.health.common.Metric
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.common.validation.RecordConstraints
+
+@RunWith(JUnit4::class)
+class RecordValidatorTest {
+
+    companion object {
+        private const val TAG = "RecordValidatorBenchmark"
+        private const val ITERATIONS = 100000
+    }
+
+    // No _id and _version: the validator would remove them
+    private val activity = ContentValues().apply {
+        put(RecordColumns._METRIC, Metric.WALKING)
+        put(RecordColumns.TIME, System.currentTimeMillis())
+        put(RecordColumns.DURATION, 60_000L)
+        put(RecordColumns.AVG_SPEED, 4.5)
+        put(RecordColumns.CALORIES, 12.0)
+        put(RecordColumns.DISTANCE, 0.075)
+        put(RecordColumns.STEPS, 100L)
+    }
+
+    private val heartRate = ContentValues().apply {
+        put(RecordColumns._METRIC, Metric.HEART_RATE)
+        put(RecordColumns.TIME, System.currentTimeMillis())
+        put(RecordColumns.VALUE, 72.0)
+    }
+
+    @Test
+    fun valid() {
+        Assert.assertNull(RecordConstraints.check(Metric.WALKING, activity))
+        Assert.assertNull(RecordConstraints.check(Metric.HEART_RATE, heartRate))
+        RecordValidator.validate(ContentValues(activity))
+    }
+
+    @Test
+    fun invalid() {
+        val negativeSteps = ContentValues(activity).apply { put(RecordColumns.STEPS, -1L) }
+        Assert.assertNotNull(RecordConstraints.check(Metric.WALKING, negativeSteps))
+
+        val nanValue = ContentValues(heartRate).apply { put(RecordColumns.VALUE, Double.NaN) }
+        Assert.assertNotNull(RecordConstraints.check(Metric.HEART_RATE, nanValue))
+
+        val noTime = ContentValues(heartRate).apply { remove(RecordColumns.TIME) }
+        Assert.assertNotNull(RecordConstraints.check(Metric.HEART_RATE, noTime))
+
+        val mood = ContentValues().apply {
+            put(RecordColumns.TIME, 0L)
+            put(RecordColumns.MOOD, 1L shl 11)
+        }
+        Assert.assertNotNull(RecordConstraints.check(Metric.MOOD, mood))
+
+        Assert.assertNotNull(RecordConstraints.check(-1, heartRate))
+    }
+
+    @Test(expected = Validator.ValidationException::class)
+    fun validatorThrows() {
+        val cv = ContentValues(heartRate).apply { put(RecordColumns.VALUE, -1.0) }
+        RecordValidator.validate(cv)
+    }
+
+    @Test
+    fun benchmark() {
+        val activityCost = measure { RecordValidator.validate(activity) }
+        val heartRateCost = measure { RecordValidator.validate(heartRate) }
+        Log.i(TAG, "Per-row validation: activity=${activityCost}ns, heart rate=${heartRateCost}ns")
+    }
+
+    /**
+     * @return Average duration of [block] in nanoseconds
+     */
+    private fun measure(block: () -> Unit): Long {
+        // Warm up
+        repeat(ITERATIONS / 10) { block() }
+
+        val start = SystemClock.elapsedRealtimeNanos()
+        repeat(ITERATIONS) { block() }
+        return (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS
+    }
+}
@@ -21,4 +21,8 @@ object UriConst {
     const val MATCH_METRIC = 1
     const val MATCH_PKG = 2
     const val MATCH_ITEM = 3
+    const val MATCH_AGGREGATE = 4
+    const val MATCH_SUMMARY = 5
+    const val MATCH_UPSERT = 6
+    const val MATCH_SERIES = 7
 }
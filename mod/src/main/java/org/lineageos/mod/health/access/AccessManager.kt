@@ -16,18 +16,31 @@
 
 package org.lineageos.mod.health.access
 
-import android.annotation.SuppressLint
 import android.content.ContentResolver
-import android.net.Uri
-import org.lineageos.mod.health.common.values.annotations.PolicyPermission
-import org.lineageos.mod.health.common.values.annotations.MetricType
-import org.lineageos.mod.health.common.values.Permission
 import org.lineageos.mod.health.common.CareCacheUri
 import org.lineageos.mod.health.common.db.AccessColumns
+import org.lineageos.mod.health.common.values.Permission
+import org.lineageos.mod.health.common.values.annotations.MetricType
+import org.lineageos.mod.health.common.values.annotations.PolicyPermission
+import org.lineageos.mod.util.SingletonHolder
+import java.util.concurrent.atomic.AtomicInteger
 
-class AccessManager(
+/**
+ * Access policy lookups.
+ *
+ * The whole access table is loaded in memory on the first lookup and kept until
+ * the [org.lineageos.mod.health.providers.access.AccessContentProvider] commits a change,
+ * so that each check is a map lookup instead of a query.
+ */
+class AccessManager private constructor(
     private val contentResolver: ContentResolver
 ) {
+    companion object : SingletonHolder<AccessManager, ContentResolver>({ AccessManager(it) })
+
+    private val generation = AtomicInteger()
+
+    @Volatile
+    private var cache: PermissionsCache? = null
 
     fun canRead(pkgName: String, @MetricType metric: Int): Boolean {
         return getPermissionsFor(pkgName, metric) and Permission.READ != 0
@@ -37,24 +50,55 @@ class AccessManager(
         return getPermissionsFor(pkgName, metric) and Permission.WRITE != 0
     }
 
+    /**
+     * Drop the cached policies. Must be called after every change to the access table.
+     */
+    fun invalidate() {
+        generation.incrementAndGet()
+        cache = null
+    }
+
     @PolicyPermission
-    @SuppressLint("Recycle") // AStudio goes mad over the elvis operator
     private fun getPermissionsFor(pkgName: String, @MetricType metric: Int): Int {
-        val uri = Uri.withAppendedPath(CareCacheUri.ACCESS, "$pkgName/$metric")
-        val query = contentResolver.query(
-            uri,
-            arrayOf(AccessColumns.PERMISSIONS),
+        val currentCache = cache
+        val permissions = if (currentCache != null && currentCache.generation == generation.get()) {
+            currentCache.permissions
+        } else {
+            load()
+        } ?: return Permission.NONE
+
+        // Not found, assume it's allowed
+        return permissions[key(pkgName, metric)] ?: Permission.ALL
+    }
+
+    private fun load(): Map<String, Int>? {
+        val loadGeneration = generation.get()
+        val cursor = contentResolver.query(
+            CareCacheUri.ACCESS,
+            arrayOf(AccessColumns.PKG_NAME, AccessColumns.METRIC, AccessColumns.PERMISSIONS),
+            null,
             null,
             null
-        ) ?: return Permission.NONE
+        ) ?: return null
 
-        if (!query.moveToFirst()) {
-            // Not found, assume it's allowed
-            return Permission.ALL
+        val permissions = HashMap<String, Int>(cursor.count)
+        cursor.use {
+            while (it.moveToNext()) {
+                permissions[key(it.getString(0), it.getInt(1))] = it.getInt(2)
+            }
         }
 
-        query.use {
-            return it.getInt(0)
+        // Don't cache the result if the table changed while it was being read
+        if (loadGeneration == generation.get()) {
+            cache = PermissionsCache(loadGeneration, permissions)
         }
+        return permissions
     }
+
+    private fun key(pkgName: String, metric: Int) = "$pkgName/$metric"
+
+    private class PermissionsCache(
+        val generation: Int,
+        val permissions: Map<String, Int>
+    )
 }
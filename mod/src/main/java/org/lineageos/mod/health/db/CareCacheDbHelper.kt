@@ -18,35 +18,34 @@ package org.lineageos.mod.health.db
 
 import android.content.Context
 import net.sqlcipher.database.SQLiteDatabase
-import net.sqlcipher.database.SQLiteOpenHelper
 import org.lineageos.mod.health.db.tables.AccessTable
-import org.lineageos.mod.health.db.tables.ActivityTable
-import org.lineageos.mod.health.db.tables.BodyTable
-import org.lineageos.mod.health.db.tables.BreathingTable
-import org.lineageos.mod.health.db.tables.HeartBloodTable
-import org.lineageos.mod.health.db.tables.MindfulnessTable
+import org.lineageos.mod.health.db.tables.MigrationTable
 import org.lineageos.mod.util.SingletonHolder
 
+/**
+ * Database of the access policies.
+ *
+ * Records used to be stored here too: they are now moved to the database
+ * of their category by [RecordDbHelper]. Their tables are left as they are
+ * until then, since only the columns they already have are moved.
+ */
 class CareCacheDbHelper private constructor(
     context: Context?
-) : SQLiteOpenHelper(
+) : WalDbHelper(
     context,
     NAME,
-    null,
     DB_VERSION
 ) {
     companion object : SingletonHolder<CareCacheDbHelper, Context?>({ CareCacheDbHelper(it) }) {
-        private const val DB_VERSION = 1
-        private const val NAME = "healthStore"
+        private const val DB_VERSION = 5
+        const val NAME = "healthStore"
     }
 
+    override val migrationTable = MigrationTable(arrayOf(AccessTable))
+
     private val tables = arrayOf(
         AccessTable,
-        ActivityTable,
-        BodyTable,
-        BreathingTable,
-        HeartBloodTable,
-        MindfulnessTable
+        migrationTable
     )
 
     override fun onCreate(db: SQLiteDatabase?) {
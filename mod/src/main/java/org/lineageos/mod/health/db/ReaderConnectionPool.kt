@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import net.sqlcipher.database.SQLiteDatabase
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Pool of connections used to read a database in write-ahead logging mode.
+ * Readers do not wait for the writing connection, and they can run in
+ * parallel with each other as long as they are picked from different connections.
+ *
+ * Connections are opened lazily, since deriving the encryption key of each
+ * one is expensive, and are handed out round-robin, preferring the ones that are
+ * not in use by other threads. A connection can be shared by multiple threads:
+ * its own lock serializes them.
+ */
+class ReaderConnectionPool(
+    private val path: String,
+    private val size: Int
+) {
+    private val connections = arrayOfNulls<SQLiteDatabase>(size)
+    private val next = AtomicInteger()
+
+    fun get(key: ByteArray): SQLiteDatabase {
+        val start = Math.floorMod(next.getAndIncrement(), size)
+        for (i in 0 until size) {
+            val connection = connections[(start + i) % size]
+            if (connection != null && connection.isOpen &&
+                !connection.isDbLockedByOtherThreads
+            ) {
+                return connection
+            }
+        }
+
+        return open(start, key)
+    }
+
+    @Synchronized
+    fun close() {
+        connections.forEachIndexed { i, connection ->
+            connection?.close()
+            connections[i] = null
+        }
+    }
+
+    @Synchronized
+    private fun open(index: Int, key: ByteArray): SQLiteDatabase {
+        val existing = connections[index]
+        if (existing != null && existing.isOpen) {
+            return existing
+        }
+
+        return SQLiteDatabase.openDatabase(
+            path,
+            key,
+            null,
+            SQLiteDatabase.OPEN_READWRITE
+        ).also {
+            // Never write from this connection: writes must go through the helper
+            it.execSQL("PRAGMA query_only = ON")
+            connections[index] = it
+        }
+    }
+}
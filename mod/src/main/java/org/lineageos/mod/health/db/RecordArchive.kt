@@ -0,0 +1,332 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.db.tables.RecordArchiveTable
+import org.lineageos.mod.health.db.tables.RecordRollupTable
+import org.lineageos.mod.health.db.tables.RecordSummaryTable
+import java.time.Instant
+import java.time.ZoneOffset
+import java.util.TreeMap
+
+/**
+ * Cold storage of the old records of a records table.
+ *
+ * Records older than the archive age are moved, one UTC day at a time, to a table
+ * of their UTC year. Archive tables have the columns of the records table but are
+ * clustered by (metric, time) without a rowid, and only have the indexes needed
+ * to find a record by id or external id: their records take less space and
+ * the records of a metric within an interval are read sequentially.
+ *
+ * Queries read from [getSource], which only includes the archive tables that
+ * overlap their interval, so queries of recent records never read the archive.
+ * The counts of the summary and the rollups include the archived records.
+ * Archived records can be deleted, and they are moved back to the records
+ * table by [unarchive] before being updated.
+ */
+class RecordArchive(
+    private val recordTableName: String,
+    private val archiveTable: RecordArchiveTable,
+    private val summaryTable: RecordSummaryTable,
+    private val rollupTable: RecordRollupTable
+) {
+
+    private class Period(val name: String, val minTime: Long, val maxTime: Long)
+
+    /**
+     * Year -> period, a copy is replaced when a period changes.
+     * The range of a period may be wider than the one of its records.
+     */
+    @Volatile
+    private var periods: Map<Int, Period> = emptyMap()
+
+    @Volatile
+    private var columnList = ""
+
+    /**
+     * Whether there are no archived records
+     */
+    val isEmpty get() = periods.isEmpty()
+
+    /**
+     * The records table followed by all the archive tables
+     */
+    val tables get() = listOf(recordTableName) + periods.values.map { it.name }
+
+    /**
+     * Load the periods and add to their tables the columns added to
+     * the records table since they were created.
+     * Called when the database has been opened for writing.
+     */
+    fun open(db: SQLiteDatabase) {
+        val recordColumns = getColumnDefinitions(db, recordTableName)
+        val loaded = TreeMap<Int, Period>()
+        db.rawQuery(
+            "SELECT ${RecordArchiveTable.YEAR}, ${RecordArchiveTable.MIN_TIME}, " +
+                "${RecordArchiveTable.MAX_TIME} FROM ${archiveTable.name}",
+            null
+        ).use {
+            while (it.moveToNext()) {
+                val year = it.getInt(0)
+                loaded[year] = Period(
+                    archiveTable.getPeriodName(year),
+                    it.getLong(1),
+                    it.getLong(2)
+                )
+            }
+        }
+
+        loaded.values.forEach { period ->
+            val existing = getColumnDefinitions(db, period.name).keys
+            recordColumns.filterKeys { it !in existing }.values.forEach {
+                db.execSQL("ALTER TABLE ${period.name} ADD COLUMN $it")
+            }
+        }
+        columnList = recordColumns.keys.joinToString()
+        periods = loaded
+    }
+
+    /**
+     * Table or parenthesized query with the records whose time may be
+     * within [from, to): the records table united to the overlapping archive tables.
+     * Null bounds are open.
+     */
+    fun getSource(from: Long? = null, to: Long? = null): String {
+        val overlapping = getOverlapping(from, to)
+        if (overlapping.isEmpty()) {
+            return recordTableName
+        }
+
+        // A compound query without aggregates is flattened into the outer query:
+        // the conditions are applied by each member with its own indexes
+        return (listOf(recordTableName) + overlapping.map { it.name }).joinToString(
+            separator = " UNION ALL ",
+            prefix = "(",
+            postfix = ")"
+        ) { "SELECT $columnList FROM $it" }
+    }
+
+    /**
+     * Move to the archive the records of the oldest day, if it is before [before].
+     *
+     * @return Whether a day was moved
+     */
+    fun archiveOldestDay(db: SQLiteDatabase, before: Long): Boolean {
+        val firstTime = db.rawQuery(
+            "SELECT MIN(${RecordColumns.TIME}) FROM $recordTableName",
+            null
+        ).use {
+            if (it.moveToFirst() && !it.isNull(0)) it.getLong(0) else null
+        }
+        if (firstTime == null || firstTime >= before) {
+            return false
+        }
+
+        val dayStart = firstTime / RecordRollupTable.DAY_MILLIS * RecordRollupTable.DAY_MILLIS
+        val dayEnd = dayStart + RecordRollupTable.DAY_MILLIS
+        val period = extendPeriod(db, dayStart, dayEnd)
+        val whereDay = "${RecordColumns.TIME} >= ? AND ${RecordColumns.TIME} < ?"
+        val args = arrayOf(dayStart.toString(), dayEnd.toString())
+
+        db.beginTransaction()
+        try {
+            // The triggers remove the deleted records from the summary: add them back first
+            db.rawQuery(
+                "SELECT ${RecordColumns._METRIC}, COUNT(*) FROM $recordTableName " +
+                    "WHERE $whereDay GROUP BY ${RecordColumns._METRIC}",
+                args
+            ).use {
+                while (it.moveToNext()) {
+                    summaryTable.addCount(db, it.getLong(0), it.getLong(1))
+                }
+            }
+            db.execSQL(
+                "INSERT INTO ${period.name} ($columnList) " +
+                    "SELECT $columnList FROM $recordTableName WHERE $whereDay",
+                args
+            )
+            db.execSQL("DELETE FROM $recordTableName WHERE $whereDay", args)
+            // All the records of the day are now in the archive
+            rollupTable.recomputeDay(db, period.name, dayStart)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        return true
+    }
+
+    /**
+     * Delete the archived records that match [selection],
+     * keeping the summary and the rollups up to date.
+     *
+     * @param from Lower bound of the time of the selected records, if known
+     * @param to Upper bound (exclusive) of the time of the selected records, if known
+     * @return The number of deleted records
+     */
+    fun delete(
+        db: SQLiteDatabase,
+        selection: String,
+        selectionArgs: Array<String>,
+        from: Long? = null,
+        to: Long? = null
+    ): Int {
+        return getOverlapping(from, to).sumBy { delete(db, it, selection, selectionArgs) }
+    }
+
+    /**
+     * Move the archived records that match [selection] back to the records table,
+     * so that they can be updated. Their ids are preserved. A record whose external id
+     * was reused by a record inserted after it was archived can't be moved:
+     * it is kept in the archive.
+     *
+     * @return The number of moved records
+     */
+    fun unarchive(db: SQLiteDatabase, selection: String, selectionArgs: Array<String>): Int {
+        // Ids are never reused, so only the moved records are in the records table
+        val movedSelection = "($selection) AND ${RecordColumns._ID} IN " +
+            "(SELECT ${RecordColumns._ID} FROM $recordTableName)"
+        return periods.values.sumBy { period ->
+            // Inserting adds the records to the summary and the rollups,
+            // deleting them from the archive removes them again
+            db.execSQL(
+                "INSERT OR IGNORE INTO $recordTableName ($columnList) " +
+                    "SELECT $columnList FROM ${period.name} WHERE $selection",
+                selectionArgs
+            )
+            delete(db, period, movedSelection, selectionArgs)
+        }
+    }
+
+    private fun delete(
+        db: SQLiteDatabase,
+        period: Period,
+        selection: String,
+        selectionArgs: Array<String>
+    ): Int {
+        val day = "${RecordColumns.TIME} / ${RecordRollupTable.DAY_MILLIS}"
+        val days = sortedSetOf<Long>()
+        var count = 0
+        db.rawQuery(
+            "SELECT ${RecordColumns._METRIC}, $day, COUNT(*) FROM ${period.name} " +
+                "WHERE $selection GROUP BY ${RecordColumns._METRIC}, $day",
+            selectionArgs
+        ).use {
+            while (it.moveToNext()) {
+                summaryTable.addCount(db, it.getLong(0), -it.getLong(2))
+                days += it.getLong(1) * RecordRollupTable.DAY_MILLIS
+                count += it.getInt(2)
+            }
+        }
+        if (count == 0) {
+            return 0
+        }
+
+        db.delete(period.name, selection, selectionArgs)
+        // The days can also have records in the records table
+        val source = "(SELECT $columnList FROM $recordTableName " +
+            "UNION ALL SELECT $columnList FROM ${period.name})"
+        days.forEach { rollupTable.recomputeDay(db, source, it) }
+        return count
+    }
+
+    private fun getOverlapping(from: Long?, to: Long?): List<Period> {
+        return periods.values.filter {
+            (from == null || it.maxTime >= from) && (to == null || it.minTime < to)
+        }
+    }
+
+    /**
+     * Extend the period of the day so that queries include its table before
+     * any record is moved to it. The table is created in its own transaction,
+     * so that it exists for all the connections when they start reading it.
+     */
+    private fun extendPeriod(db: SQLiteDatabase, dayStart: Long, dayEnd: Long): Period {
+        val year = Instant.ofEpochMilli(dayStart).atZone(ZoneOffset.UTC).year
+        val current = periods[year]
+        if (current != null && current.minTime <= dayStart && current.maxTime >= dayEnd - 1) {
+            return current
+        }
+
+        val name = archiveTable.getPeriodName(year)
+        db.beginTransaction()
+        try {
+            if (current == null) {
+                createPeriodTable(db, name)
+                rollupTable.setArchiveTables(db, periods.values.map { it.name } + name)
+            }
+            archiveTable.extend(db, year, dayStart, dayEnd - 1)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+
+        val extended = Period(
+            name,
+            minOf(current?.minTime ?: dayStart, dayStart),
+            maxOf(current?.maxTime ?: dayEnd - 1, dayEnd - 1)
+        )
+        periods = TreeMap(periods).apply { put(year, extended) }
+        return extended
+    }
+
+    private fun createPeriodTable(db: SQLiteDatabase, name: String) {
+        val definitions = getColumnDefinitions(db, recordTableName).values
+        db.execSQL(
+            "CREATE TABLE IF NOT EXISTS $name (" +
+                definitions.joinToString() + ", " +
+                "PRIMARY KEY (${RecordColumns._METRIC}, ${RecordColumns.TIME}, " +
+                "${RecordColumns._ID})" +
+                ") WITHOUT ROWID"
+        )
+        db.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS ${name}_id ON $name (${RecordColumns._ID})"
+        )
+        db.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS ${name}_external_id ON $name (" +
+                "${RecordColumns._SOURCE}, ${RecordColumns._METRIC}, " +
+                "${RecordColumns.EXTERNAL_ID}) " +
+                "WHERE ${RecordColumns.EXTERNAL_ID} IS NOT NULL"
+        )
+    }
+
+    /**
+     * Column name -> definition without constraints other than NOT NULL and DEFAULT
+     */
+    private fun getColumnDefinitions(db: SQLiteDatabase, table: String): Map<String, String> {
+        return db.rawQuery("PRAGMA table_info($table)", null).use {
+            val definitions = LinkedHashMap<String, String>()
+            val nameIndex = it.getColumnIndexOrThrow("name")
+            val typeIndex = it.getColumnIndexOrThrow("type")
+            val notNullIndex = it.getColumnIndexOrThrow("notnull")
+            val defaultIndex = it.getColumnIndexOrThrow("dflt_value")
+            while (it.moveToNext()) {
+                val name = it.getString(nameIndex)
+                var definition = "$name ${it.getString(typeIndex)}"
+                if (it.getInt(notNullIndex) != 0) {
+                    definition += " NOT NULL"
+                }
+                if (!it.isNull(defaultIndex)) {
+                    definition += " DEFAULT ${it.getString(defaultIndex)}"
+                }
+                definitions[name] = definition
+            }
+            definitions
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.Context
+import android.database.Cursor
+import android.util.Log
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.R
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.db.migrations.BackgroundMigration
+import org.lineageos.mod.health.db.tables.ActivityTable
+import org.lineageos.mod.health.db.tables.BodyTable
+import org.lineageos.mod.health.db.tables.BreathingTable
+import org.lineageos.mod.health.db.tables.HeartBloodTable
+import org.lineageos.mod.health.db.tables.MigrationTable
+import org.lineageos.mod.health.db.tables.MindfulnessTable
+import org.lineageos.mod.health.db.tables.RecordArchiveTable
+import org.lineageos.mod.health.db.tables.RecordRetentionTable
+import org.lineageos.mod.health.db.tables.RecordRollupTable
+import org.lineageos.mod.health.db.tables.RecordSummaryTable
+import org.lineageos.mod.health.db.tables.SampleSeriesTable
+import org.lineageos.mod.health.db.tables.Table
+import org.lineageos.mod.health.partner.PartnerProvider
+import org.lineageos.mod.health.security.KeyMaster
+import java.util.concurrent.CountDownLatch
+
+/**
+ * Database of the records of a single category.
+ *
+ * Each category has its own database, so writes to different
+ * categories don't wait for each other.
+ *
+ * When the database is created, the records of its category are moved in the
+ * background from the [CareCacheDbHelper] database, where all the records used
+ * to be stored: see [LegacyImportMigration].
+ * The versions of the tables continue from the ones of that database:
+ * see [TABLE_VERSION_OFFSET].
+ *
+ * In the background, after the background migrations, the retention policies of the
+ * partner customization package are applied by [retention], then the records older
+ * than `config_recordsArchiveAgeDays` are moved to the [archive].
+ */
+class RecordDbHelper private constructor(
+    private val context: Context,
+    private val tableName: String,
+    recordTable: Table
+) : WalDbHelper(
+    context,
+    getName(tableName),
+    DB_VERSION
+) {
+    companion object {
+        private const val DB_VERSION = 6
+        private const val TAG = "RecordDbHelper"
+
+        /**
+         * The record tables were last upgraded by [CareCacheDbHelper] at its version 5,
+         * which is the version 1 of this database. Table versions are offset by this
+         * amount, so that the upgrade steps of the tables keep a single numbering.
+         */
+        private const val TABLE_VERSION_OFFSET = 4
+
+        private const val LEGACY_IMPORT_CHUNK_SIZE = 1000
+
+        /**
+         * Marks a database whose records have not been moved from the legacy one yet
+         */
+        private const val PENDING_IMPORT_TABLE = "pending_legacy_import"
+
+        private val recordTables = mapOf(
+            ActivityTable.NAME to ActivityTable,
+            BodyTable.NAME to BodyTable,
+            BreathingTable.NAME to BreathingTable,
+            HeartBloodTable.NAME to HeartBloodTable,
+            MindfulnessTable.NAME to MindfulnessTable
+        )
+
+        /**
+         * Numerical columns of each records table aggregated by the rollups
+         */
+        private val rollupColumns = mapOf(
+            ActivityTable.NAME to arrayOf(
+                RecordColumns.AVG_SPEED,
+                RecordColumns.CALORIES,
+                RecordColumns.DISTANCE,
+                RecordColumns.DURATION,
+                RecordColumns.ELEVATION_GAIN,
+                RecordColumns.STEPS
+            ),
+            BodyTable.NAME to arrayOf(
+                RecordColumns.VALUE
+            ),
+            BreathingTable.NAME to arrayOf(
+                RecordColumns.VALUE
+            ),
+            HeartBloodTable.NAME to arrayOf(
+                RecordColumns.PRESSURE_DIASTOLIC,
+                RecordColumns.PRESSURE_SYSTOLIC,
+                RecordColumns.VALUE
+            ),
+            MindfulnessTable.NAME to arrayOf(
+                RecordColumns.DURATION
+            )
+        )
+
+        /**
+         * Columns averaged by the downsampling of each records table. The records of the
+         * other tables hold amounts (e.g. steps or durations) that can't be averaged:
+         * they can only be deleted by the retention policies.
+         */
+        private val downsampledColumns = mapOf(
+            BodyTable.NAME to arrayOf(
+                RecordColumns.VALUE
+            ),
+            BreathingTable.NAME to arrayOf(
+                RecordColumns.VALUE
+            ),
+            HeartBloodTable.NAME to arrayOf(
+                RecordColumns.PRESSURE_DIASTOLIC,
+                RecordColumns.PRESSURE_SYSTOLIC,
+                RecordColumns.VALUE
+            )
+        )
+        private val instances = HashMap<String, RecordDbHelper>()
+
+        fun getName(tableName: String) = "records_$tableName"
+
+        fun getInstance(context: Context, tableName: String): RecordDbHelper {
+            val recordTable = recordTables[tableName]
+                ?: throw IllegalArgumentException("Unknown records table $tableName")
+            return synchronized(instances) {
+                instances.getOrPut(tableName) {
+                    RecordDbHelper(context.applicationContext, tableName, recordTable)
+                }
+            }
+        }
+    }
+
+    private val summaryTable = RecordSummaryTable(tableName)
+    val rollupTable = RecordRollupTable(tableName, rollupColumns.getValue(tableName))
+    private val seriesTable = SampleSeriesTable(tableName)
+    private val archiveTable = RecordArchiveTable(tableName)
+    private val retentionTable = RecordRetentionTable(tableName)
+    private val legacyImport = LegacyImportMigration()
+    override val migrationTable = MigrationTable(
+        arrayOf(recordTable, summaryTable, rollupTable, seriesTable, archiveTable, retentionTable),
+        listOf(legacyImport)
+    )
+    private val tables = arrayOf(
+        recordTable,
+        summaryTable,
+        rollupTable,
+        seriesTable,
+        archiveTable,
+        retentionTable,
+        migrationTable
+    )
+    val archive = RecordArchive(tableName, archiveTable, summaryTable, rollupTable)
+    val retention = RecordRetention(
+        tableName,
+        downsampledColumns[tableName] ?: emptyArray(),
+        archive,
+        retentionTable
+    )
+
+    /**
+     * Released once the [legacyImport] is complete or has failed
+     */
+    @Volatile
+    private var legacyImportLatch: CountDownLatch? = null
+
+    @Volatile
+    private var legacyImportFailed = false
+
+    private val archiveAgeDays =
+        context.resources.getInteger(R.integer.config_recordsArchiveAgeDays)
+
+    override fun onCreate(db: SQLiteDatabase?) {
+        if (db != null) {
+            tables.forEach { it.onCreate(db) }
+            db.execSQL("CREATE TABLE $PENDING_IMPORT_TABLE (_id INTEGER)")
+        }
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase?, oldVersion: Int, newVersion: Int) {
+        if (db != null) {
+            tables.forEach {
+                it.onUpgrade(
+                    db,
+                    oldVersion + TABLE_VERSION_OFFSET,
+                    newVersion + TABLE_VERSION_OFFSET
+                )
+            }
+        }
+    }
+
+    override fun onOpenWritable(db: SQLiteDatabase) {
+        if (hasTable(db, PENDING_IMPORT_TABLE)) {
+            scheduleLegacyImport(db)
+        }
+        legacyImportFailed = false
+        legacyImportLatch = if (migrationTable.getPending(db).any { it.first == legacyImport }) {
+            CountDownLatch(1)
+        } else {
+            null
+        }
+        archive.open(db)
+    }
+
+    override fun onMaintenance(db: SQLiteDatabase) {
+        try {
+            applyRetention(db)
+        } catch (e: InterruptedException) {
+            throw e
+        } catch (e: Exception) {
+            // The archive does not depend on the retention
+            Log.e(TAG, "Failed to apply the retention policies of $tableName", e)
+        }
+        archiveOldDays(db)
+    }
+
+    private fun applyRetention(db: SQLiteDatabase) {
+        val policies = PartnerProvider.get(context.packageManager)
+            ?.getRetentionPolicies()
+            .orEmpty()
+        if (policies.isNotEmpty()) {
+            retention.apply(db, policies, System.currentTimeMillis())
+        }
+    }
+
+    private fun archiveOldDays(db: SQLiteDatabase) {
+        if (archiveAgeDays <= 0) {
+            return
+        }
+
+        // Only whole UTC days are moved
+        val dayMillis = RecordRollupTable.DAY_MILLIS
+        val before = (System.currentTimeMillis() / dayMillis - archiveAgeDays) * dayMillis
+        var days = 0
+        while (!Thread.interrupted() && archive.archiveOldestDay(db, before)) {
+            days++
+        }
+        if (days > 0) {
+            Log.i(TAG, "Archived $days days of $tableName records")
+        }
+    }
+
+    /**
+     * Block until the [legacyImport] is complete.
+     * Writes must wait for it: the records that were not moved yet could
+     * neither be updated nor deleted, and would be moved again after a delete.
+     *
+     * @throws IllegalStateException If the import failed.
+     * It is resumed the next time the database is opened
+     */
+    fun awaitLegacyImport() {
+        val latch = legacyImportLatch ?: return
+        latch.await()
+        if (legacyImportFailed) {
+            throw IllegalStateException("Failed to move the legacy $tableName records")
+        }
+    }
+
+    private fun scheduleLegacyImport(db: SQLiteDatabase) {
+        db.beginTransaction()
+        try {
+            migrationTable.schedule(db, legacyImport)
+            db.execSQL("DROP TABLE IF EXISTS $PENDING_IMPORT_TABLE")
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun getLegacyDatabase(): SQLiteDatabase? {
+        return if (context.getDatabasePath(CareCacheDbHelper.NAME).exists()) {
+            CareCacheDbHelper.getInstance(context)
+                .getWritableDatabase(KeyMaster.getInstance(context).getDbKey())
+        } else {
+            null
+        }
+    }
+
+    private fun hasTable(db: SQLiteDatabase, table: String): Boolean {
+        return db.rawQuery(
+            "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+            arrayOf(table)
+        ).use { it.moveToFirst() }
+    }
+
+    private fun getColumns(db: SQLiteDatabase): List<String> {
+        return db.rawQuery("PRAGMA table_info($tableName)", null).use {
+            val columns = mutableListOf<String>()
+            val nameIndex = it.getColumnIndexOrThrow("name")
+            while (it.moveToNext()) {
+                columns += it.getString(nameIndex)
+            }
+            columns
+        }
+    }
+
+    /**
+     * Move the records of this category from the legacy database in chunks of
+     * consecutive ids, then drop its tables. Records that were already moved are
+     * ignored, so a chunk can be safely repeated.
+     *
+     * Until the import completes, the queries only see the records moved so far
+     * and the writes wait for it: see [awaitLegacyImport].
+     */
+    private inner class LegacyImportMigration : BackgroundMigration(
+        "${tableName}_legacy_import",
+        // Only scheduled when the database is created
+        TABLE_VERSION_OFFSET + 1
+    ) {
+
+        override fun migrateChunk(db: SQLiteDatabase, position: Long): Long {
+            val next = try {
+                importChunk(db, position)
+            } catch (e: Exception) {
+                legacyImportFailed = true
+                legacyImportLatch?.countDown()
+                throw e
+            }
+            if (next == DONE) {
+                legacyImportLatch?.countDown()
+            }
+            return next
+        }
+
+        private fun importChunk(db: SQLiteDatabase, position: Long): Long {
+            val legacyDb = getLegacyDatabase() ?: return DONE
+            if (!hasTable(legacyDb, tableName)) {
+                return DONE
+            }
+
+            // The legacy table lacks the columns added after it was last upgraded
+            val legacyColumns = getColumns(legacyDb)
+            val columns = getColumns(db).filter { it in legacyColumns }
+            var lastId = DONE
+            val statement = db.compileStatement(
+                "INSERT OR IGNORE INTO $tableName (${columns.joinToString()}) " +
+                    "VALUES (${columns.joinToString { "?" }})"
+            )
+            try {
+                legacyDb.rawQuery(
+                    "SELECT ${columns.joinToString()} FROM $tableName " +
+                        "WHERE ${RecordColumns._ID} > ? " +
+                        "ORDER BY ${RecordColumns._ID} LIMIT $LEGACY_IMPORT_CHUNK_SIZE",
+                    arrayOf(position.toString())
+                ).use {
+                    val idIndex = it.getColumnIndexOrThrow(RecordColumns._ID)
+                    while (it.moveToNext()) {
+                        columns.indices.forEach { i -> statement.bindValue(i + 1, it.getValue(i)) }
+                        // The summary is kept up to date by the triggers
+                        statement.executeInsert()
+                        lastId = it.getLong(idIndex)
+                    }
+                }
+            } finally {
+                statement.close()
+            }
+
+            if (lastId == DONE) {
+                legacyDb.execSQL("DROP TABLE IF EXISTS $tableName")
+                legacyDb.execSQL("DROP TABLE IF EXISTS ${summaryTable.name}")
+                Log.i(TAG, "Moved $tableName records to ${getName(tableName)}")
+            }
+            return lastId
+        }
+
+        /**
+         * @return The id of the last legacy record, or 0 if there are none
+         */
+        override fun getEndPosition(db: SQLiteDatabase): Long {
+            val legacyDb = getLegacyDatabase() ?: return 0L
+            if (!hasTable(legacyDb, tableName)) {
+                return 0L
+            }
+            return legacyDb.rawQuery(
+                "SELECT IFNULL(MAX(${RecordColumns._ID}), 0) FROM $tableName",
+                null
+            ).use {
+                if (it.moveToFirst()) it.getLong(0) else 0L
+            }
+        }
+
+        private fun Cursor.getValue(index: Int): Any? {
+            return when (getType(index)) {
+                Cursor.FIELD_TYPE_NULL -> null
+                Cursor.FIELD_TYPE_INTEGER -> getLong(index)
+                Cursor.FIELD_TYPE_FLOAT -> getDouble(index)
+                Cursor.FIELD_TYPE_BLOB -> getBlob(index)
+                else -> getString(index)
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.ContentValues
+import android.util.Log
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.db.tables.RecordRetentionTable
+import org.lineageos.mod.health.db.tables.RecordRollupTable
+import org.lineageos.mod.health.db.tables.SampleSeriesTable
+import org.lineageos.mod.health.partner.RetentionPolicy
+import org.lineageos.mod.health.providers.records.SampleSeriesStore
+
+/**
+ * Applies the [RetentionPolicy]s of the metrics to the records of a records table,
+ * including the archived ones, and to their sample series.
+ *
+ * Policies are applied one UTC day at a time, oldest first. Days are processed in
+ * transactions that yield to the other writers after each day (see
+ * [SQLiteDatabase.yieldIfContendedSafely]) and commit at most [DAYS_PER_TRANSACTION] days.
+ * - Delete stages remove the records and the samples older than their age
+ * - Downsample stages replace the records of each day older than their age with one
+ *   record per app and interval, holding the average of the [columns]. The other columns
+ *   are not preserved. Each day is downsampled once: the [stateTable] stores the end
+ *   of the last one, so records later inserted in a downsampled day are kept as they are.
+ *   Averages are weighted by the number of original records of each downsampled record,
+ *   also stored in the [stateTable], so they don't depend on the previous stages.
+ */
+class RecordRetention(
+    private val recordTableName: String,
+    private val columns: Array<String>,
+    private val archive: RecordArchive,
+    private val stateTable: RecordRetentionTable
+) {
+
+    companion object {
+        private const val TAG = "RecordRetention"
+        private const val DAYS_PER_TRANSACTION = 30
+
+        private const val DAY_MILLIS = RecordRollupTable.DAY_MILLIS
+        private const val WHERE_RANGE = "${RecordColumns._METRIC} = ? AND " +
+            "${RecordColumns.TIME} >= ? AND ${RecordColumns.TIME} < ?"
+    }
+
+    private val seriesStore = SampleSeriesStore(SampleSeriesTable.getName(recordTableName))
+
+    /**
+     * Apply the policies to the days before [now].
+     *
+     * @throws InterruptedException If the thread was interrupted.
+     * The policies are resumed from the last committed day the next time
+     */
+    fun apply(db: SQLiteDatabase, policies: List<RetentionPolicy>, now: Long) {
+        policies.forEach { policy ->
+            // Coarser stages first, so that the days they replace aren't downsampled twice
+            policy.stages.sortedByDescending { it.ageDays }.forEach { stage ->
+                val before = (now / DAY_MILLIS - stage.ageDays) * DAY_MILLIS
+                when {
+                    stage.isDelete -> {
+                        runDays(db) { deleteDay(db, policy.metric, before) }
+                        deleteSamples(db, policy.metric, before)
+                    }
+                    columns.isEmpty() -> {
+                        // The policies of the metrics of the other categories match no records
+                        if (getFirstTime(db, policy.metric, 0L, before) != null) {
+                            Log.w(
+                                TAG,
+                                "The records of $recordTableName can't be downsampled, " +
+                                    "ignoring the policy of metric ${policy.metric}"
+                            )
+                        }
+                    }
+                    else -> runDays(db) {
+                        downsampleDay(db, policy.metric, stage.intervalMillis, before)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run [step] until it returns false, one day at a time
+     */
+    private fun runDays(db: SQLiteDatabase, step: () -> Boolean) {
+        var hasNext = true
+        while (hasNext) {
+            if (Thread.interrupted()) {
+                throw InterruptedException()
+            }
+
+            db.beginTransaction()
+            try {
+                for (i in 0 until DAYS_PER_TRANSACTION) {
+                    hasNext = step()
+                    if (!hasNext) {
+                        break
+                    }
+                    db.yieldIfContendedSafely()
+                }
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        }
+    }
+
+    /**
+     * Delete the records of the oldest day of the metric, if it is before [before]
+     *
+     * @return Whether a day was deleted
+     */
+    private fun deleteDay(db: SQLiteDatabase, metric: Int, before: Long): Boolean {
+        val firstTime = getFirstTime(db, metric, 0L, before) ?: return false
+        val dayStart = firstTime / DAY_MILLIS * DAY_MILLIS
+        val dayEnd = dayStart + DAY_MILLIS
+        val args = arrayOf(metric.toString(), dayStart.toString(), dayEnd.toString())
+        stateTable.deleteWeights(db, archive.getSource(dayStart, dayEnd), WHERE_RANGE, args)
+        db.delete(recordTableName, WHERE_RANGE, args)
+        archive.delete(db, WHERE_RANGE, args, dayStart, dayEnd)
+        return true
+    }
+
+    private fun deleteSamples(db: SQLiteDatabase, metric: Int, before: Long) {
+        db.beginTransaction()
+        try {
+            seriesStore.delete(db, metric, Long.MIN_VALUE, before)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    /**
+     * Downsample the first day of the metric that was not downsampled yet,
+     * if it is before [before]
+     *
+     * @return Whether a day was processed
+     */
+    private fun downsampleDay(
+        db: SQLiteDatabase,
+        metric: Int,
+        interval: Long,
+        before: Long
+    ): Boolean {
+        val position = stateTable.getPosition(db, metric, interval)
+        val firstTime = getFirstTime(db, metric, position, before) ?: return false
+        val dayStart = firstTime / DAY_MILLIS * DAY_MILLIS
+        val dayEnd = dayStart + DAY_MILLIS
+        val args = arrayOf(metric.toString(), dayStart.toString(), dayEnd.toString())
+
+        val source = archive.getSource(dayStart, dayEnd)
+        val bucket = "${RecordColumns.TIME} / $interval * $interval"
+        val weight = "IFNULL(w.${RecordRetentionTable.WEIGHT}, 1)"
+        // Average -> number of original records
+        val averages = mutableListOf<Pair<ContentValues, Long>>()
+        var isDownsampled = true
+        db.rawQuery(
+            "SELECT ${RecordColumns._SOURCE}, $bucket, COUNT(*), MIN(${RecordColumns.TIME}), " +
+                "SUM($weight), " +
+                columns.joinToString { "SUM(r.$it * $weight) / SUM($weight)" } + " " +
+                "FROM (SELECT * FROM $source WHERE $WHERE_RANGE) AS r " +
+                "LEFT JOIN ${stateTable.weightName} AS w " +
+                "ON w.${RecordColumns._ID} = r.${RecordColumns._ID} " +
+                "GROUP BY ${RecordColumns._SOURCE}, $bucket",
+            args
+        ).use {
+            while (it.moveToNext()) {
+                // A single record at the start of its bucket
+                isDownsampled = isDownsampled && it.getLong(2) == 1L &&
+                    it.getLong(3) == it.getLong(1)
+                averages += ContentValues().apply {
+                    put(RecordColumns._METRIC, metric)
+                    put(RecordColumns._SOURCE, it.getString(0))
+                    put(RecordColumns.TIME, it.getLong(1))
+                    columns.forEachIndexed { i, column -> put(column, it.getDouble(5 + i)) }
+                } to it.getLong(4)
+            }
+        }
+
+        if (!isDownsampled) {
+            // The records of old days are archived again later
+            stateTable.deleteWeights(db, source, WHERE_RANGE, args)
+            db.delete(recordTableName, WHERE_RANGE, args)
+            archive.delete(db, WHERE_RANGE, args, dayStart, dayEnd)
+            averages.forEach { (values, count) ->
+                val id = db.insert(recordTableName, null, values)
+                if (id >= 0L && count > 1L) {
+                    stateTable.setWeight(db, id, count)
+                }
+            }
+        }
+        stateTable.setPosition(db, metric, interval, dayEnd)
+        return true
+    }
+
+    /**
+     * Time of the first record of the metric within [from, to), if any
+     */
+    private fun getFirstTime(db: SQLiteDatabase, metric: Int, from: Long, to: Long): Long? {
+        val args = arrayOf(metric.toString(), from.toString(), to.toString())
+        // Each table finds its first record through its (_metric, time) index
+        return archive.tables.mapNotNull { table ->
+            db.rawQuery(
+                "SELECT MIN(${RecordColumns.TIME}) FROM $table WHERE $WHERE_RANGE",
+                args
+            ).use {
+                if (it.moveToFirst() && !it.isNull(0)) it.getLong(0) else null
+            }
+        }.minOrNull()
+    }
+}
@@ -17,12 +17,15 @@
 
 package org.lineageos.mod.health.db
 
+import android.util.LruCache
 import androidx.annotation.VisibleForTesting
 import java.util.Locale
-import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * Simple SQL validator to detect uses of hidden tables / columns as well as invalid SQLs.
+ *
+ * The fragments that passed the validation are remembered, so that the same
+ * selections and sort orders sent by a client over and over are not tokenized again.
  */
 class SqlChecker(
     invalidTokens: List<String>
@@ -36,15 +39,27 @@ class SqlChecker(
 
         @VisibleForTesting
         const val OPTION_TOKEN_ONLY = 1
+
+        private const val VALID_SQL_CACHE_SIZE = 256
+        private const val VALID_TOKENS_CACHE_SIZE = 256
     }
 
-    private val invalidTokens = invalidTokens.map(String::toLowerCase)
+    private val invalidTokens = invalidTokens.mapTo(HashSet()) { it.toLowerCase(Locale.ROOT) }
+
+    // Values are unused: only valid fragments are added
+    private val validSql = LruCache<String, Boolean>(VALID_SQL_CACHE_SIZE)
+    private val validTokens = LruCache<String, Boolean>(VALID_TOKENS_CACHE_SIZE)
 
     /**
      * Ensure [sql] is valid and doesn't contain invalid tokens.
      */
     fun ensureNoInvalidTokens(sql: String) {
+        if (validSql[sql] != null) {
+            return
+        }
+
         findTokens(sql, OPTION_NONE) { token -> throwIfContainsToken(token, sql) }
+        validSql.put(sql, true)
     }
 
     /**
@@ -52,17 +67,22 @@ class SqlChecker(
      * in [android.content.ContentValues].
      */
     fun ensureSingleTokenOnly(sql: String) {
-        val tokenFound = AtomicBoolean(false)
+        if (validTokens[sql] != null) {
+            return
+        }
+
+        var tokenFound = false
         findTokens(sql, OPTION_TOKEN_ONLY) { token ->
-            if (tokenFound.get()) {
+            if (tokenFound) {
                 throw InvalidSqlException("Multiple tokens detected", sql)
             }
-            tokenFound.set(true)
+            tokenFound = true
             throwIfContainsToken(token, sql)
         }
-        if (!tokenFound.get()) {
+        if (!tokenFound) {
             throw InvalidSqlException("Token not found", sql)
         }
+        validTokens.put(sql, true)
     }
 
     /**
@@ -164,8 +184,9 @@ class SqlChecker(
     }
 
     private fun throwIfContainsToken(token: String, sql: String) {
-        val lower = token.toLowerCase(Locale.ROOT)
-        if (lower in invalidTokens || lower.startsWith(PRIVATE_PREFIX)) {
+        if (token.startsWith(PRIVATE_PREFIX, ignoreCase = true) ||
+            token.toLowerCase(Locale.ROOT) in invalidTokens
+        ) {
             throw InvalidSqlException("Detected disallowed token: $token", sql)
         }
     }
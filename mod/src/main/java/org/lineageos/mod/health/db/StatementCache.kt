@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.ContentValues
+import net.sqlcipher.database.SQLiteDatabase
+import net.sqlcipher.database.SQLiteStatement
+
+/**
+ * Least recently used cache of compiled [SQLiteStatement]s.
+ *
+ * A statement can only be used with the database that compiled it, so the
+ * whole cache is dropped when a different database instance is passed to [get].
+ * Statements must only be executed within a transaction of that database:
+ * the transaction lock ensures no other thread is binding the same statement.
+ */
+class StatementCache(
+    private val maxSize: Int
+) {
+    private val statements = object : LinkedHashMap<String, SQLiteStatement>(
+        maxSize,
+        0.75f,
+        true
+    ) {
+        override fun removeEldestEntry(
+            eldest: MutableMap.MutableEntry<String, SQLiteStatement>?
+        ): Boolean {
+            if (size <= maxSize) {
+                return false
+            }
+            eldest?.value?.close()
+            return true
+        }
+    }
+
+    private var db: SQLiteDatabase? = null
+
+    /**
+     * Get the statement associated with [key], compiling the SQL
+     * produced by [sql] only if it's not cached yet.
+     */
+    @Synchronized
+    fun get(db: SQLiteDatabase, key: String, sql: () -> String): SQLiteStatement {
+        if (db !== this.db) {
+            clear()
+            this.db = db
+        }
+
+        return statements.getOrPut(key) { db.compileStatement(sql()) }
+    }
+
+    @Synchronized
+    fun clear() {
+        // Statements of a closed database have already been released
+        if (db?.isOpen == true) {
+            statements.values.forEach(SQLiteStatement::close)
+        }
+        statements.clear()
+        db = null
+    }
+}
+
+/**
+ * Bind the [columns] of [values], in order, starting from the (1-based) [offset] index.
+ *
+ * @return Index of the next parameter to be bound
+ */
+fun SQLiteStatement.bindValues(
+    values: ContentValues,
+    columns: List<String>,
+    offset: Int = 1
+): Int {
+    var index = offset
+    columns.forEach { bindValue(index++, values.get(it)) }
+    return index
+}
+
+fun SQLiteStatement.bindValue(index: Int, value: Any?) {
+    when (value) {
+        null -> bindNull(index)
+        is String -> bindString(index, value)
+        is Double -> bindDouble(index, value)
+        is Float -> bindDouble(index, value.toDouble())
+        is Number -> bindLong(index, value.toLong())
+        is Boolean -> bindLong(index, if (value) 1L else 0L)
+        is ByteArray -> bindBlob(index, value)
+        else -> bindString(index, value.toString())
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db
+
+import android.content.Context
+import android.util.Log
+import net.sqlcipher.database.SQLiteDatabase
+import net.sqlcipher.database.SQLiteOpenHelper
+import org.lineageos.mod.health.R
+import org.lineageos.mod.health.db.migrations.BackgroundMigrator
+import org.lineageos.mod.health.db.tables.MigrationTable
+import java.io.PrintWriter
+
+/**
+ * [SQLiteOpenHelper] of a database used in write-ahead logging mode:
+ * queries are served by a pool of reader connections (see [getReaderDatabase])
+ * and never wait for the transactions of the writing connection of this helper.
+ * The number of readers and the checkpoint threshold are configured with the
+ * `config_dbReaderConnections` and `config_dbWalAutoCheckpointPages` resources.
+ *
+ * Once the database is open, the pending background migrations of the
+ * [migrationTable] are run on a background thread, followed by [onMaintenance].
+ */
+abstract class WalDbHelper(
+    context: Context?,
+    name: String,
+    version: Int
+) : SQLiteOpenHelper(
+    context,
+    name,
+    null,
+    version
+) {
+    companion object {
+        private const val TAG = "WalDbHelper"
+
+        /**
+         * Size the WAL file is truncated to after a checkpoint, in bytes
+         */
+        private const val WAL_SIZE_LIMIT = 4L * 1024L * 1024L
+    }
+
+    private val readers = context?.let {
+        val size = it.resources.getInteger(R.integer.config_dbReaderConnections)
+        if (size > 0) ReaderConnectionPool(it.getDatabasePath(name).path, size) else null
+    }
+    private val autoCheckpointPages = context?.resources
+        ?.getInteger(R.integer.config_dbWalAutoCheckpointPages)
+
+    /**
+     * Background migrations of the tables of this database, if any.
+     * Must be one of the tables created and upgraded by this helper.
+     */
+    protected open val migrationTable: MigrationTable? = null
+    private val migrator by lazy {
+        migrationTable?.let { BackgroundMigrator(name, it, ::onMaintenance) }
+    }
+
+    override fun onOpen(db: SQLiteDatabase?) {
+        super.onOpen(db)
+        if (db == null || db.isReadOnly) {
+            return
+        }
+
+        // The journal mode is persistent, this is a no-op after the first time
+        db.rawQuery("PRAGMA journal_mode = WAL", null).use {
+            if (!it.moveToFirst() || !"wal".equals(it.getString(0), ignoreCase = true)) {
+                Log.w(TAG, "Failed to enable write-ahead logging")
+            }
+        }
+        db.rawQuery("PRAGMA journal_size_limit = $WAL_SIZE_LIMIT", null).close()
+        if (autoCheckpointPages != null) {
+            db.rawQuery("PRAGMA wal_autocheckpoint = $autoCheckpointPages", null).close()
+        }
+
+        onOpenWritable(db)
+        migrator?.start(db)
+    }
+
+    /**
+     * Called when the database has been opened for writing,
+     * before the background migrations are started.
+     */
+    protected open fun onOpenWritable(db: SQLiteDatabase) {
+    }
+
+    /**
+     * Called on the background thread once the background migrations are complete,
+     * every time the database is opened. Only called if there is a [migrationTable].
+     * Should stop early if the thread is interrupted.
+     */
+    protected open fun onMaintenance(db: SQLiteDatabase) {
+    }
+
+    /**
+     * Get a connection to be used for queries.
+     * Falls back to the writing connection when there are no readers configured.
+     */
+    fun getReaderDatabase(key: ByteArray): SQLiteDatabase {
+        // Ensure the database is created, upgraded and in WAL mode before reading it
+        val db = getWritableDatabase(key)
+        return readers?.get(key) ?: db
+    }
+
+    /**
+     * Copy the content of the WAL file into the database.
+     *
+     * @param truncate Wait for the readers to complete and truncate the WAL file.
+     *   Otherwise copy as much as possible without waiting
+     */
+    fun checkpoint(key: ByteArray, truncate: Boolean = false) {
+        val mode = if (truncate) "TRUNCATE" else "PASSIVE"
+        getWritableDatabase(key).rawQuery("PRAGMA wal_checkpoint($mode)", null).close()
+    }
+
+    fun dump(pw: PrintWriter, prefix: String) {
+        migrator?.dump(pw, prefix)
+    }
+
+    @Synchronized
+    override fun close() {
+        migrator?.stop()
+        readers?.close()
+        super.close()
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.migrations
+
+import net.sqlcipher.database.SQLiteDatabase
+
+/**
+ * Step of the upgrade of a table that is too slow to be run while the
+ * database is being opened, such as an index build or a rewrite of all the rows.
+ *
+ * The step is split in chunks that are run on a background thread while
+ * the database keeps serving queries and writes. Each chunk is committed
+ * together with the position of the next one, so an interrupted migration
+ * is resumed from the last completed chunk the next time the database is opened.
+ * Since rows may be written between chunks, every chunk must be idempotent.
+ *
+ * @param name Unique name of the migration, used to save its progress. Must never change
+ * @param version Version of the table schema that introduced this migration.
+ *   Tables created with this version or a later one don't run it
+ */
+abstract class BackgroundMigration(
+    val name: String,
+    val version: Int
+) {
+    companion object {
+        /**
+         * Position returned by the last chunk
+         */
+        const val DONE = -1L
+    }
+
+    /**
+     * Run a chunk of the migration. Called within a transaction.
+     *
+     * @param position 0 for the first chunk, otherwise the value returned by the previous one
+     * @return The position of the next chunk, or [DONE]
+     */
+    abstract fun migrateChunk(db: SQLiteDatabase, position: Long): Long
+
+    /**
+     * @return The position at which the migration is expected to complete,
+     *   or -1 if not known. Only used to report the progress
+     */
+    open fun getEndPosition(db: SQLiteDatabase): Long = -1L
+}
+
+/**
+ * Build an index with a single chunk: an index build can't be split, but
+ * in write-ahead logging mode it only makes the other writers wait.
+ *
+ * @param createIndexCmd A `CREATE INDEX IF NOT EXISTS` statement
+ */
+class IndexMigration(
+    name: String,
+    version: Int,
+    private val createIndexCmd: String
+) : BackgroundMigration(name, version) {
+
+    override fun migrateChunk(db: SQLiteDatabase, position: Long): Long {
+        db.execSQL(createIndexCmd)
+        return DONE
+    }
+}
+
+/**
+ * Run a statement on the rows of a table in chunks of consecutive rowids.
+ *
+ * @param sql The statement, whose two arguments are the bounds of the rowids
+ *   of a chunk: lower exclusive and upper inclusive.
+ *   For example `UPDATE t SET a = b * 2 WHERE _id > ? AND _id <= ?`
+ */
+class RowRangeMigration(
+    name: String,
+    version: Int,
+    private val tableName: String,
+    private val sql: String,
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE
+) : BackgroundMigration(name, version) {
+
+    companion object {
+        private const val DEFAULT_CHUNK_SIZE = 1000
+    }
+
+    override fun migrateChunk(db: SQLiteDatabase, position: Long): Long {
+        val end = db.rawQuery(
+            "SELECT MAX(id) FROM (SELECT rowid AS id FROM $tableName " +
+                "WHERE rowid > ? ORDER BY rowid LIMIT $chunkSize)",
+            arrayOf(position.toString())
+        ).use {
+            if (it.moveToFirst() && !it.isNull(0)) it.getLong(0) else null
+        } ?: return DONE
+
+        db.execSQL(sql, arrayOf(position, end))
+        return end
+    }
+
+    override fun getEndPosition(db: SQLiteDatabase): Long {
+        return db.rawQuery("SELECT MAX(rowid) FROM $tableName", null).use {
+            if (it.moveToFirst()) it.getLong(0) else 0L
+        }
+    }
+}
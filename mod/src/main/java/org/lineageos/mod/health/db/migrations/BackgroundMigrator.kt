@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.migrations
+
+import android.os.Process
+import android.util.Log
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.db.tables.MigrationTable
+import java.io.PrintWriter
+
+/**
+ * Runs the pending [BackgroundMigration]s of a database on a low priority thread,
+ * followed by the [maintenance] of its tables, which relies on their migrated content.
+ *
+ * Each chunk is run in its own transaction, so the other writers
+ * only wait for a single chunk at a time, while the readers never wait.
+ */
+class BackgroundMigrator(
+    private val name: String,
+    private val migrationTable: MigrationTable,
+    private val maintenance: (SQLiteDatabase) -> Unit = {}
+) {
+
+    companion object {
+        private const val TAG = "BackgroundMigrator"
+    }
+
+    private var thread: Thread? = null
+
+    /**
+     * Migration name -> progress, for [dump]
+     */
+    private val progress = LinkedHashMap<String, String>()
+
+    @Synchronized
+    fun start(db: SQLiteDatabase) {
+        if (thread?.isAlive == true) {
+            return
+        }
+
+        thread = Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            run(db)
+        }, name).apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    @Synchronized
+    fun stop() {
+        thread?.interrupt()
+        thread = null
+    }
+
+    /**
+     * Run all the pending migrations and then the maintenance on the calling thread.
+     * A failed migration is resumed the next time this is called,
+     * the maintenance is skipped until the migrations complete.
+     */
+    fun run(db: SQLiteDatabase) {
+        try {
+            val pending = migrationTable.getPending(db)
+            pending.forEach { (migration, position) ->
+                setProgress(migration.name, "pending from $position")
+            }
+            pending.forEach { (migration, position) ->
+                migrate(db, migration, position)
+            }
+            maintenance(db)
+        } catch (e: InterruptedException) {
+            // Stopped, will be resumed
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to run the background migrations of $name", e)
+        }
+    }
+
+    private fun migrate(db: SQLiteDatabase, migration: BackgroundMigration, start: Long) {
+        val end = migration.getEndPosition(db)
+        var position = start
+        while (position != BackgroundMigration.DONE) {
+            if (Thread.interrupted()) {
+                throw InterruptedException()
+            }
+
+            db.beginTransaction()
+            try {
+                position = migration.migrateChunk(db, position)
+                migrationTable.setPosition(db, migration, position)
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+
+            setProgress(
+                migration.name,
+                when {
+                    position == BackgroundMigration.DONE -> "done"
+                    end < 0L -> "at $position"
+                    else -> "at $position of $end"
+                }
+            )
+        }
+        Log.i(TAG, "Completed ${migration.name}")
+    }
+
+    private fun setProgress(migration: String, value: String) {
+        synchronized(progress) {
+            progress[migration] = value
+        }
+    }
+
+    fun dump(pw: PrintWriter, prefix: String) {
+        synchronized(progress) {
+            if (progress.isEmpty()) {
+                return
+            }
+
+            pw.print(prefix)
+            pw.println("Background migrations of $name:")
+            progress.forEach { (migration, value) ->
+                pw.print(prefix)
+                pw.println("  $migration: $value")
+            }
+        }
+    }
+}
@@ -26,15 +26,39 @@ object BreathingTable : Table {
         "${RecordColumns._ID} INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, " +
         "${RecordColumns._METRIC} INTEGER NOT NULL, " +
         "${RecordColumns.TIME} INTEGER NOT NULL DEFAULT 0, " +
+        "${RecordColumns._SOURCE} TEXT, " +
+        "${RecordColumns.EXTERNAL_ID} TEXT, " +
         "${RecordColumns.NOTES} TEXT NOT NULL DEFAULT '', " +
         "${RecordColumns.VALUE} REAL NOT NULL DEFAULT 0 " +
         ")"
 
+    private const val CREATE_INDEX_METRIC_TIME_CMD = "CREATE INDEX IF NOT EXISTS " +
+        "${NAME}_metric_time ON $NAME (" +
+        "${RecordColumns._METRIC}, " +
+        "${RecordColumns.TIME} DESC" +
+        ")"
+
+    private const val CREATE_INDEX_TIME_CMD = "CREATE INDEX IF NOT EXISTS " +
+        "${NAME}_time ON $NAME (" +
+        "${RecordColumns.TIME}" +
+        ")"
+
+    private const val CREATE_INDEX_EXTERNAL_ID_CMD = "CREATE UNIQUE INDEX IF NOT EXISTS " +
+        "${NAME}_external_id ON $NAME (" +
+        "${RecordColumns._SOURCE}, " +
+        "${RecordColumns._METRIC}, " +
+        "${RecordColumns.EXTERNAL_ID}" +
+        ") WHERE ${RecordColumns.EXTERNAL_ID} IS NOT NULL"
+
     override fun onCreate(db: SQLiteDatabase) {
         db.execSQL(CREATE_CMD)
+        db.execSQL(CREATE_INDEX_METRIC_TIME_CMD)
+        db.execSQL(CREATE_INDEX_TIME_CMD)
+        db.execSQL(CREATE_INDEX_EXTERNAL_ID_CMD)
     }
 
     override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
-        // empty
+        // Versions before 5 only exist in the legacy database,
+        // from which the records are moved with the columns they have
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.tables
+
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.db.migrations.BackgroundMigration
+
+/**
+ * Pending [BackgroundMigration]s of the given tables and their progress.
+ *
+ * A migration becomes pending when the database is upgraded from a version
+ * older than the one of the migration, and is removed once it completes.
+ * The migrations of a newly created database are never pending,
+ * since its tables are created with the current schema.
+ * Migrations of the content of the database rather than of its tables
+ * are passed as [otherMigrations] and made pending with [schedule].
+ */
+class MigrationTable(
+    tables: Array<out Table>,
+    otherMigrations: List<BackgroundMigration> = emptyList()
+) : Table {
+
+    companion object {
+        const val NAME = "background_migrations"
+
+        private const val MIGRATION = "migration"
+        private const val POSITION = "position"
+
+        private const val CREATE_CMD = "CREATE TABLE IF NOT EXISTS $NAME (" +
+            "$MIGRATION TEXT NOT NULL PRIMARY KEY, " +
+            "$POSITION INTEGER NOT NULL DEFAULT 0" +
+            ")"
+    }
+
+    val migrations = otherMigrations + tables.flatMap { it.backgroundMigrations }
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(CREATE_CMD)
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        db.execSQL(CREATE_CMD)
+        migrations.filter { it.version > oldVersion }.forEach { schedule(db, it) }
+    }
+
+    /**
+     * Make a migration pending, if it isn't already
+     */
+    fun schedule(db: SQLiteDatabase, migration: BackgroundMigration) {
+        db.execSQL(
+            "INSERT OR IGNORE INTO $NAME ($MIGRATION, $POSITION) VALUES (?, 0)",
+            arrayOf(migration.name)
+        )
+    }
+
+    /**
+     * @return The pending migrations, in declaration order,
+     *   with the position of their next chunk
+     */
+    fun getPending(db: SQLiteDatabase): List<Pair<BackgroundMigration, Long>> {
+        val positions = HashMap<String, Long>()
+        db.rawQuery(
+            "SELECT name FROM sqlite_master WHERE type = 'table' AND name = ?",
+            arrayOf(NAME)
+        ).use {
+            if (!it.moveToFirst()) {
+                // Created before background migrations existed and never upgraded since
+                return emptyList()
+            }
+        }
+        db.rawQuery("SELECT $MIGRATION, $POSITION FROM $NAME", null).use {
+            while (it.moveToNext()) {
+                positions[it.getString(0)] = it.getLong(1)
+            }
+        }
+
+        return migrations.mapNotNull { migration ->
+            positions[migration.name]?.let { migration to it }
+        }
+    }
+
+    /**
+     * Save the position of the next chunk of a migration,
+     * or remove it if it's [BackgroundMigration.DONE]
+     */
+    fun setPosition(db: SQLiteDatabase, migration: BackgroundMigration, position: Long) {
+        if (position == BackgroundMigration.DONE) {
+            db.execSQL("DELETE FROM $NAME WHERE $MIGRATION = ?", arrayOf(migration.name))
+        } else {
+            db.execSQL(
+                "UPDATE $NAME SET $POSITION = ? WHERE $MIGRATION = ?",
+                arrayOf(position, migration.name)
+            )
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.tables
+
+import net.sqlcipher.database.SQLiteDatabase
+
+/**
+ * Periods of the archive of a records table.
+ *
+ * Old records are moved from the records table to a table of their UTC year,
+ * see [org.lineageos.mod.health.db.RecordArchive]. Each row describes one of those
+ * tables and the time range of the records it may contain, so that queries
+ * only read the periods that overlap their interval.
+ */
+class RecordArchiveTable(recordTableName: String) : Table {
+
+    companion object {
+        const val YEAR = "year"
+        const val MIN_TIME = "min_time"
+        const val MAX_TIME = "max_time"
+
+        /**
+         * Version of the record tables that introduced the archive
+         */
+        private const val VERSION = 8
+
+        fun getName(recordTableName: String) = "${recordTableName}_archive"
+    }
+
+    val name = getName(recordTableName)
+
+    private val createCmd = "CREATE TABLE IF NOT EXISTS $name (" +
+        "$YEAR INTEGER NOT NULL PRIMARY KEY, " +
+        "$MIN_TIME INTEGER NOT NULL, " +
+        "$MAX_TIME INTEGER NOT NULL" +
+        ")"
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(createCmd)
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < VERSION) {
+            onCreate(db)
+        }
+    }
+
+    /**
+     * Name of the table of the records archived in [year]
+     */
+    fun getPeriodName(year: Int) = "${name}_$year"
+
+    /**
+     * Extend the time range of the period of [year], adding it if needed
+     */
+    fun extend(db: SQLiteDatabase, year: Int, minTime: Long, maxTime: Long) {
+        db.execSQL(
+            "INSERT INTO $name ($YEAR, $MIN_TIME, $MAX_TIME) VALUES (?, ?, ?) " +
+                "ON CONFLICT ($YEAR) DO UPDATE SET " +
+                "$MIN_TIME = MIN($MIN_TIME, excluded.$MIN_TIME), " +
+                "$MAX_TIME = MAX($MAX_TIME, excluded.$MAX_TIME)",
+            arrayOf(year, minTime, maxTime)
+        )
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.tables
+
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.db.RecordColumns
+
+/**
+ * Progress of the downsampling of each metric of a records table:
+ * the end of the last day averaged over each interval,
+ * see [org.lineageos.mod.health.db.RecordRetention].
+ *
+ * Also holds the weight of the downsampled records: the number of original
+ * records each of them averages, so that averaging them again over a longer
+ * interval gives the average of the original records.
+ * Records without a weight are original ones, with a weight of 1.
+ */
+class RecordRetentionTable(recordTableName: String) : Table {
+
+    companion object {
+        const val INTERVAL = "interval"
+        const val POSITION = "position"
+        const val WEIGHT = "weight"
+
+        /**
+         * Version of the record tables that introduced the retention policies
+         */
+        private const val VERSION = 9
+
+        fun getName(recordTableName: String) = "${recordTableName}_retention"
+
+        fun getWeightName(recordTableName: String) = "${recordTableName}_weight"
+    }
+
+    val name = getName(recordTableName)
+    val weightName = getWeightName(recordTableName)
+
+    private val createCmd = "CREATE TABLE IF NOT EXISTS $name (" +
+        "${RecordColumns._METRIC} INTEGER NOT NULL, " +
+        "$INTERVAL INTEGER NOT NULL, " +
+        "$POSITION INTEGER NOT NULL, " +
+        "PRIMARY KEY (${RecordColumns._METRIC}, $INTERVAL)" +
+        ") WITHOUT ROWID"
+
+    private val createWeightCmd = "CREATE TABLE IF NOT EXISTS $weightName (" +
+        "${RecordColumns._ID} INTEGER NOT NULL PRIMARY KEY, " +
+        "$WEIGHT INTEGER NOT NULL" +
+        ")"
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(createCmd)
+        db.execSQL(createWeightCmd)
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < VERSION) {
+            onCreate(db)
+        }
+    }
+
+    fun getPosition(db: SQLiteDatabase, metric: Int, interval: Long): Long {
+        return db.rawQuery(
+            "SELECT $POSITION FROM $name WHERE ${RecordColumns._METRIC} = ? AND $INTERVAL = ?",
+            arrayOf(metric.toString(), interval.toString())
+        ).use {
+            if (it.moveToFirst()) it.getLong(0) else 0L
+        }
+    }
+
+    fun setPosition(db: SQLiteDatabase, metric: Int, interval: Long, position: Long) {
+        db.execSQL(
+            "INSERT OR REPLACE INTO $name (${RecordColumns._METRIC}, $INTERVAL, $POSITION) " +
+                "VALUES (?, ?, ?)",
+            arrayOf(metric, interval, position)
+        )
+    }
+
+    fun setWeight(db: SQLiteDatabase, id: Long, weight: Long) {
+        db.execSQL(
+            "INSERT OR REPLACE INTO $weightName (${RecordColumns._ID}, $WEIGHT) VALUES (?, ?)",
+            arrayOf(id, weight)
+        )
+    }
+
+    /**
+     * Delete the weights of the records of [source] that match [selection]
+     */
+    fun deleteWeights(
+        db: SQLiteDatabase,
+        source: String,
+        selection: String,
+        selectionArgs: Array<String>
+    ) {
+        db.execSQL(
+            "DELETE FROM $weightName WHERE ${RecordColumns._ID} IN " +
+                "(SELECT ${RecordColumns._ID} FROM $source WHERE $selection)",
+            selectionArgs
+        )
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.tables
+
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.db.AggregateColumns
+import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.db.migrations.BackgroundMigration
+
+/**
+ * Hourly and daily aggregates (count, sum, min, max and last value)
+ * of the [columns] of each metric of a records table.
+ *
+ * Buckets are aligned to UTC. The rows are kept up to date by triggers on the
+ * records table, so they change within the same transaction as the records:
+ * - an insert updates its buckets incrementally
+ * - a delete updates its hour incrementally, scanning the records of the hour
+ *   (including the archived ones, see [setArchiveTables]) only when the deleted
+ *   record held the min, max or last value,
+ *   then recomputes its day from the (at most 24) rows of its hours
+ * - an update is a delete of the old values followed by an insert of the new ones
+ */
+class RecordRollupTable(
+    private val recordTableName: String,
+    val columns: Array<String>
+) : Table {
+
+    companion object {
+        const val HOUR_MILLIS = 3_600_000L
+        const val DAY_MILLIS = 24L * HOUR_MILLIS
+
+        const val LAST_TIME = "last_time"
+
+        /**
+         * Version of the record tables that introduced the rollups
+         */
+        private const val VERSION = 6
+
+        fun getHourName(recordTableName: String) = "${recordTableName}_rollup_hour"
+
+        fun getDayName(recordTableName: String) = "${recordTableName}_rollup_day"
+
+        fun sumOf(column: String) = "${column}_sum"
+
+        fun minOf(column: String) = "${column}_min"
+
+        fun maxOf(column: String) = "${column}_max"
+
+        fun lastOf(column: String) = "${column}_last"
+    }
+
+    val hourName = getHourName(recordTableName)
+    val dayName = getDayName(recordTableName)
+
+    private val rollupColumns = listOf(
+        RecordColumns._METRIC,
+        AggregateColumns.BUCKET_START,
+        AggregateColumns.COUNT,
+        LAST_TIME
+    ) + columns.flatMap { listOf(sumOf(it), minOf(it), maxOf(it), lastOf(it)) }
+
+    override val backgroundMigrations = listOf<BackgroundMigration>(
+        BackfillMigration()
+    )
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(createCmd(hourName))
+        db.execSQL(createCmd(dayName))
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS ${recordTableName}_rollup_insert " +
+                "AFTER INSERT ON $recordTableName BEGIN " +
+                insertCmd(hourName, HOUR_MILLIS, "NEW") +
+                insertCmd(dayName, DAY_MILLIS, "NEW") +
+                "END"
+        )
+        createRemoveTriggers(db, emptyList())
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < VERSION) {
+            // The existing records are added by the BackfillMigration
+            onCreate(db)
+        }
+    }
+
+    /**
+     * Make the triggers also read the records of [archiveTables] when they scan
+     * the records of an hour: a day can have both archived records and records
+     * in the records table, e.g. after a record with an old time is inserted.
+     * Called when the archive tables change.
+     */
+    fun setArchiveTables(db: SQLiteDatabase, archiveTables: List<String>) {
+        db.execSQL("DROP TRIGGER IF EXISTS ${recordTableName}_rollup_delete")
+        db.execSQL("DROP TRIGGER IF EXISTS ${recordTableName}_rollup_update")
+        createRemoveTriggers(db, archiveTables)
+    }
+
+    private fun createRemoveTriggers(db: SQLiteDatabase, archiveTables: List<String>) {
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS ${recordTableName}_rollup_delete " +
+                "AFTER DELETE ON $recordTableName BEGIN " +
+                deleteHourCmd("OLD", archiveTables) +
+                recomputeDayCmd("OLD") +
+                "END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS ${recordTableName}_rollup_update " +
+                "AFTER UPDATE OF ${RecordColumns._METRIC}, ${RecordColumns.TIME}, " +
+                "${columns.joinToString()} ON $recordTableName BEGIN " +
+                deleteHourCmd("OLD", archiveTables) +
+                recomputeDayCmd("OLD") +
+                insertCmd(hourName, HOUR_MILLIS, "NEW") +
+                insertCmd(dayName, DAY_MILLIS, "NEW") +
+                "END"
+        )
+    }
+
+    /**
+     * Recompute the hours and days of all the metrics in the UTC day
+     * starting at [dayStart] from the records of [source], a table name
+     * or a parenthesized query returning the columns of the records table.
+     * Used when records are moved or deleted without the triggers.
+     */
+    fun recomputeDay(db: SQLiteDatabase, source: String, dayStart: Long) {
+        val dayEnd = dayStart + DAY_MILLIS
+        val hour = "r.${RecordColumns.TIME} / $HOUR_MILLIS * $HOUR_MILLIS"
+        val lastRecord = "FROM $source l " +
+            "WHERE l.${RecordColumns._METRIC} = r.${RecordColumns._METRIC} " +
+            "AND l.${RecordColumns.TIME} >= $hour " +
+            "AND l.${RecordColumns.TIME} < $hour + $HOUR_MILLIS " +
+            "ORDER BY l.${RecordColumns.TIME} DESC, l.${RecordColumns._ID} DESC LIMIT 1"
+
+        db.execSQL(
+            "DELETE FROM $hourName WHERE ${AggregateColumns.BUCKET_START} >= ? " +
+                "AND ${AggregateColumns.BUCKET_START} < ?",
+            arrayOf(dayStart, dayEnd)
+        )
+        db.execSQL(
+            "INSERT INTO $hourName (${rollupColumns.joinToString()}) " +
+                "SELECT r.${RecordColumns._METRIC}, $hour, COUNT(*), " +
+                "MAX(r.${RecordColumns.TIME}), " +
+                columns.joinToString {
+                    "SUM(r.$it), MIN(r.$it), MAX(r.$it), (SELECT l.$it $lastRecord)"
+                } + " " +
+                "FROM $source r WHERE r.${RecordColumns.TIME} >= ? " +
+                "AND r.${RecordColumns.TIME} < ? " +
+                "GROUP BY r.${RecordColumns._METRIC}, $hour",
+            arrayOf(dayStart, dayEnd)
+        )
+        db.execSQL(
+            "DELETE FROM $dayName WHERE ${AggregateColumns.BUCKET_START} = ?",
+            arrayOf(dayStart)
+        )
+        db.execSQL(
+            rollupHoursCmd(
+                "h.${AggregateColumns.BUCKET_START} >= ? " +
+                    "AND h.${AggregateColumns.BUCKET_START} < ?"
+            ),
+            arrayOf(dayStart, dayEnd)
+        )
+    }
+
+    private fun createCmd(name: String) = "CREATE TABLE IF NOT EXISTS $name (" +
+        "${RecordColumns._METRIC} INTEGER NOT NULL, " +
+        "${AggregateColumns.BUCKET_START} INTEGER NOT NULL, " +
+        "${AggregateColumns.COUNT} INTEGER NOT NULL, " +
+        "$LAST_TIME INTEGER NOT NULL, " +
+        columns.joinToString {
+            "${sumOf(it)} REAL, ${minOf(it)} REAL, ${maxOf(it)} REAL, ${lastOf(it)} REAL"
+        } + ", " +
+        "PRIMARY KEY (${RecordColumns._METRIC}, ${AggregateColumns.BUCKET_START})" +
+        ") WITHOUT ROWID"
+
+    private fun bucketOf(row: String, size: Long) = "($row.${RecordColumns.TIME} / $size * $size)"
+
+    private fun whereBucket(row: String, size: Long) =
+        "WHERE ${RecordColumns._METRIC} = $row.${RecordColumns._METRIC} " +
+            "AND ${AggregateColumns.BUCKET_START} = ${bucketOf(row, size)}"
+
+    /**
+     * Records of the metric and hour of [row] in the records table and in [archiveTables].
+     * Each table applies the conditions with its own (_metric, time) index.
+     */
+    private fun recordsOfHour(row: String, archiveTables: List<String>): String {
+        val selectedColumns = listOf(RecordColumns._ID, RecordColumns.TIME) + columns
+        val where = "WHERE ${RecordColumns._METRIC} = $row.${RecordColumns._METRIC} " +
+            "AND ${RecordColumns.TIME} >= ${bucketOf(row, HOUR_MILLIS)} " +
+            "AND ${RecordColumns.TIME} < ${bucketOf(row, HOUR_MILLIS)} + $HOUR_MILLIS"
+        return (listOf(recordTableName) + archiveTables).joinToString(
+            separator = " UNION ALL ",
+            prefix = "FROM (",
+            postfix = ") r"
+        ) { "SELECT ${selectedColumns.joinToString()} FROM $it $where" }
+    }
+
+    private fun insertCmd(name: String, size: Long, row: String) = "INSERT INTO $name " +
+        "(${rollupColumns.joinToString()}) VALUES (" +
+        "$row.${RecordColumns._METRIC}, ${bucketOf(row, size)}, 1, $row.${RecordColumns.TIME}, " +
+        columns.joinToString { "$row.$it, $row.$it, $row.$it, $row.$it" } + ") " +
+        "ON CONFLICT (${RecordColumns._METRIC}, ${AggregateColumns.BUCKET_START}) DO UPDATE SET " +
+        "${AggregateColumns.COUNT} = ${AggregateColumns.COUNT} + 1, " +
+        "$LAST_TIME = MAX($LAST_TIME, excluded.$LAST_TIME), " +
+        columns.joinToString {
+            "${sumOf(it)} = ${sumOf(it)} + excluded.${sumOf(it)}, " +
+                "${minOf(it)} = MIN(${minOf(it)}, excluded.${minOf(it)}), " +
+                "${maxOf(it)} = MAX(${maxOf(it)}, excluded.${maxOf(it)}), " +
+                "${lastOf(it)} = CASE WHEN excluded.$LAST_TIME >= $LAST_TIME " +
+                "THEN excluded.${lastOf(it)} ELSE ${lastOf(it)} END"
+        } + "; "
+
+    /**
+     * Remove a record from its hour. The records of the hour are only scanned
+     * for the values that the removed record may have held.
+     */
+    private fun deleteHourCmd(row: String, archiveTables: List<String>): String {
+        val records = recordsOfHour(row, archiveTables)
+        return "UPDATE $hourName SET " +
+            "${AggregateColumns.COUNT} = ${AggregateColumns.COUNT} - 1, " +
+            "$LAST_TIME = CASE WHEN $LAST_TIME > $row.${RecordColumns.TIME} THEN $LAST_TIME " +
+            "ELSE IFNULL((SELECT MAX(r.${RecordColumns.TIME}) $records), 0) END, " +
+            columns.joinToString {
+                "${sumOf(it)} = ${sumOf(it)} - $row.$it, " +
+                    "${minOf(it)} = CASE WHEN ${minOf(it)} < $row.$it THEN ${minOf(it)} " +
+                    "ELSE (SELECT MIN(r.$it) $records) END, " +
+                    "${maxOf(it)} = CASE WHEN ${maxOf(it)} > $row.$it THEN ${maxOf(it)} " +
+                    "ELSE (SELECT MAX(r.$it) $records) END, " +
+                    "${lastOf(it)} = CASE WHEN $LAST_TIME > $row.${RecordColumns.TIME} " +
+                    "THEN ${lastOf(it)} ELSE (SELECT r.$it $records " +
+                    "ORDER BY r.${RecordColumns.TIME} DESC, r.${RecordColumns._ID} DESC " +
+                    "LIMIT 1) END"
+            } + " " +
+            whereBucket(row, HOUR_MILLIS) + "; " +
+            "DELETE FROM $hourName ${whereBucket(row, HOUR_MILLIS)} " +
+            "AND ${AggregateColumns.COUNT} <= 0; "
+    }
+
+    /**
+     * Recompute a day from the rows of its hours
+     */
+    private fun recomputeDayCmd(row: String): String {
+        val dayStart = bucketOf(row, DAY_MILLIS)
+        return "DELETE FROM $dayName ${whereBucket(row, DAY_MILLIS)}; " +
+            rollupHoursCmd(
+                "h.${RecordColumns._METRIC} = $row.${RecordColumns._METRIC} " +
+                    "AND h.${AggregateColumns.BUCKET_START} >= $dayStart " +
+                    "AND h.${AggregateColumns.BUCKET_START} < $dayStart + $DAY_MILLIS"
+            ) + "; "
+    }
+
+    /**
+     * Insert the days of the hours that match [where]
+     */
+    private fun rollupHoursCmd(where: String): String {
+        val day = "h.${AggregateColumns.BUCKET_START} / $DAY_MILLIS * $DAY_MILLIS"
+        val lastHour = "FROM $hourName l " +
+            "WHERE l.${RecordColumns._METRIC} = h.${RecordColumns._METRIC} " +
+            "AND l.${AggregateColumns.BUCKET_START} >= $day " +
+            "AND l.${AggregateColumns.BUCKET_START} < $day + $DAY_MILLIS " +
+            "ORDER BY l.${AggregateColumns.BUCKET_START} DESC LIMIT 1"
+        return "INSERT INTO $dayName (${rollupColumns.joinToString()}) " +
+            "SELECT h.${RecordColumns._METRIC}, $day, SUM(h.${AggregateColumns.COUNT}), " +
+            "MAX(h.$LAST_TIME), " +
+            columns.joinToString {
+                "SUM(h.${sumOf(it)}), MIN(h.${minOf(it)}), MAX(h.${maxOf(it)}), " +
+                    "(SELECT l.${lastOf(it)} $lastHour)"
+            } + " " +
+            "FROM $hourName h WHERE $where " +
+            "GROUP BY h.${RecordColumns._METRIC}, $day"
+    }
+
+    /**
+     * Add the records inserted before the rollups were created, one day at a time.
+     * Each day is recomputed from its records, overwriting the changes made by
+     * the triggers in the meantime, so it can be safely repeated.
+     */
+    private inner class BackfillMigration : BackgroundMigration(
+        "${recordTableName}_rollup_backfill",
+        VERSION
+    ) {
+
+        override fun migrateChunk(db: SQLiteDatabase, position: Long): Long {
+            val firstTime = db.rawQuery(
+                "SELECT MIN(${RecordColumns.TIME}) FROM $recordTableName " +
+                    "WHERE ${RecordColumns.TIME} >= ?",
+                arrayOf(position.toString())
+            ).use {
+                if (it.moveToFirst() && !it.isNull(0)) it.getLong(0) else null
+            } ?: return DONE
+
+            val dayStart = firstTime / DAY_MILLIS * DAY_MILLIS
+            recomputeDay(db, recordTableName, dayStart)
+            return dayStart + DAY_MILLIS
+        }
+    }
+}
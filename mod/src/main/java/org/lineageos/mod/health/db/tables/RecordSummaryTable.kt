@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.tables
+
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.db.RecordColumns
+
+/**
+ * Number of records of each metric of a records table.
+ *
+ * The rows are kept up to date by triggers on the records table,
+ * so that the count of a metric can be read without scanning its records.
+ */
+class RecordSummaryTable(private val recordTableName: String) : Table {
+
+    companion object {
+        const val COUNT = "count"
+
+        fun getName(recordTableName: String) = "${recordTableName}_summary"
+    }
+
+    val name = getName(recordTableName)
+
+    private val createCmd = "CREATE TABLE IF NOT EXISTS $name (" +
+        "${RecordColumns._METRIC} INTEGER NOT NULL PRIMARY KEY, " +
+        "$COUNT INTEGER NOT NULL DEFAULT 0 " +
+        ")"
+
+    private val createInsertTriggerCmd = "CREATE TRIGGER IF NOT EXISTS ${name}_insert " +
+        "AFTER INSERT ON $recordTableName BEGIN " +
+        incrementCmd("NEW") +
+        "END"
+
+    private val createDeleteTriggerCmd = "CREATE TRIGGER IF NOT EXISTS ${name}_delete " +
+        "AFTER DELETE ON $recordTableName BEGIN " +
+        decrementCmd("OLD") +
+        "END"
+
+    private val createUpdateTriggerCmd = "CREATE TRIGGER IF NOT EXISTS ${name}_update " +
+        "AFTER UPDATE OF ${RecordColumns._METRIC} ON $recordTableName " +
+        "WHEN OLD.${RecordColumns._METRIC} != NEW.${RecordColumns._METRIC} BEGIN " +
+        decrementCmd("OLD") +
+        incrementCmd("NEW") +
+        "END"
+
+    private val populateCmd = "INSERT OR REPLACE INTO $name " +
+        "(${RecordColumns._METRIC}, $COUNT) " +
+        "SELECT ${RecordColumns._METRIC}, COUNT(*) FROM $recordTableName " +
+        "GROUP BY ${RecordColumns._METRIC}"
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(createCmd)
+        db.execSQL(createInsertTriggerCmd)
+        db.execSQL(createDeleteTriggerCmd)
+        db.execSQL(createUpdateTriggerCmd)
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < 4) {
+            onCreate(db)
+            db.execSQL(populateCmd)
+        }
+    }
+
+    /**
+     * Add [delta] to the count of a metric, for the records
+     * that are moved or deleted without the triggers.
+     */
+    fun addCount(db: SQLiteDatabase, metric: Long, delta: Long) {
+        db.execSQL(
+            "INSERT INTO $name (${RecordColumns._METRIC}, $COUNT) VALUES (?, ?) " +
+                "ON CONFLICT (${RecordColumns._METRIC}) " +
+                "DO UPDATE SET $COUNT = $COUNT + excluded.$COUNT",
+            arrayOf(metric, delta)
+        )
+    }
+
+    private fun incrementCmd(row: String) = "INSERT INTO $name " +
+        "(${RecordColumns._METRIC}, $COUNT) VALUES ($row.${RecordColumns._METRIC}, 1) " +
+        "ON CONFLICT (${RecordColumns._METRIC}) DO UPDATE SET $COUNT = $COUNT + 1; "
+
+    private fun decrementCmd(row: String) = "UPDATE $name SET $COUNT = $COUNT - 1 " +
+        "WHERE ${RecordColumns._METRIC} = $row.${RecordColumns._METRIC}; "
+}
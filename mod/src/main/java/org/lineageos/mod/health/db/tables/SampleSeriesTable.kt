@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.db.tables
+
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.db.SeriesColumns
+import org.lineageos.mod.health.common.series.SampleCodec
+
+/**
+ * Chunks of compressed samples of the metrics of a records table.
+ *
+ * Each app appends to its own chunks, so the samples of a chunk
+ * always come from the same [SeriesColumns._SOURCE].
+ */
+class SampleSeriesTable(recordTableName: String) : Table {
+
+    companion object {
+        private const val VERSION = 7
+        private const val TAIL_VERSION = 10
+
+        /**
+         * State of the encoder after the last sample of the chunk, so that samples
+         * can be appended without decoding the chunk: see [SampleCodec.Encoder.getTail].
+         * Null for the chunks written before it was added.
+         */
+        const val TAIL = "_tail"
+
+        fun getName(recordTableName: String) = "${recordTableName}_series"
+    }
+
+    val name = getName(recordTableName)
+
+    private val createCmd = "CREATE TABLE IF NOT EXISTS $name (" +
+        "${SeriesColumns._ID} INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, " +
+        "${SeriesColumns._METRIC} INTEGER NOT NULL, " +
+        "${SeriesColumns._SOURCE} TEXT, " +
+        "${SeriesColumns.START_TIME} INTEGER NOT NULL, " +
+        "${SeriesColumns.END_TIME} INTEGER NOT NULL, " +
+        "${SeriesColumns.COUNT} INTEGER NOT NULL, " +
+        "${SeriesColumns.SAMPLES} BLOB NOT NULL, " +
+        "$TAIL BLOB" +
+        ")"
+
+    private val addTailCmd = "ALTER TABLE $name ADD COLUMN $TAIL BLOB"
+
+    private val createIndexMetricEndCmd = "CREATE INDEX IF NOT EXISTS " +
+        "${name}_metric_end ON $name (" +
+        "${SeriesColumns._METRIC}, " +
+        "${SeriesColumns.END_TIME}" +
+        ")"
+
+    private val createIndexSourceEndCmd = "CREATE INDEX IF NOT EXISTS " +
+        "${name}_source_end ON $name (" +
+        "${SeriesColumns._METRIC}, " +
+        "${SeriesColumns._SOURCE}, " +
+        "${SeriesColumns.END_TIME}" +
+        ")"
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(createCmd)
+        db.execSQL(createIndexMetricEndCmd)
+        db.execSQL(createIndexSourceEndCmd)
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < VERSION) {
+            onCreate(db)
+        } else if (oldVersion < TAIL_VERSION) {
+            db.execSQL(addTailCmd)
+        }
+    }
+}
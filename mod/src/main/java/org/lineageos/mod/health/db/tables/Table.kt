@@ -17,9 +17,17 @@
 package org.lineageos.mod.health.db.tables
 
 import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.db.migrations.BackgroundMigration
 
 interface Table {
 
+    /**
+     * Steps of the upgrades of this table that are too slow to be run in [onUpgrade].
+     * They are run in the background once the database is open, see [MigrationTable].
+     */
+    val backgroundMigrations: List<BackgroundMigration>
+        get() = emptyList()
+
     fun onCreate(db: SQLiteDatabase)
 
     fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int)
@@ -17,11 +17,14 @@
 package org.lineageos.mod.health.partner
 
 import android.content.res.Resources
+import android.util.Log
 
 class Partner(private val info: ApkInfo) {
 
     companion object {
+        private const val TAG = "Partner"
         private const val RES_DEFAULT_ACCESS_POLICY = "access_policy"
+        private const val RES_RETENTION_POLICY = "retention_policy"
     }
 
     fun getDefaultAccessPolicy(): List<AccessPolicy> {
@@ -39,6 +42,22 @@ class Partner(private val info: ApkInfo) {
         }
     }
 
+    fun getRetentionPolicies(): List<RetentionPolicy> {
+        val retentionPolicy =
+            info.res.getIdentifier(RES_RETENTION_POLICY, "xml", info.pkgName)
+        if (retentionPolicy == 0) {
+            return emptyList()
+        }
+
+        return try {
+            RetentionPolicyParser.parse(info.res.getXml(retentionPolicy))
+        } catch (e: Exception) {
+            // A malformed file must not prevent the maintenance of the records
+            Log.e(TAG, "Ignoring the retention policy", e)
+            emptyList()
+        }
+    }
+
     data class ApkInfo(
         val pkgName: String,
         val res: Resources
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.partner
+
+import org.lineageos.mod.health.common.values.annotations.MetricType
+
+/**
+ * Stages of the retention of the records of a metric, see [RetentionPolicyParser].
+ */
+data class RetentionPolicy(
+    @MetricType
+    val metric: Int,
+    val stages: List<Stage>
+) {
+
+    /**
+     * @param ageDays Age after which the records are affected by this stage
+     * @param intervalMillis Interval the records are averaged over, 0 if they are deleted
+     */
+    data class Stage(
+        val ageDays: Int,
+        val intervalMillis: Long
+    ) {
+        val isDelete get() = intervalMillis == 0L
+    }
+}
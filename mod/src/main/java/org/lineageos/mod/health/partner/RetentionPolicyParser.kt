@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.partner
+
+import android.content.res.XmlResourceParser
+import org.lineageos.mod.health.common.Metric
+import org.xmlpull.v1.XmlPullParser
+
+/**
+ * Example expected document format:
+ *
+ * ```
+ * <retention version="1">
+ *     <policy metric="3004">
+ *         <downsample after="30" interval="300" />
+ *         <downsample after="730" interval="86400" />
+ *         <delete after="3650" />
+ *     </policy>
+ * </retention>
+ * ```
+ *
+ * - <retention>: Root tag, requires version (int) attribute. Must match [EXPECTED_VERSION]
+ *   for the document to be considered valid
+ * - <policy>: Retention of the records of a metric, requires metric (int) attribute (see [Metric])
+ * - <downsample>: Records older than after (int) days are replaced by their averages
+ *   over interval (int) seconds, which must divide a day
+ * - <delete>: Records older than after (int) days are deleted
+ */
+object RetentionPolicyParser {
+    private const val EXPECTED_VERSION = 1
+
+    private const val SECONDS_PER_DAY = 86_400
+
+    private const val KEY_ROOT = "retention"
+    private const val KEY_POLICY = "policy"
+    private const val KEY_DOWNSAMPLE = "downsample"
+    private const val KEY_DELETE = "delete"
+    private const val ATTR_AFTER = "after"
+    private const val ATTR_INTERVAL = "interval"
+    private const val ATTR_METRIC = "metric"
+    private const val ATTR_VERSION = "version"
+
+    fun parse(xpp: XmlResourceParser): List<RetentionPolicy> {
+        val policies = mutableListOf<RetentionPolicy>()
+        var hasEncounteredRoot = false
+        var currentStages: MutableList<RetentionPolicy.Stage>? = null
+
+        var eventType = xpp.eventType
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            val tagName = xpp.name
+            if (eventType != XmlPullParser.START_TAG) {
+                eventType = xpp.next()
+                continue
+            }
+
+            when (tagName) {
+                KEY_ROOT -> {
+                    if (hasEncounteredRoot) {
+                        throw DocumentFormatException(
+                            "Config can't have more than one <retention> tags"
+                        )
+                    }
+                    hasEncounteredRoot = true
+                    val version = xpp.getAttributeIntValue(null, ATTR_VERSION, 0)
+                    if (version != EXPECTED_VERSION) {
+                        throw UnsupportedVersionException(version)
+                    }
+                }
+                KEY_POLICY -> {
+                    val metric = xpp.getAttributeIntValue(null, ATTR_METRIC, Metric.UNKNOWN)
+                    if (metric == Metric.UNKNOWN) {
+                        throw DocumentFormatException("Missing metric attribute for policy")
+                    }
+                    currentStages = mutableListOf()
+                    policies.add(RetentionPolicy(metric, currentStages))
+                }
+                KEY_DOWNSAMPLE, KEY_DELETE -> {
+                    val stages = currentStages ?: throw DocumentFormatException(
+                        "Found <$tagName> outside a <policy> tag"
+                    )
+                    val after = xpp.getAttributeIntValue(null, ATTR_AFTER, 0)
+                    if (after <= 0) {
+                        throw DocumentFormatException("Invalid after attribute for $tagName")
+                    }
+                    val interval = if (tagName == KEY_DELETE) {
+                        0
+                    } else {
+                        xpp.getAttributeIntValue(null, ATTR_INTERVAL, 0)
+                    }
+                    if (tagName == KEY_DOWNSAMPLE &&
+                        (interval <= 0 || SECONDS_PER_DAY % interval != 0)
+                    ) {
+                        throw DocumentFormatException("Invalid interval $interval for downsample")
+                    }
+                    stages.add(RetentionPolicy.Stage(after, interval * 1000L))
+                }
+            }
+            eventType = xpp.next()
+        }
+
+        return policies
+    }
+
+    class UnsupportedVersionException(version: Int) : Exception(
+        "Unsupported retention policy config version $version, expected $EXPECTED_VERSION"
+    )
+
+    class DocumentFormatException(message: String) : Exception(message)
+}
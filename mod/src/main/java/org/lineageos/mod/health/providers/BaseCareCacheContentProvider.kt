@@ -18,10 +18,14 @@ package org.lineageos.mod.health.providers
 
 import android.content.ContentProviderOperation
 import android.content.ContentProviderResult
+import android.content.ContentResolver
 import android.content.ContentValues
 import android.database.Cursor
 import android.net.Uri
 import android.os.Binder
+import android.os.Bundle
+import android.os.CancellationSignal
+import org.lineageos.mod.health.db.WalDbHelper
 import java.io.FileDescriptor
 import java.io.PrintWriter
 import java.util.ArrayList
@@ -30,12 +34,13 @@ import java.util.ArrayList
  * Base class for all the CareCache ContentProviders
  * that store user data in a SQLite database.
  *
- * Supports printing usage stats when using:
+ * Supports printing usage stats and the progress of
+ * the background migrations of the database when using:
  * `adb shell dumpsys activity providers`
  */
 abstract class BaseCareCacheContentProvider : SQLiteContentProvider() {
 
-    private val stats = ProviderAccessStats()
+    protected val stats = ProviderAccessStats()
     private val _callingUid = ThreadLocal<Int>()
     private var callingUid: Int
         get() = _callingUid.get()!!
@@ -73,6 +78,7 @@ abstract class BaseCareCacheContentProvider : SQLiteContentProvider() {
     /**
      * Perform a query.
      * The given [selection] and [selectionArgs] are ensured to be safe for usage.
+     * Additional (non-sql) arguments are available through [queryArgs].
      *
      * @see [query]
      */
@@ -81,7 +87,8 @@ abstract class BaseCareCacheContentProvider : SQLiteContentProvider() {
         projection: Array<out String>?,
         selection: String?,
         selectionArgs: Array<String>?,
-        sortOrder: String?
+        sortOrder: String?,
+        queryArgs: Bundle
     ): Cursor?
 
     /**
@@ -141,6 +148,25 @@ abstract class BaseCareCacheContentProvider : SQLiteContentProvider() {
         selectionArgs: Array<String>?,
         sortOrder: String?
     ): Cursor? {
+        val queryArgs = Bundle().apply {
+            putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection)
+            putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs)
+            putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder)
+        }
+        return query(uri, projection, queryArgs, null)
+    }
+
+    override fun query(
+        uri: Uri,
+        projection: Array<out String>?,
+        queryArgs: Bundle?,
+        cancellationSignal: CancellationSignal?
+    ): Cursor? {
+        val args = queryArgs ?: Bundle.EMPTY
+        val selection = args.getString(ContentResolver.QUERY_ARG_SQL_SELECTION)
+        val selectionArgs = args.getStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS)
+        val sortOrder = args.getString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER)
+
         validateProjection(cachedCallingPackage, projection)
         validateSql(cachedCallingPackage, selection)
         validateSql(cachedCallingPackage, sortOrder)
@@ -152,7 +178,7 @@ abstract class BaseCareCacheContentProvider : SQLiteContentProvider() {
         val identity = clearCallingIdentityInternal()
         try {
             verifyTransactionAllowed(Type.QUERY, null, selection, selectionArgs)
-            return queryImpl(uri, projection, selection, selectionArgs, sortOrder)
+            return queryImpl(uri, projection, selection, selectionArgs, sortOrder, args)
         } finally {
             restoreCallingIdentityInternal(identity)
             stats.finishOperation(callingUid)
@@ -225,6 +251,7 @@ abstract class BaseCareCacheContentProvider : SQLiteContentProvider() {
             return
         }
         stats.dump(writer, "  ")
+        (openHelper as? WalDbHelper)?.dump(writer, "  ")
     }
 
     protected enum class Type {
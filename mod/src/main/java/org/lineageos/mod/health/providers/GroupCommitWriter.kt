@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.providers
+
+import android.os.SystemClock
+import android.util.Log
+import net.sqlcipher.database.SQLiteDatabase
+import net.sqlcipher.database.SQLiteTransactionListener
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * Executes writes on a dedicated thread, joining the ones submitted
+ * while a transaction is being committed (or within [windowMillis] of
+ * each other) in a single transaction, so they all share one commit.
+ *
+ * Each write runs in its own savepoint: a failing write is rolled back
+ * and its error is thrown to its caller only, without affecting the
+ * others in the same transaction.
+ * Results are returned to the callers only once the transaction is committed.
+ *
+ * The optional [listener] is notified of the begin, commit and rollback
+ * of each transaction.
+ *
+ * Writes are executed without the binder identity of their callers,
+ * so they must not rely on it (e.g. [android.content.ContentProvider.getCallingPackage]).
+ */
+class GroupCommitWriter(
+    private val name: String,
+    private val getDatabase: () -> SQLiteDatabase,
+    private val onCommit: () -> Unit,
+    private val listener: SQLiteTransactionListener? = null,
+    private val windowMillis: Long = DEFAULT_WINDOW_MILLIS,
+    private val maxGroupSize: Int = DEFAULT_MAX_GROUP_SIZE
+) {
+
+    companion object {
+        private const val TAG = "GroupCommitWriter"
+        private const val DEFAULT_WINDOW_MILLIS = 2L
+        private const val DEFAULT_MAX_GROUP_SIZE = 64
+        private const val SAVEPOINT = "group_commit_write"
+    }
+
+    private class Write<T>(val block: () -> T) {
+        val result = CompletableFuture<T>()
+        var value: T? = null
+        var error: Throwable? = null
+    }
+
+    private val queue = LinkedBlockingQueue<Write<*>>()
+    private var thread: Thread? = null
+    private var stopped = false
+
+    /**
+     * Execute [block] within a transaction shared with the other concurrent writes.
+     * Blocks until the transaction is committed.
+     *
+     * @throws IllegalStateException If the writer has been stopped
+     */
+    fun <T> submit(block: () -> T): T {
+        val write = Write(block)
+        enqueue(write)
+
+        try {
+            return write.result.get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    /**
+     * Stop the thread, failing the pending writes. Writes submitted afterwards are rejected.
+     */
+    @Synchronized
+    fun stop() {
+        stopped = true
+        thread?.interrupt()
+        thread = null
+    }
+
+    /**
+     * Queue [write] for the thread, starting it if needed.
+     * Synchronized with [stop] so that a queued write is
+     * either executed or failed once the thread stops.
+     */
+    @Synchronized
+    private fun enqueue(write: Write<*>) {
+        check(!stopped) { "$name has been stopped" }
+        queue.add(write)
+        if (thread == null) {
+            thread = Thread(::loop, name).apply {
+                isDaemon = true
+                start()
+            }
+        }
+    }
+
+    private fun loop() {
+        val group = ArrayList<Write<*>>(maxGroupSize)
+        try {
+            while (!Thread.currentThread().isInterrupted) {
+                group += queue.take()
+                collect(group)
+                execute(group)
+                group.clear()
+            }
+        } catch (e: InterruptedException) {
+            // Stopped
+        } finally {
+            val error = IllegalStateException("$name has been stopped")
+            group.forEach { it.result.completeExceptionally(error) }
+            queue.forEach { it.result.completeExceptionally(error) }
+            queue.clear()
+        }
+    }
+
+    /**
+     * Add to [group] the writes that are already queued or
+     * that are submitted within the window.
+     */
+    private fun collect(group: MutableList<Write<*>>) {
+        val deadline = SystemClock.uptimeMillis() + windowMillis
+        while (group.size < maxGroupSize) {
+            if (queue.drainTo(group, maxGroupSize - group.size) > 0) {
+                continue
+            }
+
+            val remaining = deadline - SystemClock.uptimeMillis()
+            val write = if (remaining > 0) {
+                queue.poll(remaining, TimeUnit.MILLISECONDS)
+            } else {
+                null
+            }
+            group += write ?: break
+        }
+    }
+
+    private fun execute(group: List<Write<*>>) {
+        try {
+            val db = getDatabase()
+            db.beginTransactionWithListener(listener)
+            try {
+                group.forEach { run(db, it) }
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to commit ${group.size} writes", e)
+            group.forEach { it.result.completeExceptionally(e) }
+            return
+        }
+
+        onCommit()
+        group.forEach { it.complete() }
+    }
+
+    private fun <T> run(db: SQLiteDatabase, write: Write<T>) {
+        db.execSQL("SAVEPOINT $SAVEPOINT")
+        try {
+            write.value = write.block()
+        } catch (e: Exception) {
+            db.execSQL("ROLLBACK TO $SAVEPOINT")
+            write.error = e
+        } finally {
+            db.execSQL("RELEASE $SAVEPOINT")
+        }
+    }
+
+    private fun <T> Write<T>.complete() {
+        val error = error
+        if (error == null) {
+            @Suppress("UNCHECKED_CAST")
+            result.complete(value as T)
+        } else {
+            result.completeExceptionally(error)
+        }
+    }
+}
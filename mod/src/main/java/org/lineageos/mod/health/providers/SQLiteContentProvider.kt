@@ -40,7 +40,6 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
 
     companion object {
         private const val TAG = "SQLiteContentProvider"
-        private const val SLEEP_AFTER_YIELD_DELAY = 4000L
         private const val DISALLOW_SUB_QUERIES = true
 
         private const val QUERY_TABLES_VIEWS =
@@ -156,19 +155,27 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
         return result
     }
 
+    /**
+     * Insert all the [values] within a single transaction.
+     *
+     * @return The number of rows that were inserted
+     */
     @CallSuper
     override fun bulkInsert(uri: Uri, values: Array<out ContentValues>): Int {
-        val db = getWritableDatabase()
-        db.beginTransactionWithListener(this)
+        values.forEach { validateContentValues(cachedCallingPackage, it) }
 
+        var count = 0
+        val db = getWritableDatabase().also { this.db = it }
+        db.beginTransactionWithListener(this)
         val identity = clearCallingIdentityInternal()
         try {
             values.forEach {
-                val result = insertInTransaction(uri, it)
-                if (result != null) {
-                    notifyChange = true
+                if (insertInTransaction(uri, it) != null) {
+                    count++
                 }
-                db.yieldIfContendedSafely()
+            }
+            if (count > 0) {
+                notifyChange = true
             }
             db.setTransactionSuccessful()
         } finally {
@@ -177,7 +184,7 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
         }
 
         onEndTransaction()
-        return values.size
+        return count
     }
 
     @CallSuper
@@ -243,6 +250,8 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
             restoreCallingIdentityInternal(identity)
             db.endTransaction()
         }
+
+        onEndTransaction()
         return count
     }
 
@@ -262,7 +271,8 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
             while (i < results.size) {
                 val operation = operations[i]
                 if (i > 0 && operation.isYieldAllowed) {
-                    db.yieldIfContendedSafely(SLEEP_AFTER_YIELD_DELAY)
+                    // Readers use their own connections, only other writers can be waiting
+                    db.yieldIfContendedSafely()
                 }
                 operation.apply(this, results, i++)
             }
@@ -286,7 +296,7 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
     }
 
     override fun onRollback() {
-        // Unused
+        onRollbackTransaction()
     }
 
     protected open fun onBeginTransaction() {
@@ -295,6 +305,9 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
     protected open fun beforeTransactionCommit() {
     }
 
+    protected open fun onRollbackTransaction() {
+    }
+
     @CallSuper
     protected open fun onEndTransaction() {
         if (notifyChange) {
@@ -339,6 +352,24 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
         }
     }
 
+    /**
+     * Enforce the write permission of this provider on the caller.
+     *
+     * Unlike the other operations, [call] is not guarded by the permissions
+     * declared in the manifest, so methods that write must check it themselves.
+     * Like the framework does, calls from this app are always allowed.
+     */
+    protected fun enforceCallingWritePermission() {
+        val permission = writePermission ?: return
+        if (Binder.getCallingUid() == Process.myUid()) {
+            return
+        }
+        context!!.enforceCallingPermission(
+            permission,
+            "Permission denial: writing to ${javaClass.name} requires $permission"
+        )
+    }
+
     /**
      * Ensure a piece of SQL is valid and doesn't contain disallowed tokens
      */
@@ -368,7 +399,7 @@ abstract class SQLiteContentProvider : ContentProvider(), SQLiteTransactionListe
     /**
      * Ensure all keys in [values] are valid (i.e. they're all single token)
      */
-    private fun validateContentValues(callerPackage: String?, values: ContentValues?) {
+    protected fun validateContentValues(callerPackage: String?, values: ContentValues?) {
         if (values == null) {
             return
         }
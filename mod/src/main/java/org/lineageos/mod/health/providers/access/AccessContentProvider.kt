@@ -21,10 +21,12 @@ import android.content.Context
 import android.content.UriMatcher
 import android.database.Cursor
 import android.net.Uri
+import android.os.Bundle
 import net.sqlcipher.database.SQLiteDatabase
 import net.sqlcipher.database.SQLiteOpenHelper
 import net.sqlcipher.database.SQLiteQueryBuilder
 import org.lineageos.mod.health.UriConst
+import org.lineageos.mod.health.access.AccessManager
 import org.lineageos.mod.health.common.CareCacheUri
 import org.lineageos.mod.health.common.db.AccessColumns
 import org.lineageos.mod.health.db.CareCacheDbHelper
@@ -39,7 +41,7 @@ class AccessContentProvider : BaseCareCacheContentProvider() {
         private const val WHERE_BY_PKG_METRIC =
             "${AccessColumns.PKG_NAME} = ? AND ${AccessColumns.METRIC} = ?"
         private const val DEFAULT_QUERY_SORT =
-            "${AccessColumns.PKG_NAME} ASC ${AccessColumns.METRIC} ASC"
+            "${AccessColumns.PKG_NAME} ASC, ${AccessColumns.METRIC} ASC"
 
         private val uriMatcher = UriMatcher(UriMatcher.NO_MATCH).apply {
             addURI(CareCacheUri.Authority.ACCESS, "/", UriConst.MATCH_ALL)
@@ -126,7 +128,8 @@ class AccessContentProvider : BaseCareCacheContentProvider() {
         projection: Array<out String>?,
         selection: String?,
         selectionArgs: Array<String>?,
-        sortOrder: String?
+        sortOrder: String?,
+        queryArgs: Bundle
     ): Cursor? {
         var localSelection = selection ?: ""
         var localSelectionArgs = selectionArgs ?: emptyArray()
@@ -167,6 +170,8 @@ class AccessContentProvider : BaseCareCacheContentProvider() {
     }
 
     override fun notifyChange() {
+        // Called after the transaction has been committed
+        AccessManager.getInstance(context!!.contentResolver).invalidate()
         context!!.contentResolver.notifyChange(CareCacheUri.ACCESS, null)
     }
 
@@ -21,6 +21,7 @@ import android.content.ContentValues
 import android.content.Context
 import android.database.Cursor
 import android.net.Uri
+import android.os.Bundle
 import net.sqlcipher.database.SQLiteDatabase
 import net.sqlcipher.database.SQLiteOpenHelper
 import net.sqlcipher.database.SQLiteQueryBuilder
@@ -75,7 +76,8 @@ class MedicalProfileProvider : BaseCareCacheContentProvider() {
         projection: Array<out String>?,
         selection: String?,
         selectionArgs: Array<String>?,
-        sortOrder: String?
+        sortOrder: String?,
+        queryArgs: Bundle
     ): Cursor? {
         val db = getReadableDatabase()
         val qb = SQLiteQueryBuilder().apply { tables = MedicalProfileTable.NAME }
@@ -17,10 +17,17 @@
 package org.lineageos.mod.health.providers.records
 
 import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.Metric
 import org.lineageos.mod.health.db.tables.ActivityTable
 
 class ActivityRecordContentProvider : RecordContentProvider(
     CareCacheUri.ACTIVITY,
     CareCacheUri.Authority.ACTIVITY,
-    ActivityTable.NAME
+    ActivityTable.NAME,
+    intArrayOf(
+        Metric.CYCLING,
+        Metric.RUNNING,
+        Metric.WALKING,
+        Metric.WORKOUT
+    )
 )
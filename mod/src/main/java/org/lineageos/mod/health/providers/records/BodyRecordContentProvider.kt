@@ -17,10 +17,21 @@
 package org.lineageos.mod.health.providers.records
 
 import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.Metric
 import org.lineageos.mod.health.db.tables.BodyTable
 
 class BodyRecordContentProvider : RecordContentProvider(
     CareCacheUri.BODY,
     CareCacheUri.Authority.BODY,
-    BodyTable.NAME
+    BodyTable.NAME,
+    intArrayOf(
+        Metric.ABDOMINAL_CIRCUMFERENCE,
+        Metric.BODY_MASS_INDEX,
+        Metric.BODY_TEMPERATURE,
+        Metric.LEAN_BODY_MASS,
+        Metric.MENSTRUAL_CYCLE,
+        Metric.UV_INDEX,
+        Metric.WATER_INTAKE,
+        Metric.WEIGHT
+    )
 )
@@ -17,10 +17,18 @@
 package org.lineageos.mod.health.providers.records
 
 import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.Metric
 import org.lineageos.mod.health.db.tables.BreathingTable
 
 class BreathingRecordContentProvider : RecordContentProvider(
     CareCacheUri.BREATHING,
     CareCacheUri.Authority.BREATHING,
-    BreathingTable.NAME
+    BreathingTable.NAME,
+    intArrayOf(
+        Metric.INHALER_USAGE,
+        Metric.OXYGEN_SATURATION,
+        Metric.PEAK_EXPIRATORY_FLOW,
+        Metric.RESPIRATORY_RATE,
+        Metric.VITAL_CAPACITY
+    )
 )
@@ -17,10 +17,18 @@
 package org.lineageos.mod.health.providers.records
 
 import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.Metric
 import org.lineageos.mod.health.db.tables.HeartBloodTable
 
 class HeartBloodRecordContentProvider : RecordContentProvider(
     CareCacheUri.HEART_BLOOD,
     CareCacheUri.Authority.HEART_BLOOD,
-    HeartBloodTable.NAME
+    HeartBloodTable.NAME,
+    intArrayOf(
+        Metric.BLOOD_ALCOHOL_CONCENTRATION,
+        Metric.BLOOD_PRESSURE,
+        Metric.GLUCOSE,
+        Metric.HEART_RATE,
+        Metric.PERFUSION_INDEX
+    )
 )
@@ -17,10 +17,16 @@
 package org.lineageos.mod.health.providers.records
 
 import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.Metric
 import org.lineageos.mod.health.db.tables.MindfulnessTable
 
 class MindfulnessRecordContentProvider : RecordContentProvider(
     CareCacheUri.MINDFULNESS,
     CareCacheUri.Authority.MINDFULNESS,
-    MindfulnessTable.NAME
+    MindfulnessTable.NAME,
+    intArrayOf(
+        Metric.MEDITATION,
+        Metric.MOOD,
+        Metric.SLEEP
+    )
 )
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.providers.records
+
+import android.content.ContentResolver
+import android.net.Uri
+import android.os.Handler
+import android.os.Looper
+
+/**
+ * Collects the changed records and notifies them with the narrowest URIs:
+ * - `<authority>/<metric>/<id>` when a single record of a metric changed
+ * - `<authority>/<metric>` when multiple records of a metric changed
+ * - `<authority>` when the records of all the metrics may have changed
+ *
+ * Observers of a metric with `notifyForDescendants` are notified in all cases.
+ * Changes are collected for the transaction running on the calling thread
+ * and only become visible to [notifyChange] once it is committed ([commit]):
+ * the ones of a rolled back transaction are dropped ([discard]).
+ * Changes are dispatched after [DEBOUNCE_MILLIS], so that close transactions
+ * (e.g. many single inserts) produce a single notification for each metric.
+ */
+class RecordChangeNotifier(
+    private val contentResolver: ContentResolver,
+    private val contentUri: Uri
+) {
+
+    companion object {
+        private const val DEBOUNCE_MILLIS = 50L
+
+        /**
+         * Placeholder id for a metric whose changed records are not known
+         */
+        private const val ALL_RECORDS = -1L
+    }
+
+    private class Changes {
+        /**
+         * Metric -> id of the only record that changed, or [ALL_RECORDS]
+         */
+        val records = HashMap<String, Long>()
+        var category = false
+
+        fun addRecord(metric: String, id: Long) {
+            val previous = records[metric]
+            records[metric] = if (previous == null || previous == id) id else ALL_RECORDS
+        }
+
+        fun addAll(other: Changes) {
+            category = category || other.category
+            other.records.forEach { (metric, id) ->
+                if (id == ALL_RECORDS) {
+                    records[metric] = ALL_RECORDS
+                } else {
+                    addRecord(metric, id)
+                }
+            }
+        }
+
+        fun isEmpty() = records.isEmpty() && !category
+
+        fun clear() {
+            records.clear()
+            category = false
+        }
+    }
+
+    private val handler = Handler(Looper.getMainLooper())
+    private val dispatchRunnable = Runnable { dispatch() }
+
+    /**
+     * Changes of the transaction running on each thread
+     */
+    private val pending = object : ThreadLocal<Changes>() {
+        override fun initialValue() = Changes()
+    }
+
+    /**
+     * Committed changes waiting to be dispatched
+     */
+    private val changes = Changes()
+    private var scheduled = false
+
+    fun onRecordChanged(metric: String, id: Long) {
+        pending.get()!!.addRecord(metric, id)
+    }
+
+    fun onMetricChanged(metric: String) {
+        pending.get()!!.records[metric] = ALL_RECORDS
+    }
+
+    fun onCategoryChanged() {
+        pending.get()!!.category = true
+    }
+
+    /**
+     * Make the changes of the transaction of the calling thread
+     * available to [notifyChange], as it is being committed.
+     */
+    fun commit() {
+        val transactionChanges = pending.get()!!
+        if (transactionChanges.isEmpty()) {
+            return
+        }
+        synchronized(this) {
+            changes.addAll(transactionChanges)
+        }
+        transactionChanges.clear()
+    }
+
+    /**
+     * Drop the changes of the transaction of the calling thread,
+     * as it is being rolled back.
+     */
+    fun discard() {
+        pending.get()!!.clear()
+    }
+
+    /**
+     * Schedule the notification of the committed changes
+     */
+    fun notifyChange() {
+        synchronized(this) {
+            if (scheduled || changes.isEmpty()) {
+                return
+            }
+            scheduled = true
+        }
+        handler.postDelayed(dispatchRunnable, DEBOUNCE_MILLIS)
+    }
+
+    private fun dispatch() {
+        val uris = synchronized(this) {
+            scheduled = false
+            val uris = if (changes.category) {
+                listOf(contentUri)
+            } else {
+                changes.records.map { (metric, id) ->
+                    if (id == ALL_RECORDS) {
+                        Uri.withAppendedPath(contentUri, metric)
+                    } else {
+                        Uri.withAppendedPath(contentUri, "$metric/$id")
+                    }
+                }
+            }
+            changes.clear()
+            uris
+        }
+
+        uris.forEach { contentResolver.notifyChange(it, null) }
+    }
+}
@@ -16,12 +16,20 @@
 
 package org.lineageos.mod.health.providers.records
 
+import android.content.ContentProviderOperation
+import android.content.ContentProviderResult
+import android.content.ContentResolver
 import android.content.ContentValues
 import android.content.Context
 import android.content.UriMatcher
 import android.database.Cursor
 import android.net.Uri
+import android.os.Binder
+import android.os.Bundle
+import android.util.Log
+import android.util.SparseBooleanArray
 import net.sqlcipher.database.SQLiteDatabase
+import net.sqlcipher.database.SQLiteException
 import net.sqlcipher.database.SQLiteOpenHelper
 import net.sqlcipher.database.SQLiteQueryBuilder
 import org.lineageos.mod.health.UriConst
@@ -29,76 +37,435 @@ import org.lineageos.mod.health.access.AccessManager
 import org.lineageos.mod.health.access.EmptyCursor
 import org.lineageos.mod.health.access.canRead
 import org.lineageos.mod.health.access.canWrite
+import org.lineageos.mod.health.common.BulkInsert
+import org.lineageos.mod.health.common.CareCacheUri
+import org.lineageos.mod.health.common.QueryArgs
+import org.lineageos.mod.health.common.SampleSeries
+import org.lineageos.mod.health.common.db.AggregateColumns
 import org.lineageos.mod.health.common.db.RecordColumns
+import org.lineageos.mod.health.common.db.SeriesColumns
+import org.lineageos.mod.health.common.db.SummaryColumns
 import org.lineageos.mod.health.common.values.AccessPolicyValues
-import org.lineageos.mod.health.db.CareCacheDbHelper
+import org.lineageos.mod.health.common.values.TimeBucket
+import org.lineageos.mod.health.db.RecordDbHelper
+import org.lineageos.mod.health.db.SqlChecker
+import org.lineageos.mod.health.db.StatementCache
+import org.lineageos.mod.health.db.bindValues
+import org.lineageos.mod.health.db.tables.RecordRollupTable
+import org.lineageos.mod.health.db.tables.RecordSummaryTable
+import org.lineageos.mod.health.db.tables.SampleSeriesTable
 import org.lineageos.mod.health.providers.BaseCareCacheContentProvider
+import org.lineageos.mod.health.providers.GroupCommitWriter
 import org.lineageos.mod.health.security.KeyMaster
 import org.lineageos.mod.health.validators.RecordValidator
+import org.lineageos.mod.health.validators.Validator
+import java.util.ArrayList
 
 abstract class RecordContentProvider(
     private val contentUri: Uri,
     authority: String,
-    private val tableName: String
+    private val tableName: String,
+    private val metrics: IntArray
 ) : BaseCareCacheContentProvider() {
 
     companion object {
+        private const val TAG = "RecordContentProvider"
+
+        /**
+         * Each metric writes its own set of columns, so a few statements
+         * per metric are enough to execute every write of a batch import
+         * without compiling SQL.
+         */
+        private const val STATEMENT_CACHE_SIZE = 64
+        private const val KEY_INSERT = "insert:"
+        private const val KEY_UPDATE = "update:"
+        private const val KEY_UPSERT = "upsert:"
+        private const val KEY_UPSERT_ID = "upsert_id"
+        private const val KEY_DELETE = "delete"
+
+        /**
+         * Batches with at least this number of operations are followed by a
+         * checkpoint, so that their changes don't slow down the readers
+         * that would otherwise have to look them up in the WAL file.
+         */
+        private const val CHECKPOINT_BATCH_SIZE = 1000
+
         private const val WHERE_BY_METRIC =
             "${RecordColumns._METRIC} = ?"
         private const val WHERE_BY_METRIC_ID =
             "${RecordColumns._METRIC} = ? AND ${RecordColumns._ID} = ?"
+        private const val WHERE_TIME_FROM =
+            "${RecordColumns.TIME} >= ?"
+        private const val WHERE_TIME_TO =
+            "${RecordColumns.TIME} < ?"
+        private const val WHERE_BUCKET_FROM =
+            "${AggregateColumns.BUCKET_START} >= ?"
+        private const val WHERE_BUCKET_TO =
+            "${AggregateColumns.BUCKET_START} < ?"
+        private const val WHERE_SERIES_FROM =
+            "${SeriesColumns.END_TIME} >= ?"
+        private const val WHERE_SERIES_TO =
+            "${SeriesColumns.START_TIME} < ?"
+        private const val WHERE_SEEK =
+            "${RecordColumns.TIME} <= ? AND " +
+                "(${RecordColumns.TIME}, ${RecordColumns._ID}) < (?, ?)"
         private const val DEFAULT_QUERY_SORT =
             "${RecordColumns.TIME} DESC"
+        private const val TIMELINE_QUERY_SORT =
+            "${RecordColumns.TIME} ASC"
+        private const val PAGED_QUERY_SORT =
+            "${RecordColumns.TIME} DESC, ${RecordColumns._ID} DESC"
+        private val UPSERT_CONFLICT_COLUMNS = arrayOf(
+            RecordColumns._SOURCE,
+            RecordColumns._METRIC,
+            RecordColumns.EXTERNAL_ID
+        )
+        private val WHERE_UPSERT_CONFLICT =
+            UPSERT_CONFLICT_COLUMNS.joinToString(" AND ") { "$it = ?" }
+        private const val AGGREGATE_QUERY_SORT =
+            "${AggregateColumns.BUCKET_START} ASC"
+        private const val SERIES_QUERY_SORT =
+            "${SeriesColumns.START_TIME} ASC"
+
+        private const val SECONDS_OF_TIME = "${RecordColumns.TIME} / 1000, 'unixepoch'"
+        private val BUCKET_START_EXPRESSIONS = mapOf(
+            TimeBucket.HOUR to "strftime('%s', " +
+                "strftime('%Y-%m-%d %H:00:00', $SECONDS_OF_TIME, 'localtime'), 'utc')",
+            TimeBucket.DAY to "strftime('%s', $SECONDS_OF_TIME, " +
+                "'localtime', 'start of day', 'utc')",
+            TimeBucket.WEEK to "strftime('%s', $SECONDS_OF_TIME, " +
+                "'localtime', 'start of day', '-6 days', 'weekday 1', 'utc')",
+            TimeBucket.MONTH to "strftime('%s', $SECONDS_OF_TIME, " +
+                "'localtime', 'start of month', 'utc')"
+        )
+        private val AGGREGATABLE_COLUMNS = setOf(
+            RecordColumns.AVG_SPEED,
+            RecordColumns.CALORIES,
+            RecordColumns.DISTANCE,
+            RecordColumns.DURATION,
+            RecordColumns.ELEVATION_GAIN,
+            RecordColumns.PRESSURE_DIASTOLIC,
+            RecordColumns.PRESSURE_SYSTOLIC,
+            RecordColumns.STEPS,
+            RecordColumns.VALUE
+        )
     }
 
     private val uriMatcher = UriMatcher(UriMatcher.NO_MATCH).apply {
+        addURI(authority, null, UriConst.MATCH_ALL)
         addURI(authority, "#", UriConst.MATCH_METRIC)
         addURI(authority, "#/#", UriConst.MATCH_ITEM)
+        addURI(authority, "#/aggregate", UriConst.MATCH_AGGREGATE)
+        addURI(authority, "#/summary", UriConst.MATCH_SUMMARY)
+        addURI(authority, "#/upsert", UriConst.MATCH_UPSERT)
+        addURI(authority, "#/series", UriConst.MATCH_SERIES)
     }
 
+    private val upsertIdQuery = "SELECT ${RecordColumns._ID} FROM $tableName " +
+        "WHERE $WHERE_UPSERT_CONFLICT"
+
+    private val statements = StatementCache(STATEMENT_CACHE_SIZE)
+    private val seriesStore = SampleSeriesStore(SampleSeriesTable.getName(tableName))
+    private val archive get() = (openHelper as RecordDbHelper).archive
+    private val groupCommitWriter = GroupCommitWriter(
+        "GroupCommit-$tableName",
+        ::getWritableDatabase,
+        ::notifyChange,
+        this
+    )
+
     private lateinit var keyMaster: KeyMaster
     private lateinit var accessManager: AccessManager
+    private lateinit var changeNotifier: RecordChangeNotifier
 
     override fun onCreate(): Boolean {
         keyMaster = KeyMaster.getInstance(context!!)
-        accessManager = AccessManager(context!!.contentResolver)
+        accessManager = AccessManager.getInstance(context!!.contentResolver)
+        changeNotifier = RecordChangeNotifier(context!!.contentResolver, contentUri)
         return super.onCreate()
     }
 
+    override fun shutdown() {
+        groupCommitWriter.stop()
+        statements.clear()
+        super.shutdown()
+    }
+
     override fun getDatabaseHelper(context: Context): SQLiteOpenHelper {
-        return CareCacheDbHelper.getInstance(context)
+        return RecordDbHelper.getInstance(context, tableName)
     }
 
     override fun getReadableDatabase(): SQLiteDatabase {
-        return openHelper!!.getReadableDatabase(keyMaster.getDbKey())
+        // Queries within a batch must see its uncommitted changes
+        if (isApplyingBatch) {
+            return getWritableDatabase()
+        }
+        return (openHelper as RecordDbHelper).getReaderDatabase(keyMaster.getDbKey())
     }
 
     override fun getWritableDatabase(): SQLiteDatabase {
-        return openHelper!!.getWritableDatabase(keyMaster.getDbKey())
+        val helper = openHelper as RecordDbHelper
+        return helper.getWritableDatabase(keyMaster.getDbKey()).also {
+            helper.awaitLegacyImport()
+        }
+    }
+
+    override fun applyBatch(
+        operations: ArrayList<ContentProviderOperation>
+    ): Array<ContentProviderResult> {
+        val results = super.applyBatch(operations)
+        if (operations.size >= CHECKPOINT_BATCH_SIZE) {
+            (openHelper as RecordDbHelper).checkpoint(keyMaster.getDbKey())
+        }
+        return results
+    }
+
+    /**
+     * Inserts with the [CareCacheUri.Param.GROUP_COMMIT] parameter are
+     * executed by the [groupCommitWriter] together with the other concurrent ones.
+     */
+    override fun insert(uri: Uri, values: ContentValues?): Uri? {
+        if (values == null || isApplyingBatch ||
+            !uri.getBooleanQueryParameter(CareCacheUri.Param.GROUP_COMMIT, false)
+        ) {
+            return super.insert(uri, values)
+        }
+
+        // The writer thread has no binder identity, so the caller is resolved here
+        val callerPackage = callingPackage
+        val callingUid = Binder.getCallingUid()
+        stats.incrementInsertStats(callingUid, false)
+        try {
+            validateContentValues(callerPackage, values)
+            verifyTransactionAllowed(Type.INSERT, values, null, null)
+            return groupCommitWriter.submit {
+                insertRecord(uri, values, callerPackage)
+            }
+        } finally {
+            stats.finishOperation(callingUid)
+        }
+    }
+
+    override fun call(method: String, arg: String?, extras: Bundle?): Bundle? {
+        return when (method) {
+            BulkInsert.METHOD -> {
+                enforceCallingWritePermission()
+                val values = extras?.getParcelableArray(BulkInsert.EXTRA_VALUES)
+                    ?: throw IllegalArgumentException("Missing ${BulkInsert.EXTRA_VALUES}")
+                val records = Array(values.size) {
+                    values[it] as? ContentValues
+                        ?: throw IllegalArgumentException("Invalid record at index $it")
+                }
+                val results = insertAll(records, null)
+                Bundle().apply {
+                    putLongArray(BulkInsert.EXTRA_RESULTS, results)
+                }
+            }
+            SampleSeries.METHOD_APPEND -> {
+                enforceCallingWritePermission()
+                val samples = extras?.getByteArray(SampleSeries.EXTRA_SAMPLES)
+                    ?: throw IllegalArgumentException("Missing ${SampleSeries.EXTRA_SAMPLES}")
+                val result = appendSamples(extras.getInt(SampleSeries.EXTRA_METRIC), samples)
+                Bundle().apply {
+                    putInt(SampleSeries.EXTRA_RESULT, result)
+                }
+            }
+            else -> super.call(method, arg, extras)
+        }
+    }
+
+    /**
+     * Only the records that were actually inserted are counted.
+     */
+    override fun bulkInsert(uri: Uri, values: Array<out ContentValues>): Int {
+        if (uriMatcher.match(uri) != UriConst.MATCH_METRIC) {
+            throw IllegalArgumentException("Unknown insert URL $uri")
+        }
+
+        val pathMetric = uri.lastPathSegment!!.toInt()
+        return insertAll(values, pathMetric).count { it > 0L }
     }
 
     override fun insertInTransactionImpl(uri: Uri, values: ContentValues): Uri? {
+        return insertRecord(uri, values, callingPackage)
+    }
+
+    private fun insertRecord(uri: Uri, values: ContentValues, callerPackage: String?): Uri? {
         val match = uriMatcher.match(uri)
-        if (match != UriConst.MATCH_METRIC) {
+        if (match != UriConst.MATCH_METRIC && match != UriConst.MATCH_UPSERT) {
             throw IllegalArgumentException("Unknown insert URL $uri")
         }
 
         val metric = values.getAsInteger(RecordColumns._METRIC).toString()
-        val pathMetric = uri.lastPathSegment
+        val segments = uri.pathSegments
+        val pathMetric = if (match == UriConst.MATCH_UPSERT) {
+            segments[segments.size - 2]
+        } else {
+            segments[segments.size - 1]
+        }
         if (metric != pathMetric) {
             throw IllegalArgumentException(
                 "Trying to insert a record with metric $metric as a metric $pathMetric"
             )
         }
 
-        if (!canWrite(accessManager, metric)) {
+        if (match == UriConst.MATCH_UPSERT &&
+            values.getAsString(RecordColumns.EXTERNAL_ID).isNullOrEmpty()
+        ) {
+            throw IllegalArgumentException("Cannot upsert a record without an external id")
+        }
+
+        if (callerPackage == null || !accessManager.canWrite(callerPackage, metric.toInt())) {
             return AccessPolicyValues.DENIED_URI
         }
 
+        values.put(RecordColumns._SOURCE, callerPackage)
+
         val db = getWritableDatabase()
-        val id = db.insert(tableName, null, values)
+        val id = if (match == UriConst.MATCH_UPSERT) {
+            upsert(db, values)
+        } else {
+            insert(db, values)
+        }
+
+        if (id < 0) {
+            return null
+        }
+
+        changeNotifier.onRecordChanged(metric, id)
+        return Uri.withAppendedPath(contentUri, "$metric/$id")
+    }
+
+    /**
+     * Insert all the records with a single transaction, checking the access
+     * policy of each metric only once. Records with the same set of columns
+     * are inserted with the same compiled statement.
+     * A record that can't be inserted does not affect the others.
+     *
+     * @param pathMetric The metric all the records must have, if any
+     * @return The id of each inserted record,
+     * [BulkInsert.RESULT_FAILURE] or [BulkInsert.RESULT_DENIED]
+     */
+    private fun insertAll(values: Array<out ContentValues>, pathMetric: Int?): LongArray {
+        val results = LongArray(values.size) { BulkInsert.RESULT_FAILURE }
+        if (values.isEmpty()) {
+            return results
+        }
+
+        val callerPackage = callingPackage
+        val callingUid = Binder.getCallingUid()
+        // Metric -> whether the caller can write its records
+        val writableMetrics = SparseBooleanArray(metrics.size)
+
+        stats.incrementBatchStats(callingUid)
+        val identity = clearCallingIdentityInternal()
+        try {
+            val db = getWritableDatabase()
+            db.beginTransactionWithListener(this)
+            try {
+                values.forEachIndexed { i, cv ->
+                    results[i] = insertAllRecord(db, cv, callerPackage, pathMetric, writableMetrics)
+                }
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+        } finally {
+            restoreCallingIdentityInternal(identity)
+            stats.finishOperation(callingUid)
+        }
 
-        return if (id < 0) null else Uri.withAppendedPath(contentUri, "$metric/$id")
+        if (values.size >= CHECKPOINT_BATCH_SIZE) {
+            (openHelper as RecordDbHelper).checkpoint(keyMaster.getDbKey())
+        }
+        notifyChange()
+        return results
+    }
+
+    /**
+     * Append samples to the series of a metric with a single transaction.
+     *
+     * @return The number of appended samples or [AccessPolicyValues.DENIED_COUNT]
+     */
+    private fun appendSamples(metric: Int, samples: ByteArray): Int {
+        if (metric !in metrics) {
+            throw IllegalArgumentException("Unknown metric $metric")
+        }
+
+        val callerPackage = callingPackage
+        val callingUid = Binder.getCallingUid()
+        stats.incrementInsertStats(callingUid, false)
+        val identity = clearCallingIdentityInternal()
+        try {
+            if (callerPackage == null || !accessManager.canWrite(callerPackage, metric)) {
+                return AccessPolicyValues.DENIED_COUNT
+            }
+
+            val db = getWritableDatabase()
+            db.beginTransactionWithListener(this)
+            val count = try {
+                seriesStore.append(db, metric, callerPackage, samples).also {
+                    if (it > 0) {
+                        changeNotifier.onMetricChanged(metric.toString())
+                    }
+                    db.setTransactionSuccessful()
+                }
+            } finally {
+                db.endTransaction()
+            }
+
+            if (count > 0) {
+                notifyChange()
+            }
+            return count
+        } finally {
+            restoreCallingIdentityInternal(identity)
+            stats.finishOperation(callingUid)
+        }
+    }
+
+    private fun insertAllRecord(
+        db: SQLiteDatabase,
+        values: ContentValues,
+        callerPackage: String?,
+        pathMetric: Int?,
+        writableMetrics: SparseBooleanArray
+    ): Long {
+        val metric = values.getAsInteger(RecordColumns._METRIC)
+        if (metric == null || metric !in metrics || (pathMetric != null && metric != pathMetric)) {
+            return BulkInsert.RESULT_FAILURE
+        }
+
+        try {
+            validateContentValues(callerPackage, values)
+            RecordValidator.validate(values)
+        } catch (e: SqlChecker.InvalidSqlException) {
+            return BulkInsert.RESULT_FAILURE
+        } catch (e: Validator.ValidationException) {
+            Log.w(TAG, "Skipping invalid record: ${e.message}")
+            return BulkInsert.RESULT_FAILURE
+        }
+
+        val index = writableMetrics.indexOfKey(metric)
+        val canWrite = if (index >= 0) {
+            writableMetrics.valueAt(index)
+        } else {
+            (callerPackage != null && accessManager.canWrite(callerPackage, metric)).also {
+                writableMetrics.put(metric, it)
+            }
+        }
+        if (!canWrite) {
+            return BulkInsert.RESULT_DENIED
+        }
+
+        values.put(RecordColumns._SOURCE, callerPackage)
+        val id = insert(db, values)
+        if (id < 0) {
+            return BulkInsert.RESULT_FAILURE
+        }
+
+        changeNotifier.onRecordChanged(metric.toString(), id)
+        return id
     }
 
     override fun updateInTransactionImpl(uri: Uri, values: ContentValues): Int {
@@ -112,45 +479,222 @@ abstract class RecordContentProvider(
             return AccessPolicyValues.DENIED_COUNT
         }
 
+        // The source of a record never changes
+        values.remove(RecordColumns._SOURCE)
+
         val segments = uri.pathSegments
-        val localSelectionArgs = arrayOf(
-            segments[segments.size - 2],
-            segments[segments.size - 1]
-        )
+        val pathMetric = segments[segments.size - 2]
+        val id = segments[segments.size - 1]
+        val columns = values.keySet().sorted()
+        val statement = statements.get(getWritableDatabase(), KEY_UPDATE + columns) {
+            "UPDATE $tableName SET ${columns.joinToString { "$it = ?" }} " +
+                "WHERE $WHERE_BY_METRIC_ID"
+        }
+        val next = statement.bindValues(values, columns)
+        statement.bindString(next, pathMetric)
+        statement.bindString(next + 1, id)
+        var count = statement.executeUpdateDelete()
+        if (count == 0 && !archive.isEmpty) {
+            // Archived records are moved back to be updated
+            val db = getWritableDatabase()
+            if (archive.unarchive(db, WHERE_BY_METRIC_ID, arrayOf(pathMetric, id)) > 0) {
+                count = statement.executeUpdateDelete()
+            }
+        }
+        if (count > 0) {
+            changeNotifier.onRecordChanged(pathMetric, id.toLong())
+            if (metric != pathMetric) {
+                // The record moved to another metric
+                changeNotifier.onRecordChanged(metric, id.toLong())
+            }
+        }
+        return count
+    }
 
-        val db = getWritableDatabase()
-        return db.update(tableName, values, WHERE_BY_METRIC_ID, localSelectionArgs)
+    /**
+     * Equivalent of [SQLiteDatabase.insert] that reuses the statement
+     * compiled for the same set of columns.
+     *
+     * @return The id of the inserted record or -1 if an error occurred
+     */
+    private fun insert(db: SQLiteDatabase, values: ContentValues): Long {
+        val columns = values.keySet().sorted()
+        val statement = statements.get(db, KEY_INSERT + columns) {
+            "INSERT INTO $tableName (${columns.joinToString()}) " +
+                "VALUES (${columns.joinToString { "?" }})"
+        }
+        statement.bindValues(values, columns)
+        return try {
+            statement.executeInsert()
+        } catch (e: SQLiteException) {
+            Log.e(TAG, "Error inserting a record in $tableName", e)
+            -1L
+        }
+    }
+
+    /**
+     * Insert a record or update the one with the same
+     * (source, metric, external id) with a single statement.
+     * The existing record is not written when none of its values change.
+     *
+     * @return The id of the inserted or updated record
+     */
+    private fun upsert(db: SQLiteDatabase, values: ContentValues): Long {
+        // The id of the existing record is resolved by the conflict
+        values.remove(RecordColumns._ID)
+        if (!archive.isEmpty) {
+            archive.unarchive(
+                db,
+                WHERE_UPSERT_CONFLICT,
+                UPSERT_CONFLICT_COLUMNS.map { values.getAsString(it) }.toTypedArray()
+            )
+        }
+
+        val columns = values.keySet().sorted()
+        val statement = statements.get(db, KEY_UPSERT + columns) {
+            val updatedColumns = columns.filter { it !in UPSERT_CONFLICT_COLUMNS }
+            "INSERT INTO $tableName (${columns.joinToString()}) " +
+                "VALUES (${columns.joinToString { "?" }}) " +
+                "ON CONFLICT (${UPSERT_CONFLICT_COLUMNS.joinToString()}) " +
+                "WHERE ${RecordColumns.EXTERNAL_ID} IS NOT NULL DO UPDATE SET " +
+                updatedColumns.joinToString { "$it = excluded.$it" } + " " +
+                "WHERE " + updatedColumns.joinToString(" OR ") { "$it IS NOT excluded.$it" }
+        }
+        statement.bindValues(values, columns)
+        statement.execute()
+
+        val idStatement = statements.get(db, KEY_UPSERT_ID) { upsertIdQuery }
+        UPSERT_CONFLICT_COLUMNS.forEachIndexed { i, column ->
+            idStatement.bindString(i + 1, values.getAsString(column))
+        }
+        return idStatement.simpleQueryForLong()
+    }
+
+    /**
+     * Delete a single record reusing the same compiled statement.
+     */
+    private fun deleteById(metric: String, id: String): Int {
+        val statement = statements.get(getWritableDatabase(), KEY_DELETE) {
+            "DELETE FROM $tableName WHERE $WHERE_BY_METRIC_ID"
+        }
+        statement.bindString(1, metric)
+        statement.bindString(2, id)
+        var count = statement.executeUpdateDelete()
+        if (count == 0 && !archive.isEmpty) {
+            count = archive.delete(getWritableDatabase(), WHERE_BY_METRIC_ID, arrayOf(metric, id))
+        }
+        if (count > 0) {
+            changeNotifier.onRecordChanged(metric, id.toLong())
+        }
+        return count
     }
 
     override fun deleteInTransactionImpl(uri: Uri): Int {
-        val localSelection: String
-        val localSelectionArgs: Array<String>
+        var localSelection: String
+        var localSelectionArgs: Array<String>
         val segments = uri.pathSegments
+        val match = uriMatcher.match(uri)
 
-        when (uriMatcher.match(uri)) {
+        when (match) {
+            UriConst.MATCH_SERIES -> {
+                val metric = segments[segments.size - 2]
+                if (!canWrite(accessManager, metric)) {
+                    return AccessPolicyValues.DENIED_COUNT
+                }
+                return deleteSamples(uri, metric)
+            }
+            UriConst.MATCH_ALL -> {
+                val writableMetrics = metrics
+                    .map(Int::toString)
+                    .filter { canWrite(accessManager, it) }
+                if (writableMetrics.isEmpty()) {
+                    return AccessPolicyValues.DENIED_COUNT
+                }
+
+                localSelection = writableMetrics.joinToString(
+                    prefix = "${RecordColumns._METRIC} IN (",
+                    postfix = ")"
+                ) { "?" }
+                localSelectionArgs = writableMetrics.toTypedArray()
+            }
             UriConst.MATCH_METRIC -> {
+                val metric = segments[segments.size - 1]
+                if (!canWrite(accessManager, metric)) {
+                    return AccessPolicyValues.DENIED_COUNT
+                }
+
                 localSelection = WHERE_BY_METRIC
                 localSelectionArgs = arrayOf(
-                    segments[segments.size - 1]
+                    metric
                 )
+                val ids = uri.getQueryParameter(CareCacheUri.Param.IDS)
+                if (ids != null) {
+                    localSelection += " AND ${whereIds(ids)}"
+                }
             }
             UriConst.MATCH_ITEM -> {
+                val metric = segments[segments.size - 2]
+                if (!canWrite(accessManager, metric)) {
+                    return AccessPolicyValues.DENIED_COUNT
+                }
+                if (uri.query == null) {
+                    return deleteById(metric, segments[segments.size - 1])
+                }
+
                 localSelection = WHERE_BY_METRIC_ID
                 localSelectionArgs = arrayOf(
-                    segments[segments.size - 2],
+                    metric,
                     segments[segments.size - 1]
                 )
             }
             else -> throw IllegalArgumentException("Unknown delete URL $uri")
         }
 
-        val metric = localSelectionArgs.last()
-        if (!canWrite(accessManager, metric)) {
-            return AccessPolicyValues.DENIED_COUNT
+        val from = uri.getQueryParameter(CareCacheUri.Param.FROM)?.let { parseTimeParam(it) }
+        if (from != null) {
+            localSelection += " AND $WHERE_TIME_FROM"
+            localSelectionArgs += from
+        }
+        val to = uri.getQueryParameter(CareCacheUri.Param.TO)?.let { parseTimeParam(it) }
+        if (to != null) {
+            localSelection += " AND $WHERE_TIME_TO"
+            localSelectionArgs += to
         }
 
         val db = getWritableDatabase()
-        return db.delete(tableName, localSelection, localSelectionArgs)
+        val count = db.delete(tableName, localSelection, localSelectionArgs) +
+            archive.delete(db, localSelection, localSelectionArgs, from?.toLong(), to?.toLong())
+        if (count > 0) {
+            when (match) {
+                UriConst.MATCH_ALL -> changeNotifier.onCategoryChanged()
+                UriConst.MATCH_METRIC -> changeNotifier.onMetricChanged(
+                    segments[segments.size - 1]
+                )
+                else -> changeNotifier.onRecordChanged(
+                    segments[segments.size - 2],
+                    segments[segments.size - 1].toLong()
+                )
+            }
+        }
+        return count
+    }
+
+    /**
+     * @return The number of deleted samples
+     */
+    private fun deleteSamples(uri: Uri, metric: String): Int {
+        val from = uri.getQueryParameter(CareCacheUri.Param.FROM)
+        val to = uri.getQueryParameter(CareCacheUri.Param.TO)
+        val count = seriesStore.delete(
+            getWritableDatabase(),
+            metric.toInt(),
+            if (from == null) Long.MIN_VALUE else parseTimeParam(from).toLong(),
+            if (to == null) Long.MAX_VALUE else parseTimeParam(to).toLong()
+        )
+        if (count > 0) {
+            changeNotifier.onMetricChanged(metric)
+        }
+        return count
     }
 
     override fun queryImpl(
@@ -158,17 +702,53 @@ abstract class RecordContentProvider(
         projection: Array<out String>?,
         selection: String?,
         selectionArgs: Array<String>?,
-        sortOrder: String?
+        sortOrder: String?,
+        queryArgs: Bundle
     ): Cursor? {
+        var localProjection = projection
         var localSelection = selection ?: ""
         var localSelectionArgs = selectionArgs ?: emptyArray()
         var localSortOrder = sortOrder ?: ""
-        val metric: String
+        var groupBy: String? = null
+        var limit: String? = null
+        var table = tableName
         val segments = uri.pathSegments
+        // Register the cursor for the changes of the narrowest set of records
+        val notificationUri: Uri
+        // Opening the database loads the archive, which the record sources depend on
+        val db = getReadableDatabase()
 
         when (uriMatcher.match(uri)) {
+            UriConst.MATCH_ALL -> {
+                val readableMetrics = metrics
+                    .map(Int::toString)
+                    .filter { canRead(accessManager, it) }
+                if (readableMetrics.isEmpty()) {
+                    return EmptyCursor
+                }
+
+                if (localSortOrder.isEmpty()) {
+                    localSortOrder = TIMELINE_QUERY_SORT
+                }
+                if (localSelection.isNotEmpty()) {
+                    localSelection += " AND "
+                }
+                localSelection += readableMetrics.joinToString(
+                    prefix = "${RecordColumns._METRIC} IN (",
+                    postfix = ")"
+                ) { "?" }
+                localSelectionArgs += readableMetrics
+                table = getRecordSource(queryArgs)
+                localSelection += whereTimeRange(queryArgs)
+                localSelectionArgs += timeRangeArgs(queryArgs)
+                notificationUri = contentUri
+            }
             UriConst.MATCH_METRIC -> {
-                metric = segments[segments.size - 1]
+                val metric = segments[segments.size - 1]
+                if (!canRead(accessManager, metric)) {
+                    return EmptyCursor
+                }
+
                 if (localSortOrder.isEmpty()) {
                     localSortOrder = DEFAULT_QUERY_SORT
                 }
@@ -179,9 +759,38 @@ abstract class RecordContentProvider(
                 localSelectionArgs += arrayOf(
                     metric
                 )
+                table = getRecordSource(queryArgs)
+                localSelection += whereTimeRange(queryArgs)
+                localSelectionArgs += timeRangeArgs(queryArgs)
+                notificationUri = getMetricUri(metric)
+                if (queryArgs.containsKey(QueryArgs.SEEK_TIME) &&
+                    queryArgs.containsKey(QueryArgs.SEEK_ID)
+                ) {
+                    val seekTime = queryArgs.getLong(QueryArgs.SEEK_TIME).toString()
+                    localSelection += " AND $WHERE_SEEK"
+                    localSelectionArgs += arrayOf(
+                        seekTime,
+                        seekTime,
+                        queryArgs.getLong(QueryArgs.SEEK_ID).toString()
+                    )
+                    localSortOrder = PAGED_QUERY_SORT
+                }
+                if (queryArgs.containsKey(ContentResolver.QUERY_ARG_LIMIT)) {
+                    val pageSize = queryArgs.getInt(ContentResolver.QUERY_ARG_LIMIT)
+                    if (pageSize < 1) {
+                        throw IllegalArgumentException("Invalid limit $pageSize")
+                    }
+                    limit = pageSize.toString()
+                    // The seek position is only meaningful with a stable order
+                    localSortOrder = PAGED_QUERY_SORT
+                }
             }
             UriConst.MATCH_ITEM -> {
-                metric = segments[segments.size - 2]
+                val metric = segments[segments.size - 2]
+                if (!canRead(accessManager, metric)) {
+                    return EmptyCursor
+                }
+
                 if (localSelection.isNotEmpty()) {
                     localSelection += " AND "
                 }
@@ -190,30 +799,248 @@ abstract class RecordContentProvider(
                     metric,
                     segments[segments.size - 1]
                 )
+                table = archive.getSource()
+                notificationUri = getMetricUri(metric, segments[segments.size - 1])
             }
-            else -> throw IllegalArgumentException("Unknown query URL $uri")
-        }
+            UriConst.MATCH_AGGREGATE -> {
+                val metric = segments[segments.size - 2]
+                if (!canRead(accessManager, metric)) {
+                    return EmptyCursor
+                }
+
+                val bucket = queryArgs.getInt(QueryArgs.BUCKET, TimeBucket.DAY)
+                if (bucket == TimeBucket.UTC_HOUR || bucket == TimeBucket.UTC_DAY) {
+                    return queryRollup(db, metric, bucket, queryArgs)
+                }
 
-        if (!canRead(accessManager, metric)) {
-            return EmptyCursor
+                localProjection = getAggregateProjection(queryArgs)
+                if (localSelection.isNotEmpty()) {
+                    localSelection += " AND "
+                }
+                localSelection += WHERE_BY_METRIC
+                localSelectionArgs += arrayOf(
+                    metric
+                )
+                table = getRecordSource(queryArgs)
+                localSelection += whereTimeRange(queryArgs)
+                localSelectionArgs += timeRangeArgs(queryArgs)
+                groupBy = AggregateColumns.BUCKET_START
+                localSortOrder = AGGREGATE_QUERY_SORT
+                notificationUri = getMetricUri(metric)
+            }
+            UriConst.MATCH_SUMMARY -> {
+                val metric = segments[segments.size - 2]
+                if (!canRead(accessManager, metric)) {
+                    return EmptyCursor
+                }
+                return querySummary(db, metric)
+            }
+            UriConst.MATCH_SERIES -> {
+                val metric = segments[segments.size - 2]
+                if (!canRead(accessManager, metric)) {
+                    return EmptyCursor
+                }
+
+                table = SampleSeriesTable.getName(tableName)
+                if (localSortOrder.isEmpty()) {
+                    localSortOrder = SERIES_QUERY_SORT
+                }
+                if (localSelection.isNotEmpty()) {
+                    localSelection += " AND "
+                }
+                localSelection += WHERE_BY_METRIC
+                localSelectionArgs += arrayOf(
+                    metric
+                )
+                // Chunks that contain at least a sample within the interval
+                if (queryArgs.containsKey(QueryArgs.TIME_FROM)) {
+                    localSelection += " AND $WHERE_SERIES_FROM"
+                }
+                if (queryArgs.containsKey(QueryArgs.TIME_TO)) {
+                    localSelection += " AND $WHERE_SERIES_TO"
+                }
+                localSelectionArgs += timeRangeArgs(queryArgs)
+                notificationUri = getMetricUri(metric)
+            }
+            else -> throw IllegalArgumentException("Unknown query URL $uri")
         }
 
-        val qb = SQLiteQueryBuilder().apply { tables = tableName }
+        val qb = SQLiteQueryBuilder().apply { tables = table }
         val cursor = qb.query(
-            getReadableDatabase(),
-            projection,
+            db,
+            localProjection,
             localSelection,
             localSelectionArgs,
+            groupBy,
+            null,
+            localSortOrder,
+            limit
+        )
+        cursor.setNotificationUri(context!!.contentResolver, notificationUri)
+        return cursor
+    }
+
+    /**
+     * The most recent record of the metric is found through the (_metric, time) index
+     * and the number of records is read from the summary table, so the cost
+     * does not depend on the number of records.
+     * Each archive table contributes its own most recent and first records.
+     */
+    private fun querySummary(db: SQLiteDatabase, metric: String): Cursor {
+        val summaryTableName = RecordSummaryTable.getName(tableName)
+        val tables = archive.tables
+        val latest = tables.joinToString(" UNION ALL ") {
+            "SELECT * FROM (SELECT * FROM $it WHERE $WHERE_BY_METRIC " +
+                "ORDER BY $PAGED_QUERY_SORT LIMIT 1)"
+        }
+        val firstTime = tables.joinToString(" UNION ALL ") {
+            "SELECT MIN(${RecordColumns.TIME}) AS ${RecordColumns.TIME} FROM $it " +
+                "WHERE $WHERE_BY_METRIC"
+        }
+        val sql = "SELECT r.*, " +
+            "s.${RecordSummaryTable.COUNT} AS ${SummaryColumns.SUMMARY_COUNT}, " +
+            "(SELECT MIN(${RecordColumns.TIME}) FROM ($firstTime)) " +
+            "AS ${SummaryColumns.SUMMARY_FIRST_TIME} " +
+            "FROM ($latest) r JOIN $summaryTableName s " +
+            "ON s.${RecordColumns._METRIC} = r.${RecordColumns._METRIC} " +
+            "ORDER BY r.${RecordColumns.TIME} DESC, r.${RecordColumns._ID} DESC " +
+            "LIMIT 1"
+        val cursor = db.rawQuery(sql, Array(tables.size * 2) { metric })
+        cursor.setNotificationUri(context!!.contentResolver, getMetricUri(metric))
+        return cursor
+    }
+
+    /**
+     * Aggregates in UTC buckets are read from the rollup tables:
+     * one row for each bucket, regardless of the number of records.
+     */
+    private fun queryRollup(
+        db: SQLiteDatabase,
+        metric: String,
+        bucket: Int,
+        queryArgs: Bundle
+    ): Cursor {
+        val rollupTable = (openHelper as RecordDbHelper).rollupTable
+        val column = queryArgs.getString(QueryArgs.AGGREGATE_COLUMN, RecordColumns.VALUE)
+        if (column !in rollupTable.columns) {
+            throw IllegalArgumentException("Cannot aggregate column $column")
+        }
+
+        val projection = arrayOf(
+            AggregateColumns.BUCKET_START,
+            AggregateColumns.COUNT,
+            "${RecordRollupTable.minOf(column)} AS ${AggregateColumns.MIN}",
+            "${RecordRollupTable.maxOf(column)} AS ${AggregateColumns.MAX}",
+            "${RecordRollupTable.sumOf(column)} / ${AggregateColumns.COUNT} " +
+                "AS ${AggregateColumns.AVG}",
+            "${RecordRollupTable.sumOf(column)} AS ${AggregateColumns.SUM}",
+            "${RecordRollupTable.lastOf(column)} AS ${AggregateColumns.LAST}"
+        )
+        var selection = WHERE_BY_METRIC
+        if (queryArgs.containsKey(QueryArgs.TIME_FROM)) {
+            selection += " AND $WHERE_BUCKET_FROM"
+        }
+        if (queryArgs.containsKey(QueryArgs.TIME_TO)) {
+            selection += " AND $WHERE_BUCKET_TO"
+        }
+
+        val cursor = db.query(
+            if (bucket == TimeBucket.UTC_HOUR) rollupTable.hourName else rollupTable.dayName,
+            projection,
+            selection,
+            arrayOf(metric) + timeRangeArgs(queryArgs),
             null,
             null,
-            localSortOrder
+            AGGREGATE_QUERY_SORT
         )
-        cursor.setNotificationUri(context!!.contentResolver, uri)
+        cursor.setNotificationUri(context!!.contentResolver, getMetricUri(metric))
         return cursor
     }
 
+    /**
+     * The records table, united to the archive tables that overlap the queried interval
+     */
+    private fun getRecordSource(queryArgs: Bundle): String {
+        return archive.getSource(
+            if (queryArgs.containsKey(QueryArgs.TIME_FROM)) {
+                queryArgs.getLong(QueryArgs.TIME_FROM)
+            } else null,
+            if (queryArgs.containsKey(QueryArgs.TIME_TO)) {
+                queryArgs.getLong(QueryArgs.TIME_TO)
+            } else null
+        )
+    }
+
+    private fun getMetricUri(metric: String, id: String? = null): Uri {
+        return Uri.withAppendedPath(contentUri, if (id == null) metric else "$metric/$id")
+    }
+
+    private fun getAggregateProjection(queryArgs: Bundle): Array<String> {
+        val bucket = queryArgs.getInt(QueryArgs.BUCKET, TimeBucket.DAY)
+        val bucketStart = BUCKET_START_EXPRESSIONS[bucket]
+            ?: throw IllegalArgumentException("Invalid bucket $bucket")
+        val column = queryArgs.getString(QueryArgs.AGGREGATE_COLUMN, RecordColumns.VALUE)
+        if (column !in AGGREGATABLE_COLUMNS) {
+            throw IllegalArgumentException("Cannot aggregate column $column")
+        }
+
+        return arrayOf(
+            "CAST($bucketStart AS INTEGER) * 1000 AS ${AggregateColumns.BUCKET_START}",
+            "COUNT(*) AS ${AggregateColumns.COUNT}",
+            "MIN($column) AS ${AggregateColumns.MIN}",
+            "MAX($column) AS ${AggregateColumns.MAX}",
+            "AVG($column) AS ${AggregateColumns.AVG}",
+            "SUM($column) AS ${AggregateColumns.SUM}"
+        )
+    }
+
+    private fun whereIds(ids: String): String {
+        val idList = ids.split(',').map {
+            it.trim().toLongOrNull() ?: throw IllegalArgumentException("Invalid id $it")
+        }
+        // The ids are validated numbers, so they can be inlined safely
+        return idList.joinToString(prefix = "${RecordColumns._ID} IN (", postfix = ")")
+    }
+
+    private fun parseTimeParam(value: String): String {
+        return (value.toLongOrNull() ?: throw IllegalArgumentException("Invalid time $value"))
+            .toString()
+    }
+
+    private fun whereTimeRange(queryArgs: Bundle): String {
+        var where = ""
+        if (queryArgs.containsKey(QueryArgs.TIME_FROM)) {
+            where += " AND $WHERE_TIME_FROM"
+        }
+        if (queryArgs.containsKey(QueryArgs.TIME_TO)) {
+            where += " AND $WHERE_TIME_TO"
+        }
+        return where
+    }
+
+    private fun timeRangeArgs(queryArgs: Bundle): Array<String> {
+        val args = mutableListOf<String>()
+        if (queryArgs.containsKey(QueryArgs.TIME_FROM)) {
+            args += queryArgs.getLong(QueryArgs.TIME_FROM).toString()
+        }
+        if (queryArgs.containsKey(QueryArgs.TIME_TO)) {
+            args += queryArgs.getLong(QueryArgs.TIME_TO).toString()
+        }
+        return args.toTypedArray()
+    }
+
+    override fun beforeTransactionCommit() {
+        super.beforeTransactionCommit()
+        changeNotifier.commit()
+    }
+
+    override fun onRollbackTransaction() {
+        super.onRollbackTransaction()
+        changeNotifier.discard()
+    }
+
     override fun notifyChange() {
-        context!!.contentResolver.notifyChange(contentUri, null)
+        changeNotifier.notifyChange()
     }
 
     override fun verifyTransactionAllowed(
@@ -243,8 +1070,12 @@ abstract class RecordContentProvider(
     }
 
     override fun getType(uri: Uri) = when (uriMatcher.match(uri)) {
-        UriConst.MATCH_METRIC -> "vnd.android.cursor.dir"
-        UriConst.MATCH_ITEM -> "vnd.android.cursor.item"
+        UriConst.MATCH_ALL,
+        UriConst.MATCH_METRIC,
+        UriConst.MATCH_AGGREGATE,
+        UriConst.MATCH_SERIES -> "vnd.android.cursor.dir"
+        UriConst.MATCH_ITEM,
+        UriConst.MATCH_SUMMARY -> "vnd.android.cursor.item"
         else -> null
     }
 }
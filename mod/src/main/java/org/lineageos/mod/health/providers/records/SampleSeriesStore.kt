@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.providers.records
+
+import android.content.ContentValues
+import net.sqlcipher.database.SQLiteDatabase
+import org.lineageos.mod.health.common.SampleSeries
+import org.lineageos.mod.health.common.db.SeriesColumns
+import org.lineageos.mod.health.common.series.SampleCodec
+import org.lineageos.mod.health.db.tables.SampleSeriesTable
+
+/**
+ * Writes the chunks of samples of a series table.
+ *
+ * New samples are appended to the most recent chunk of the same metric and app
+ * until it holds [SampleSeries.MAX_CHUNK_SAMPLES] samples, so that samples sent
+ * in small groups (e.g. every few seconds) are still stored in large chunks.
+ * The chunks are stored with the tail of their encoder, so appending
+ * doesn't decode them again.
+ * All the methods must be called within a transaction.
+ */
+class SampleSeriesStore(private val tableName: String) {
+
+    companion object {
+        private const val WHERE_BY_ID =
+            "${SeriesColumns._ID} = ?"
+        private const val WHERE_BY_SOURCE =
+            "${SeriesColumns._METRIC} = ? AND ${SeriesColumns._SOURCE} = ?"
+        private const val WHERE_OVERLAP =
+            "${SeriesColumns._METRIC} = ? AND ${SeriesColumns.END_TIME} >= ? AND " +
+                "${SeriesColumns.START_TIME} < ?"
+        private const val WHERE_CONTAINED =
+            "$WHERE_OVERLAP AND ${SeriesColumns.START_TIME} >= ? AND " +
+                "${SeriesColumns.END_TIME} < ?"
+        private const val LAST_CHUNK_SORT =
+            "${SeriesColumns.END_TIME} DESC"
+
+        private val LAST_CHUNK_PROJECTION = arrayOf(
+            SeriesColumns._ID,
+            SeriesColumns.END_TIME,
+            SeriesColumns.COUNT,
+            SeriesColumns.SAMPLES,
+            SampleSeriesTable.TAIL
+        )
+        private val OVERLAP_PROJECTION = arrayOf(
+            SeriesColumns._ID,
+            SeriesColumns.START_TIME,
+            SeriesColumns.END_TIME,
+            SeriesColumns.COUNT
+        )
+    }
+
+    /**
+     * Append the encoded samples to the series of a metric of the [source] app.
+     *
+     * @return The number of appended samples
+     * @throws IllegalArgumentException If the samples can't be decoded, or their
+     * times are negative, unsorted or before the last sample of the [source] app
+     */
+    fun append(db: SQLiteDatabase, metric: Int, source: String, samples: ByteArray): Int {
+        val decoder = SampleCodec.Decoder(samples)
+        if (!decoder.hasNext()) {
+            return 0
+        }
+
+        var chunkId = -1L
+        var encoder = SampleCodec.Encoder()
+        var lastTime = 0L
+        db.query(
+            tableName,
+            LAST_CHUNK_PROJECTION,
+            WHERE_BY_SOURCE,
+            arrayOf(metric.toString(), source),
+            null,
+            null,
+            LAST_CHUNK_SORT,
+            "1"
+        ).use {
+            if (it.moveToFirst()) {
+                lastTime = it.getLong(1)
+                if (it.getInt(2) < SampleSeries.MAX_CHUNK_SAMPLES) {
+                    chunkId = it.getLong(0)
+                    val tail = if (it.isNull(4)) null else it.getBlob(4)
+                    encoder = resumeEncoder(it.getBlob(3), tail)
+                }
+            }
+        }
+
+        while (decoder.hasNext()) {
+            decoder.next()
+            val time = decoder.time
+            if (time < lastTime) {
+                throw IllegalArgumentException("Sample time $time is before $lastTime")
+            }
+
+            if (encoder.count == SampleSeries.MAX_CHUNK_SAMPLES) {
+                writeChunk(db, chunkId, metric, source, encoder)
+                chunkId = -1L
+                encoder = SampleCodec.Encoder()
+            }
+            encoder.append(time, decoder.value)
+            lastTime = time
+        }
+        writeChunk(db, chunkId, metric, source, encoder)
+        return decoder.count
+    }
+
+    /**
+     * Delete the samples of a metric whose time is within [from, to).
+     * The chunks that are only partially within the interval are re-encoded
+     * with the remaining samples.
+     *
+     * @return The number of deleted samples
+     */
+    fun delete(db: SQLiteDatabase, metric: Int, from: Long, to: Long): Int {
+        val args = arrayOf(metric.toString(), from.toString(), to.toString())
+        var deleted = 0
+        val partialChunks = mutableListOf<Long>()
+        db.query(tableName, OVERLAP_PROJECTION, WHERE_OVERLAP, args, null, null, null).use {
+            while (it.moveToNext()) {
+                if (it.getLong(1) >= from && it.getLong(2) < to) {
+                    deleted += it.getInt(3)
+                } else {
+                    partialChunks += it.getLong(0)
+                }
+            }
+        }
+
+        db.delete(tableName, WHERE_CONTAINED, args + arrayOf(from.toString(), to.toString()))
+        partialChunks.forEach { deleted += trimChunk(db, it, from, to) }
+        return deleted
+    }
+
+    /**
+     * @return The number of deleted samples
+     */
+    private fun trimChunk(db: SQLiteDatabase, chunkId: Long, from: Long, to: Long): Int {
+        val whereArgs = arrayOf(chunkId.toString())
+        val samples = db.query(
+            tableName,
+            arrayOf(SeriesColumns.SAMPLES),
+            WHERE_BY_ID,
+            whereArgs,
+            null,
+            null,
+            null
+        ).use { if (it.moveToFirst()) it.getBlob(0) else null } ?: return 0
+
+        val decoder = SampleCodec.Decoder(samples)
+        val encoder = SampleCodec.Encoder()
+        while (decoder.hasNext()) {
+            decoder.next()
+            if (decoder.time < from || decoder.time >= to) {
+                encoder.append(decoder.time, decoder.value)
+            }
+        }
+
+        if (encoder.count == 0) {
+            db.delete(tableName, WHERE_BY_ID, whereArgs)
+        } else if (encoder.count < decoder.count) {
+            db.update(tableName, getChunkValues(encoder), WHERE_BY_ID, whereArgs)
+        }
+        return decoder.count - encoder.count
+    }
+
+    private fun writeChunk(
+        db: SQLiteDatabase,
+        chunkId: Long,
+        metric: Int,
+        source: String,
+        encoder: SampleCodec.Encoder
+    ) {
+        val values = getChunkValues(encoder)
+        if (chunkId < 0L) {
+            values.put(SeriesColumns._METRIC, metric)
+            values.put(SeriesColumns._SOURCE, source)
+            db.insertOrThrow(tableName, null, values)
+        } else {
+            db.update(tableName, values, WHERE_BY_ID, arrayOf(chunkId.toString()))
+        }
+    }
+
+    private fun getChunkValues(encoder: SampleCodec.Encoder) = ContentValues().apply {
+        put(SeriesColumns.START_TIME, encoder.firstTime)
+        put(SeriesColumns.END_TIME, encoder.lastTime)
+        put(SeriesColumns.COUNT, encoder.count)
+        put(SeriesColumns.SAMPLES, encoder.toByteArray())
+        put(SampleSeriesTable.TAIL, encoder.tail)
+    }
+
+    /**
+     * Continue the encoding of a chunk, decoding its samples only if its tail is missing
+     */
+    private fun resumeEncoder(samples: ByteArray, tail: ByteArray?): SampleCodec.Encoder {
+        if (tail != null) {
+            try {
+                return SampleCodec.Encoder.resume(samples, tail)
+            } catch (e: IllegalArgumentException) {
+                // Re-encode the samples below
+            }
+        }
+
+        val encoder = SampleCodec.Encoder()
+        val decoder = SampleCodec.Decoder(samples)
+        while (decoder.hasNext()) {
+            decoder.next()
+            encoder.append(decoder.time, decoder.value)
+        }
+        return encoder
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.model.records;
+
+import androidx.annotation.Keep;
+
+import org.lineageos.mod.health.common.db.AggregateColumns;
+import org.lineageos.mod.health.common.values.TimeBucket;
+
+import java.util.Objects;
+
+/**
+ * Aggregated values of the records of a metric within a {@link TimeBucket}.
+ *
+ * @see AggregateColumns
+ */
+@Keep
+public final class AggregateBucket {
+
+    private final long start;
+    private final int count;
+    private final double min;
+    private final double max;
+    private final double avg;
+    private final double sum;
+    private final double last;
+
+    /**
+     * @param start Start of the bucket in milliseconds since epoch
+     * @param count Number of records in the bucket
+     * @param min Minimum value
+     * @param max Maximum value
+     * @param avg Average value
+     * @param sum Sum of the values
+     */
+    public AggregateBucket(long start, int count, double min, double max,
+                           double avg, double sum) {
+        this(start, count, min, max, avg, sum, Double.NaN);
+    }
+
+    /**
+     * @param start Start of the bucket in milliseconds since epoch
+     * @param count Number of records in the bucket
+     * @param min Minimum value
+     * @param max Maximum value
+     * @param avg Average value
+     * @param sum Sum of the values
+     * @param last Value of the most recent record
+     */
+    public AggregateBucket(long start, int count, double min, double max,
+                           double avg, double sum, double last) {
+        this.start = start;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.avg = avg;
+        this.sum = sum;
+        this.last = last;
+    }
+
+    /**
+     * @return Start of the bucket in milliseconds since epoch
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getAvg() {
+        return avg;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return Value of the most recent record in the bucket,
+     *     or {@link Double#NaN} if not available
+     * @see AggregateColumns#LAST
+     */
+    public double getLast() {
+        return last;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AggregateBucket)) return false;
+        final AggregateBucket that = (AggregateBucket) o;
+        return start == that.start &&
+                count == that.count &&
+                Double.compare(that.min, min) == 0 &&
+                Double.compare(that.max, max) == 0 &&
+                Double.compare(that.avg, avg) == 0 &&
+                Double.compare(that.sum, sum) == 0 &&
+                Double.compare(that.last, last) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, count, min, max, avg, sum, last);
+    }
+}
@@ -20,7 +20,9 @@ import android.content.ContentValues;
 
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import org.lineageos.mod.health.common.db.RecordColumns;
 import org.lineageos.mod.health.common.values.annotations.MetricType;
 
 import java.util.Objects;
@@ -35,6 +37,8 @@ public abstract class Record {
     @MetricType
     protected final int metric;
     protected long time;
+    @Nullable
+    protected String externalId;
 
     /**
      * @param id Record id or 0L when building a new record
@@ -67,6 +71,27 @@ public abstract class Record {
         this.time = time;
     }
 
+    /**
+     * @see RecordColumns#EXTERNAL_ID
+     */
+    @Nullable
+    public String getExternalId() {
+        return externalId;
+    }
+
+    /**
+     * Set an identifier of this record that is meaningful for the app.
+     * Records with an external id can be inserted or updated with a single
+     * upsert operation.
+     *
+     * @param externalId Identifier unique among the records of the same metric
+     *                   inserted by this app, or null
+     * @see RecordColumns#EXTERNAL_ID
+     */
+    public void setExternalId(@Nullable String externalId) {
+        this.externalId = externalId;
+    }
+
     /**
      * @return ContentValues to be used with ContentProviders to represent this record.
      */
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.model.records;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.db.RecordColumns;
+
+/**
+ * Columnar series of numerical values of a metric, sorted from the oldest to the most recent.
+ * <p>
+ * The values are stored in primitive arrays: the i-th value
+ * was recorded at the i-th time.
+ *
+ * @see TimeValue
+ */
+@Keep
+public final class TimeSeries {
+
+    @NonNull
+    private final long[] times;
+    @NonNull
+    private final double[] values;
+
+    /**
+     * @param times Timestamps from epoch in milliseconds (ms, {@link System#currentTimeMillis()})
+     * @param values Raw values, such as the ones of the {@link RecordColumns#VALUE} column
+     */
+    public TimeSeries(@NonNull long[] times, @NonNull double[] values) {
+        if (times.length != values.length) {
+            throw new IllegalArgumentException("times and values must have the same length");
+        }
+        this.times = times;
+        this.values = values;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * @return The underlying array of timestamps. Do not modify it
+     */
+    @NonNull
+    public long[] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return The underlying array of values. Do not modify it
+     */
+    @NonNull
+    public double[] getValues() {
+        return values;
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.model.records;
+
+import androidx.annotation.Keep;
+
+import org.lineageos.mod.health.common.db.RecordColumns;
+
+import java.util.Objects;
+
+/**
+ * Lightweight (time, value) pair of a record.
+ * <p>
+ * Only the {@link RecordColumns#TIME} and {@link RecordColumns#VALUE} columns
+ * are read to build this object, which makes it suitable for charts and other
+ * series of numerical values.
+ *
+ * @see RecordColumns#VALUE
+ */
+@Keep
+public final class TimeValue {
+
+    private final long time;
+    private final double value;
+
+    /**
+     * @param time Timestamp from epoch in milliseconds (ms, {@link System#currentTimeMillis()})
+     * @param value Raw value of the {@link RecordColumns#VALUE} column
+     */
+    public TimeValue(long time, double value) {
+        this.time = time;
+        this.value = value;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeValue)) return false;
+        final TimeValue that = (TimeValue) o;
+        return time == that.time &&
+                Double.compare(that.value, value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(time, value);
+    }
+}
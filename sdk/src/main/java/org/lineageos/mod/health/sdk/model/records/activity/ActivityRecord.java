@@ -140,6 +140,7 @@ public class ActivityRecord extends Record {
         cv.put(RecordColumns._ID, id);
         cv.put(RecordColumns._METRIC, metric);
         cv.put(RecordColumns.TIME, time);
+        cv.put(RecordColumns.EXTERNAL_ID, externalId);
         cv.put(RecordColumns.DURATION, duration);
         cv.put(RecordColumns.AVG_SPEED, avgSpeed.kilometersPerHour());
         cv.put(RecordColumns.CALORIES, calories);
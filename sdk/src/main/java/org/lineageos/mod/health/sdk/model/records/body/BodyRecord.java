@@ -123,6 +123,7 @@ public abstract class BodyRecord<T> extends Record {
         cv.put(RecordColumns._ID, id);
         cv.put(RecordColumns._METRIC, metric);
         cv.put(RecordColumns.TIME, time);
+        cv.put(RecordColumns.EXTERNAL_ID, externalId);
         cv.put(RecordColumns.NOTES, notes);
         cv.put(RecordColumns.SYMPTOMS_OTHER, otherSymptoms);
         cv.put(RecordColumns.SYMPTOMS_PHYSICAL, physicalSymptoms);
@@ -77,6 +77,7 @@ public class BreathingRecord extends Record {
         cv.put(RecordColumns._ID, id);
         cv.put(RecordColumns._METRIC, metric);
         cv.put(RecordColumns.TIME, time);
+        cv.put(RecordColumns.EXTERNAL_ID, externalId);
         cv.put(RecordColumns.NOTES, notes);
         cv.put(RecordColumns.VALUE, value);
         return cv;
@@ -115,6 +115,7 @@ public abstract class HeartBloodRecord<T> extends Record {
         cv.put(RecordColumns._ID, id);
         cv.put(RecordColumns._METRIC, metric);
         cv.put(RecordColumns.TIME, time);
+        cv.put(RecordColumns.EXTERNAL_ID, externalId);
         cv.put(RecordColumns.MEAL_RELATION, mealRelation);
         cv.put(RecordColumns.PRESSURE_SYSTOLIC, systolic.mmHg());
         cv.put(RecordColumns.PRESSURE_DIASTOLIC, diastolic.mmHg());
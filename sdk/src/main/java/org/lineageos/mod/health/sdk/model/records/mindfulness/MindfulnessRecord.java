@@ -93,6 +93,7 @@ public class MindfulnessRecord extends Record {
         cv.put(RecordColumns._ID, id);
         cv.put(RecordColumns._METRIC, metric);
         cv.put(RecordColumns.TIME, time);
+        cv.put(RecordColumns.EXTERNAL_ID, externalId);
         cv.put(RecordColumns.DURATION, duration);
         cv.put(RecordColumns.MOOD, moodLevel);
         cv.put(RecordColumns.NOTES, notes);
@@ -35,11 +35,8 @@ import org.lineageos.mod.health.sdk.model.records.activity.WorkoutRecord;
 import org.lineageos.mod.health.sdk.model.values.LengthValue;
 import org.lineageos.mod.health.sdk.model.values.SpeedValue;
 import org.lineageos.mod.health.sdk.util.CcRuntimePermission;
-import org.lineageos.mod.health.sdk.util.RecordTimeComparator;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Activity records repository.
@@ -99,45 +96,55 @@ public final class ActivityRecordsRepo extends RecordsRepo<ActivityRecord> {
     @Override
     @RequiresPermission(CcRuntimePermission.ACTIVITY)
     public List<ActivityRecord> getAll() {
-        final List<ActivityRecord> list = new ArrayList<>();
-        list.addAll(getAllCyclingRecords());
-        list.addAll(getAllRunningRecords());
-        list.addAll(getAllWalkingRecords());
-        list.addAll(getAllWorkoutRecords());
-        list.sort(new RecordTimeComparator());
-        return list;
+        return getByCategory();
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.ACTIVITY)
     public List<CyclingRecord> getAllCyclingRecords() {
-        return getByMetric(Metric.CYCLING).stream()
-                .map(CyclingRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.CYCLING, CyclingRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.ACTIVITY)
+    public List<CyclingRecord> getCyclingRecords(long from, long to) {
+        return getByMetric(Metric.CYCLING, from, to, CyclingRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.ACTIVITY)
     public List<RunningRecord> getAllRunningRecords() {
-        return getByMetric(Metric.RUNNING).stream()
-                .map(RunningRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.RUNNING, RunningRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.ACTIVITY)
+    public List<RunningRecord> getRunningRecords(long from, long to) {
+        return getByMetric(Metric.RUNNING, from, to, RunningRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.ACTIVITY)
     public List<WalkingRecord> getAllWalkingRecords() {
-        return getByMetric(Metric.WALKING).stream()
-                .map(WalkingRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.WALKING, WalkingRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.ACTIVITY)
+    public List<WalkingRecord> getWalkingRecords(long from, long to) {
+        return getByMetric(Metric.WALKING, from, to, WalkingRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.ACTIVITY)
     public List<WorkoutRecord> getAllWorkoutRecords() {
-        return getByMetric(Metric.WORKOUT).stream()
-                .map(WorkoutRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.WORKOUT, WorkoutRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.ACTIVITY)
+    public List<WorkoutRecord> getWorkoutRecords(long from, long to) {
+        return getByMetric(Metric.WORKOUT, from, to, WorkoutRecord.class);
     }
 
     @Nullable
@@ -51,4 +51,11 @@ abstract class BatchOperation {
             super(record);
         }
     }
+
+    static final class Upsert<T extends Record> extends BatchOperation {
+
+        Upsert(@NonNull T record) {
+            super(record);
+        }
+    }
 }
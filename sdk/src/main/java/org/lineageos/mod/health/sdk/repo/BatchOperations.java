@@ -64,6 +64,20 @@ public final class BatchOperations<T extends Record> {
         return this;
     }
 
+    /**
+     * Insert a record or update the one with the same external id
+     *
+     * @see RecordsRepo#upsert(Record)
+     */
+    @NonNull
+    public BatchOperations<T> upsert(@NonNull T record) {
+        if (record.getExternalId() == null) {
+            throw new IllegalArgumentException("Cannot upsert a record without an external id");
+        }
+        operations.add(new BatchOperation.Upsert<>(record));
+        return this;
+    }
+
     /**
      * Update a record
      */
@@ -95,6 +109,11 @@ public final class BatchOperations<T extends Record> {
                 list.add(ContentProviderOperation.newInsert(metricUri)
                         .withValues(it.record.toContentValues())
                         .build());
+            } else if (it instanceof BatchOperation.Upsert) {
+                final Uri upsertUri = Uri.withAppendedPath(metricUri, RecordsRepo.UPSERT_PATH);
+                list.add(ContentProviderOperation.newInsert(upsertUri)
+                        .withValues(it.record.toContentValues())
+                        .build());
             } else if (it instanceof BatchOperation.Update) {
                 list.add(ContentProviderOperation.newUpdate(idUri)
                         .withValues(it.record.toContentValues())
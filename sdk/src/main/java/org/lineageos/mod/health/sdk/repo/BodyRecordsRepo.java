@@ -41,11 +41,8 @@ import org.lineageos.mod.health.sdk.model.values.LengthValue;
 import org.lineageos.mod.health.sdk.model.values.MassValue;
 import org.lineageos.mod.health.sdk.model.values.TemperatureValue;
 import org.lineageos.mod.health.sdk.util.CcRuntimePermission;
-import org.lineageos.mod.health.sdk.util.RecordTimeComparator;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Body records repository.
@@ -113,81 +110,104 @@ public final class BodyRecordsRepo extends RecordsRepo<BodyRecord<?>> {
     @Override
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<BodyRecord<?>> getAll() {
-        final List<BodyRecord<?>> list = new ArrayList<>();
-        list.addAll(getAllAbdominalCircumferenceRecords());
-        list.addAll(getAllBodyMassIndexRecords());
-        list.addAll(getAllBodyTemperatureRecords());
-        list.addAll(getAllLeanBodyMassRecords());
-        list.addAll(getAllMenstrualCycleRecords());
-        list.addAll(getAllUvIndexRecords());
-        list.addAll(getAllWaterIntakeRecords());
-        list.addAll(getAllWeightRecords());
-        list.sort(new RecordTimeComparator());
-        return list;
+        return getByCategory();
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<AbdominalCircumferenceRecord> getAllAbdominalCircumferenceRecords() {
-        return getByMetric(Metric.ABDOMINAL_CIRCUMFERENCE).parallelStream()
-                .map(AbdominalCircumferenceRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.ABDOMINAL_CIRCUMFERENCE, AbdominalCircumferenceRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<AbdominalCircumferenceRecord> getAbdominalCircumferenceRecords(long from, long to) {
+        return getByMetric(Metric.ABDOMINAL_CIRCUMFERENCE, from, to,
+                AbdominalCircumferenceRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<BodyMassIndexRecord> getAllBodyMassIndexRecords() {
-        return getByMetric(Metric.BODY_MASS_INDEX).parallelStream()
-                .map(BodyMassIndexRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.BODY_MASS_INDEX, BodyMassIndexRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<BodyMassIndexRecord> getBodyMassIndexRecords(long from, long to) {
+        return getByMetric(Metric.BODY_MASS_INDEX, from, to, BodyMassIndexRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<BodyTemperatureRecord> getAllBodyTemperatureRecords() {
-        return getByMetric(Metric.BODY_TEMPERATURE).parallelStream()
-                .map(BodyTemperatureRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.BODY_TEMPERATURE, BodyTemperatureRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<BodyTemperatureRecord> getBodyTemperatureRecords(long from, long to) {
+        return getByMetric(Metric.BODY_TEMPERATURE, from, to, BodyTemperatureRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<LeanBodyMassRecord> getAllLeanBodyMassRecords() {
-        return getByMetric(Metric.LEAN_BODY_MASS).parallelStream()
-                .map(LeanBodyMassRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.LEAN_BODY_MASS, LeanBodyMassRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<LeanBodyMassRecord> getLeanBodyMassRecords(long from, long to) {
+        return getByMetric(Metric.LEAN_BODY_MASS, from, to, LeanBodyMassRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<MenstrualCycleRecord> getAllMenstrualCycleRecords() {
-        return getByMetric(Metric.MENSTRUAL_CYCLE).parallelStream()
-                .map(MenstrualCycleRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.MENSTRUAL_CYCLE, MenstrualCycleRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<MenstrualCycleRecord> getMenstrualCycleRecords(long from, long to) {
+        return getByMetric(Metric.MENSTRUAL_CYCLE, from, to, MenstrualCycleRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<UvIndexRecord> getAllUvIndexRecords() {
-        return getByMetric(Metric.UV_INDEX).parallelStream()
-                .map(UvIndexRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.UV_INDEX, UvIndexRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<UvIndexRecord> getUvIndexRecords(long from, long to) {
+        return getByMetric(Metric.UV_INDEX, from, to, UvIndexRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<WaterIntakeRecord> getAllWaterIntakeRecords() {
-        return getByMetric(Metric.WATER_INTAKE).parallelStream()
-                .map(WaterIntakeRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.WATER_INTAKE, WaterIntakeRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<WaterIntakeRecord> getWaterIntakeRecords(long from, long to) {
+        return getByMetric(Metric.WATER_INTAKE, from, to, WaterIntakeRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BODY)
     public List<WeightRecord> getAllWeightRecords() {
-        return getByMetric(Metric.WEIGHT).parallelStream()
-                .map(WeightRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.WEIGHT, WeightRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BODY)
+    public List<WeightRecord> getWeightRecords(long from, long to) {
+        return getByMetric(Metric.WEIGHT, from, to, WeightRecord.class);
     }
 
     @Nullable
@@ -34,11 +34,8 @@ import org.lineageos.mod.health.sdk.model.records.breathing.PeakExpiratoryFlowRe
 import org.lineageos.mod.health.sdk.model.records.breathing.RespiratoryRateRecord;
 import org.lineageos.mod.health.sdk.model.records.breathing.VitalCapacityRecord;
 import org.lineageos.mod.health.sdk.util.CcRuntimePermission;
-import org.lineageos.mod.health.sdk.util.RecordTimeComparator;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Breathing records repository.
@@ -99,54 +96,67 @@ public final class BreathingRecordsRepo extends RecordsRepo<BreathingRecord> {
     @Override
     @RequiresPermission(CcRuntimePermission.BREATHING)
     public List<BreathingRecord> getAll() {
-        final List<BreathingRecord> list = new ArrayList<>();
-        list.addAll(getAllInhalerUsageRecords());
-        list.addAll(getAllOxygenSaturationRecords());
-        list.addAll(getAllPeakExpiratoryFlowRecords());
-        list.addAll(getAllRespiratoryRateRecords());
-        list.addAll(getAllVitalCapacityRecords());
-        list.sort(new RecordTimeComparator());
-        return list;
+        return getByCategory();
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BREATHING)
     public List<InhalerUsageRecord> getAllInhalerUsageRecords() {
-        return getByMetric(Metric.INHALER_USAGE).parallelStream()
-                .map(InhalerUsageRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.INHALER_USAGE, InhalerUsageRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BREATHING)
+    public List<InhalerUsageRecord> getInhalerUsageRecords(long from, long to) {
+        return getByMetric(Metric.INHALER_USAGE, from, to, InhalerUsageRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BREATHING)
     public List<OxygenSaturationRecord> getAllOxygenSaturationRecords() {
-        return getByMetric(Metric.OXYGEN_SATURATION).parallelStream()
-                .map(OxygenSaturationRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.OXYGEN_SATURATION, OxygenSaturationRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BREATHING)
+    public List<OxygenSaturationRecord> getOxygenSaturationRecords(long from, long to) {
+        return getByMetric(Metric.OXYGEN_SATURATION, from, to, OxygenSaturationRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BREATHING)
     public List<PeakExpiratoryFlowRecord> getAllPeakExpiratoryFlowRecords() {
-        return getByMetric(Metric.PEAK_EXPIRATORY_FLOW).parallelStream()
-                .map(PeakExpiratoryFlowRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.PEAK_EXPIRATORY_FLOW, PeakExpiratoryFlowRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BREATHING)
+    public List<PeakExpiratoryFlowRecord> getPeakExpiratoryFlowRecords(long from, long to) {
+        return getByMetric(Metric.PEAK_EXPIRATORY_FLOW, from, to, PeakExpiratoryFlowRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BREATHING)
     public List<RespiratoryRateRecord> getAllRespiratoryRateRecords() {
-        return getByMetric(Metric.RESPIRATORY_RATE).parallelStream()
-                .map(RespiratoryRateRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.RESPIRATORY_RATE, RespiratoryRateRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BREATHING)
+    public List<RespiratoryRateRecord> getRespiratoryRateRecords(long from, long to) {
+        return getByMetric(Metric.RESPIRATORY_RATE, from, to, RespiratoryRateRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.BREATHING)
     public List<VitalCapacityRecord> getAllVitalCapacityRecords() {
-        return getByMetric(Metric.VITAL_CAPACITY).parallelStream()
-                .map(VitalCapacityRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.VITAL_CAPACITY, VitalCapacityRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.BREATHING)
+    public List<VitalCapacityRecord> getVitalCapacityRecords(long from, long to) {
+        return getByMetric(Metric.VITAL_CAPACITY, from, to, VitalCapacityRecord.class);
     }
 
     @Nullable
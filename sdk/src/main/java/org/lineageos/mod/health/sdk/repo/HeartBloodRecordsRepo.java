@@ -37,11 +37,8 @@ import org.lineageos.mod.health.sdk.model.records.heartblood.PerfusionIndexRecor
 import org.lineageos.mod.health.sdk.model.values.BloodGlucoseValue;
 import org.lineageos.mod.health.sdk.model.values.PressureValue;
 import org.lineageos.mod.health.sdk.util.CcRuntimePermission;
-import org.lineageos.mod.health.sdk.util.RecordTimeComparator;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * HEART_BLOOD records repository.
@@ -103,54 +100,70 @@ public final class HeartBloodRecordsRepo extends RecordsRepo<HeartBloodRecord<?>
     @Override
     @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
     public List<HeartBloodRecord<?>> getAll() {
-        final List<HeartBloodRecord<?>> list = new ArrayList<>();
-        list.addAll(getAllBloodAlcoholConcentrationRecords());
-        list.addAll(getAllBloodPressureRecords());
-        list.addAll(getAllGlucoseRecords());
-        list.addAll(getAllHeartRateRecords());
-        list.addAll(getAllPerfusionIndexRecords());
-        list.sort(new RecordTimeComparator());
-        return list;
+        return getByCategory();
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
     public List<BloodAlcoholConcentrationRecord> getAllBloodAlcoholConcentrationRecords() {
-        return getByMetric(Metric.BLOOD_ALCOHOL_CONCENTRATION).parallelStream()
-                .map(BloodAlcoholConcentrationRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.BLOOD_ALCOHOL_CONCENTRATION,
+                BloodAlcoholConcentrationRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
+    public List<BloodAlcoholConcentrationRecord> getBloodAlcoholConcentrationRecords(
+            long from, long to) {
+        return getByMetric(Metric.BLOOD_ALCOHOL_CONCENTRATION, from, to,
+                BloodAlcoholConcentrationRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
     public List<BloodPressureRecord> getAllBloodPressureRecords() {
-        return getByMetric(Metric.BLOOD_PRESSURE).parallelStream()
-                .map(BloodPressureRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.BLOOD_PRESSURE, BloodPressureRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
+    public List<BloodPressureRecord> getBloodPressureRecords(long from, long to) {
+        return getByMetric(Metric.BLOOD_PRESSURE, from, to, BloodPressureRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
     public List<GlucoseRecord> getAllGlucoseRecords() {
-        return getByMetric(Metric.GLUCOSE).parallelStream()
-                .map(GlucoseRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.GLUCOSE, GlucoseRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
+    public List<GlucoseRecord> getGlucoseRecords(long from, long to) {
+        return getByMetric(Metric.GLUCOSE, from, to, GlucoseRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
     public List<HeartRateRecord> getAllHeartRateRecords() {
-        return getByMetric(Metric.HEART_RATE).parallelStream()
-                .map(HeartRateRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.HEART_RATE, HeartRateRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
+    public List<HeartRateRecord> getHeartRateRecords(long from, long to) {
+        return getByMetric(Metric.HEART_RATE, from, to, HeartRateRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
     public List<PerfusionIndexRecord> getAllPerfusionIndexRecords() {
-        return getByMetric(Metric.PERFUSION_INDEX).parallelStream()
-                .map(PerfusionIndexRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.PERFUSION_INDEX, PerfusionIndexRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.HEART_BLOOD)
+    public List<PerfusionIndexRecord> getPerfusionIndexRecords(long from, long to) {
+        return getByMetric(Metric.PERFUSION_INDEX, from, to, PerfusionIndexRecord.class);
     }
 
     @Nullable
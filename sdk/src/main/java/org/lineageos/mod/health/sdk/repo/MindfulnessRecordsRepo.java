@@ -32,11 +32,8 @@ import org.lineageos.mod.health.sdk.model.records.mindfulness.MindfulnessRecord;
 import org.lineageos.mod.health.sdk.model.records.mindfulness.MoodRecord;
 import org.lineageos.mod.health.sdk.model.records.mindfulness.SleepRecord;
 import org.lineageos.mod.health.sdk.util.CcRuntimePermission;
-import org.lineageos.mod.health.sdk.util.RecordTimeComparator;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Mindfulness records repository.
@@ -94,36 +91,43 @@ public final class MindfulnessRecordsRepo extends RecordsRepo<MindfulnessRecord>
     @Override
     @RequiresPermission(CcRuntimePermission.MINDFULNESS)
     public List<MindfulnessRecord> getAll() {
-        final List<MindfulnessRecord> list = new ArrayList<>();
-        list.addAll(getAllMeditationRecords());
-        list.addAll(getAllMoodRecords());
-        list.addAll(getAllSleepRecords());
-        list.sort(new RecordTimeComparator());
-        return list;
+        return getByCategory();
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.MINDFULNESS)
     public List<MeditationRecord> getAllMeditationRecords() {
-        return getByMetric(Metric.MEDITATION).parallelStream()
-                .map(MeditationRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.MEDITATION, MeditationRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.MINDFULNESS)
+    public List<MeditationRecord> getMeditationRecords(long from, long to) {
+        return getByMetric(Metric.MEDITATION, from, to, MeditationRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.MINDFULNESS)
     public List<MoodRecord> getAllMoodRecords() {
-        return getByMetric(Metric.MOOD).parallelStream()
-                .map(MoodRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.MOOD, MoodRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.MINDFULNESS)
+    public List<MoodRecord> getMoodRecords(long from, long to) {
+        return getByMetric(Metric.MOOD, from, to, MoodRecord.class);
     }
 
     @NonNull
     @RequiresPermission(CcRuntimePermission.MINDFULNESS)
     public List<SleepRecord> getAllSleepRecords() {
-        return getByMetric(Metric.SLEEP).parallelStream()
-                .map(SleepRecord.class::cast)
-                .collect(Collectors.toList());
+        return getByMetric(Metric.SLEEP, SleepRecord.class);
+    }
+
+    @NonNull
+    @RequiresPermission(CcRuntimePermission.MINDFULNESS)
+    public List<SleepRecord> getSleepRecords(long from, long to) {
+        return getByMetric(Metric.SLEEP, from, to, SleepRecord.class);
     }
 
 
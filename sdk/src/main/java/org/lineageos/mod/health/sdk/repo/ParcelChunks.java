@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.repo;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a list of items in consecutive chunks that can each be sent
+ * to the ContentProvider with a single binder transaction.
+ *
+ * @hide
+ */
+final class ParcelChunks {
+
+    /**
+     * Maximum size of the items sent with a single transaction.
+     * The binder buffer (1MB) is shared by all the ongoing transactions of
+     * the process, so a chunk must only use a fraction of it.
+     * A chunk that doesn't fit can't be safely retried, since the transaction
+     * may fail on its reply after the provider has applied it:
+     * keep a wide margin over the size of the items.
+     */
+    static final int MAX_CHUNK_BYTES = 128 * 1024;
+
+    /**
+     * Estimate of what is written for each item besides its own data
+     * (e.g. the class name when items are written in a {@link android.os.Bundle}).
+     */
+    private static final int ITEM_OVERHEAD_BYTES = 128;
+
+    private ParcelChunks() {
+    }
+
+    /**
+     * Split the items measuring the size of each of them once written to a {@link Parcel}.
+     * An item bigger than <code>maxBytes</code> gets its own chunk.
+     *
+     * @return The end index (exclusive) of each chunk, in order
+     */
+    @NonNull
+    static int[] split(@NonNull List<? extends Parcelable> items, int maxBytes) {
+        final int size = items.size();
+        if (size == 0) {
+            return new int[0];
+        }
+
+        final int[] ends = new int[size];
+        int count = 0;
+        int chunkBytes = 0;
+        final Parcel parcel = Parcel.obtain();
+        try {
+            for (int i = 0; i < size; i++) {
+                parcel.setDataSize(0);
+                items.get(i).writeToParcel(parcel, 0);
+                final int itemBytes = parcel.dataSize() + ITEM_OVERHEAD_BYTES;
+
+                if (chunkBytes > 0 && chunkBytes + itemBytes > maxBytes) {
+                    ends[count++] = i;
+                    chunkBytes = 0;
+                }
+                chunkBytes += itemBytes;
+            }
+        } finally {
+            parcel.recycle();
+        }
+        ends[count++] = size;
+        return Arrays.copyOf(ends, count);
+    }
+}
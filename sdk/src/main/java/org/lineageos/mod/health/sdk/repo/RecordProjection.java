@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.repo;
+
+import android.database.Cursor;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+
+import org.lineageos.mod.health.common.db.RecordColumns;
+import org.lineageos.mod.health.sdk.model.records.TimeValue;
+
+/**
+ * Subset of the record columns to be read from the ContentProvider.
+ * <p>
+ * Only the columns of the projection are transferred, and each row
+ * is parsed into a lightweight object instead of a full record.
+ *
+ * @param <P> Type of the projected rows
+ * @see RecordsRepo#getProjected(int, RecordProjection)
+ */
+@Keep
+public abstract class RecordProjection<P> {
+
+    /**
+     * Time and numerical value of the records.
+     *
+     * @see TimeValue
+     */
+    @NonNull
+    public static final RecordProjection<TimeValue> TIME_VALUE =
+            new RecordProjection<TimeValue>(RecordColumns.TIME, RecordColumns.VALUE) {
+                @NonNull
+                @Override
+                protected TimeValue parseRow(@NonNull Cursor cursor) {
+                    return new TimeValue(cursor.getLong(0), cursor.getDouble(1));
+                }
+            };
+
+    @NonNull
+    private final String[] columns;
+
+    /**
+     * @param columns Columns to be read, in the order in which they
+     *                appear in the {@link Cursor} passed to {@link #parseRow(Cursor)}
+     */
+    protected RecordProjection(@NonNull String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * @hide
+     */
+    @NonNull
+    final String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Parse the current row of a cursor whose columns are the ones of this projection.
+     */
+    @NonNull
+    protected abstract P parseRow(@NonNull Cursor cursor);
+}
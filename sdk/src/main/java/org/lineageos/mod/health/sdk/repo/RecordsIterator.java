@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.repo;
+
+import android.database.Cursor;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.lineageos.mod.health.sdk.model.records.Record;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterator that reads the records one by one from the underlying
+ * {@link Cursor} instead of loading all of them in memory.
+ * <p>
+ * The iterator must be closed once it is not needed anymore.
+ * Use it within a try-with-resources statement:
+ * <pre>
+ * try (RecordsIterator&lt;T&gt; it = repo.iterator(metric)) {
+ *     while (it.hasNext()) {
+ *         final T record = it.next();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @see RecordsRepo#iterator(int)
+ */
+@Keep
+public final class RecordsIterator<T extends Record> implements Iterator<T>, Closeable {
+    @Nullable
+    private final Cursor cursor;
+    @NonNull
+    private final Function<Cursor, T> rowParser;
+
+    /**
+     * @hide
+     */
+    RecordsIterator(@Nullable Cursor cursor, @NonNull Function<Cursor, T> rowParser) {
+        this.cursor = cursor;
+        this.rowParser = rowParser;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (cursor == null || cursor.isClosed()) {
+            return false;
+        }
+
+        final int count = cursor.getCount();
+        return count > 0 && cursor.getPosition() < count - 1;
+    }
+
+    @NonNull
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        //noinspection ConstantConditions cursor is not null if hasNext() is true
+        cursor.moveToNext();
+        return rowParser.apply(cursor);
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+}
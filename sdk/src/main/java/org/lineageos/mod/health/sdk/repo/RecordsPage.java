@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.repo;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.lineageos.mod.health.sdk.model.records.Record;
+
+import java.util.List;
+
+/**
+ * A page of records, sorted from the most recent to the oldest.
+ *
+ * @see RecordsRepo#getPage(int, int, String)
+ */
+@Keep
+public final class RecordsPage<T extends Record> {
+    private static final char TOKEN_SEPARATOR = '~';
+    private static final int TOKEN_RADIX = Character.MAX_RADIX;
+
+    @NonNull
+    private final List<T> records;
+    @Nullable
+    private final String continuationToken;
+
+    /**
+     * @hide
+     */
+    RecordsPage(@NonNull List<T> records, @Nullable String continuationToken) {
+        this.records = records;
+        this.continuationToken = continuationToken;
+    }
+
+    @NonNull
+    public List<T> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return Token to be used to obtain the following page, or
+     * null if this is the last page
+     */
+    @Nullable
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    /**
+     * @hide
+     */
+    @NonNull
+    static String encodeToken(long time, long id) {
+        return Long.toString(time, TOKEN_RADIX) + TOKEN_SEPARATOR +
+                Long.toString(id, TOKEN_RADIX);
+    }
+
+    /**
+     * @hide
+     * @return (time, id) position encoded in the token
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    @NonNull
+    static long[] decodeToken(@NonNull String token) {
+        final int separator = token.indexOf(TOKEN_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid continuation token " + token);
+        }
+
+        try {
+            return new long[]{
+                    Long.parseLong(token.substring(0, separator), TOKEN_RADIX),
+                    Long.parseLong(token.substring(separator + 1), TOKEN_RADIX),
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid continuation token " + token, e);
+        }
+    }
+}
@@ -24,7 +24,9 @@ import android.content.ContentValues;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.os.RemoteException;
+import android.os.TransactionTooLargeException;
 import android.util.Log;
 
 import androidx.annotation.CallSuper;
@@ -34,16 +36,30 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import androidx.annotation.VisibleForTesting;
 
+import org.lineageos.mod.health.common.BulkInsert;
+import org.lineageos.mod.health.common.CareCacheUri;
+import org.lineageos.mod.health.common.QueryArgs;
+import org.lineageos.mod.health.common.SampleSeries;
+import org.lineageos.mod.health.common.db.AggregateColumns;
 import org.lineageos.mod.health.common.db.RecordColumns;
+import org.lineageos.mod.health.common.db.SeriesColumns;
+import org.lineageos.mod.health.common.db.SummaryColumns;
+import org.lineageos.mod.health.common.series.SampleCodec;
+import org.lineageos.mod.health.common.validation.RecordConstraints;
 import org.lineageos.mod.health.common.values.AccessPolicyValues;
+import org.lineageos.mod.health.common.values.TimeBucket;
 import org.lineageos.mod.health.common.values.annotations.ActivityMetric;
 import org.lineageos.mod.health.common.values.annotations.MetricType;
+import org.lineageos.mod.health.sdk.model.records.AggregateBucket;
 import org.lineageos.mod.health.sdk.model.records.Record;
+import org.lineageos.mod.health.sdk.model.records.TimeSeries;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Consumer;
 
 /**
  * Base records repo.
@@ -56,6 +72,17 @@ public abstract class RecordsRepo<T extends Record> {
      * @hide
      */
     protected static final String DEFAULT_ORDER = RecordColumns.TIME + " DESC";
+    /**
+     * @hide
+     */
+    protected static final String TIMELINE_ORDER = RecordColumns.TIME + " ASC";
+    private static final String AGGREGATE_PATH = "aggregate";
+    private static final String SUMMARY_PATH = "summary";
+    private static final String SERIES_PATH = "series";
+    /**
+     * @hide
+     */
+    static final String UPSERT_PATH = "upsert";
 
     /**
      * @hide
@@ -68,6 +95,8 @@ public abstract class RecordsRepo<T extends Record> {
     @NonNull
     private final Uri baseUri;
 
+    private volatile boolean groupCommit;
+
     RecordsRepo(@NonNull ContentResolver contentResolver, @NonNull Uri baseUri) {
         this.contentResolver = contentResolver;
         this.baseUri = baseUri;
@@ -76,6 +105,31 @@ public abstract class RecordsRepo<T extends Record> {
     @NonNull
     public abstract List<T> getAll();
 
+    /**
+     * Commit the records inserted with {@link #insert(Record)} and {@link #upsert(Record)}
+     * together with the ones inserted concurrently by other apps.
+     * <p>
+     * This reduces the disk writes of apps that frequently insert single records
+     * (e.g. a sample every second) at the cost of a few milliseconds of latency
+     * for each insertion. Batch operations are not affected.
+     * Disabled by default.
+     */
+    public final void setGroupCommit(boolean enabled) {
+        groupCommit = enabled;
+    }
+
+    /**
+     * Check a record against the constraints enforced by the {@link ContentProvider}
+     * without sending it. Useful to skip the invalid records before a batch operation,
+     * since a single invalid record makes the whole batch fail.
+     *
+     * @return A description of the first invalid value, or null if the record is valid
+     */
+    @Nullable
+    public final String validate(@NonNull T record) {
+        return RecordConstraints.check(record.getMetric(), record.toContentValues());
+    }
+
     /**
      * Insert a record into the {@link ContentProvider}.
      *
@@ -92,7 +146,49 @@ public abstract class RecordsRepo<T extends Record> {
     @CallSuper
     public OperationResult insert(@NonNull T record) {
         final ContentValues contentValues = record.toContentValues();
-        final Uri uri = contentResolver.insert(getUri(record.getMetric()), contentValues);
+        final Uri uri = contentResolver.insert(
+                withGroupCommit(getUri(record.getMetric())), contentValues);
+
+        if (uri == null) {
+            return OperationResult.Failure.INSTANCE;
+        }
+        if (AccessPolicyValues.DENIED_URI.equals(uri)) {
+            return OperationResult.PolicyError.INSTANCE;
+        }
+        try {
+            final Long id = Long.valueOf(uri.getLastPathSegment());
+            return new OperationResult.Success<>(id);
+        } catch (NumberFormatException e) {
+            return OperationResult.Failure.INSTANCE;
+        }
+    }
+
+    /**
+     * Insert a record into the {@link ContentProvider} or update the record with
+     * the same {@link Record#getExternalId() external id} previously inserted by this app.
+     * Sending the same record multiple times does not create duplicates, and an
+     * unchanged record is not written again.
+     *
+     * @param record the record to insert or update. Must have an external id
+     * @return one of: <ul>
+     *     <li>{@link OperationResult.Success} with the record id as value if the operation
+     *         completed successfully</li>
+     *     <li>{@link OperationResult.Failure} if it was not possible to upsert the record.
+     *         Please check the data you're trying to upsert</li>
+     *     <li>{@link OperationResult.PolicyError} if the record upsert was blocked by a
+     *         policy. You may want to notify the user about this issue</li>
+     * </ul>
+     * @throws IllegalArgumentException if the record has no external id
+     */
+    @CallSuper
+    public OperationResult upsert(@NonNull T record) {
+        if (record.getExternalId() == null) {
+            throw new IllegalArgumentException("Cannot upsert a record without an external id");
+        }
+
+        final ContentValues contentValues = record.toContentValues();
+        final Uri uri = contentResolver.insert(
+                withGroupCommit(getUpsertUri(record.getMetric())), contentValues);
 
         if (uri == null) {
             return OperationResult.Failure.INSTANCE;
@@ -159,6 +255,132 @@ public abstract class RecordsRepo<T extends Record> {
         }
     }
 
+    /**
+     * Remove all the records of a metric whose time is within the given interval
+     * from the {@link ContentProvider} with a single operation.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @return one of: <ul>
+     *     <li>{@link OperationResult.Success} with the number of removed records as value
+     *         if the operation completed successfully</li>
+     *     <li>{@link OperationResult.PolicyError} if the records deletion was blocked by a
+     *         policy. You may want to notify the user about this issue</li>
+     * </ul>
+     */
+    @NonNull
+    public final OperationResult deleteByTime(@MetricType int metric, long from, long to) {
+        final Uri uri = getUri(metric).buildUpon()
+                .appendQueryParameter(CareCacheUri.Param.FROM, String.valueOf(from))
+                .appendQueryParameter(CareCacheUri.Param.TO, String.valueOf(to))
+                .build();
+        return deleteMany(uri);
+    }
+
+    /**
+     * Remove the records of a metric with the given ids
+     * from the {@link ContentProvider} with a single operation.
+     *
+     * @return one of: <ul>
+     *     <li>{@link OperationResult.Success} with the number of removed records as value
+     *         if the operation completed successfully</li>
+     *     <li>{@link OperationResult.PolicyError} if the records deletion was blocked by a
+     *         policy. You may want to notify the user about this issue</li>
+     * </ul>
+     */
+    @NonNull
+    public final OperationResult deleteByIds(@MetricType int metric, @NonNull long... ids) {
+        if (ids.length == 0) {
+            return new OperationResult.Success<>(0);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        for (final long id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        final Uri uri = getUri(metric).buildUpon()
+                .appendQueryParameter(CareCacheUri.Param.IDS, sb.toString())
+                .build();
+        return deleteMany(uri);
+    }
+
+    /**
+     * Insert many records into the {@link ContentProvider}. The records are sent in
+     * chunks that fit in a single binder transaction, and each chunk is inserted
+     * with a single database transaction.
+     * This is faster than inserting the records one by one or with
+     * {@link #executeBatch(BatchOperations.Builder)}, and a record that can't be
+     * inserted does not prevent the others from being inserted.
+     *
+     * @param records the records to insert, of any metric of this category
+     * @return the result of each record, in the iteration order of <code>records</code>.
+     *     One of: <ul>
+     *     <li>{@link OperationResult.Success} with the new record id as value if the record
+     *         was inserted successfully</li>
+     *     <li>{@link OperationResult.Failure} if it was not possible to insert the record.
+     *         Please check the data you're trying to insert</li>
+     *     <li>{@link OperationResult.PolicyError} if the record insertion was blocked by a
+     *         policy. You may want to notify the user about this issue</li>
+     * </ul>
+     */
+    @NonNull
+    public final OperationResult[] insertAll(@NonNull Collection<T> records) {
+        final OperationResult[] results = new OperationResult[records.size()];
+        // Default to failure
+        Arrays.fill(results, OperationResult.Failure.INSTANCE);
+        if (results.length == 0) {
+            return results;
+        }
+
+        final List<ContentValues> values = new ArrayList<>(results.length);
+        for (final T record : records) {
+            values.add(record.toContentValues());
+        }
+
+        // Each chunk is inserted with its own transaction
+        int start = 0;
+        for (final int end : ParcelChunks.split(values, ParcelChunks.MAX_CHUNK_BYTES)) {
+            insertAll(values, start, end, results);
+            start = end;
+        }
+        return results;
+    }
+
+    private void insertAll(@NonNull List<ContentValues> values, int start, int end,
+                           @NonNull OperationResult[] results) {
+        final Bundle extras = new Bundle();
+        extras.putParcelableArray(BulkInsert.EXTRA_VALUES,
+                values.subList(start, end).toArray(new ContentValues[0]));
+
+        final Bundle bundle = contentResolver.call(baseUri, BulkInsert.METHOD, null, extras);
+        final long[] ids = bundle == null ? null : bundle.getLongArray(BulkInsert.EXTRA_RESULTS);
+        if (ids == null || ids.length != end - start) {
+            Log.e(TAG, "Error while inserting records");
+            return;
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == BulkInsert.RESULT_DENIED) {
+                results[start + i] = OperationResult.PolicyError.INSTANCE;
+            } else if (ids[i] != BulkInsert.RESULT_FAILURE) {
+                results[start + i] = new OperationResult.Success<>(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * Execute many operations on the records of the {@link ContentProvider}.
+     * <p>
+     * The operations are sent in chunks that fit in a single binder transaction,
+     * and each chunk is executed atomically with its own transaction.
+     * If an operation fails, only the operations of its chunk are reported as failed,
+     * so a large import doesn't need to be split by the caller.
+     *
+     * @return the result of each operation, in the order they were added to the builder
+     */
     @NonNull
     public final OperationResult[] executeBatch(
             @NonNull BatchOperations.Builder<T> builder) {
@@ -169,95 +391,717 @@ public abstract class RecordsRepo<T extends Record> {
         final OperationResult[] results = new OperationResult[operations.size()];
         // Default to failure
         Arrays.fill(results, OperationResult.Failure.INSTANCE);
+
+        // Other writers can proceed between chunks
+        int start = 0;
+        for (final int end : ParcelChunks.split(operations, ParcelChunks.MAX_CHUNK_BYTES)) {
+            applyBatch(operations, start, end, results);
+            start = end;
+        }
+        return results;
+    }
+
+    private void applyBatch(@NonNull List<ContentProviderOperation> operations,
+                            int start, int end, @NonNull OperationResult[] results) {
+        final ArrayList<ContentProviderOperation> chunk =
+                new ArrayList<>(operations.subList(start, end));
         try {
             // Perform operations
-            ContentProviderResult[] cpResults = contentResolver.applyBatch(
-                    baseUri.getAuthority(), operations);
+            final ContentProviderResult[] cpResults = contentResolver.applyBatch(
+                    baseUri.getAuthority(), chunk);
 
             // Convert results to "our" format
             for (int i = 0; i < cpResults.length; i++) {
-                ContentProviderOperation op = operations.get(i);
-                if (op.isInsert()) {
-                    final Uri uri = cpResults[i].uri;
-                    if (uri == null) {
-                        results[i] = OperationResult.Failure.INSTANCE;
-                    } else if (AccessPolicyValues.DENIED_URI.equals(uri)) {
-                        results[i] = OperationResult.PolicyError.INSTANCE;
-                    } else {
-                        final Long id = Long.valueOf(uri.getLastPathSegment());
-                        results[i] = new OperationResult.Success<>(id);
-                    }
-                } else {
-                    final int count = cpResults[i].count;
-                    if (count == AccessPolicyValues.DENIED_COUNT) {
-                        results[i] = OperationResult.PolicyError.INSTANCE;
-                    } else if (count == 1) {
-                        results[i] = new OperationResult.Success<>(1);
-                    } else {
-                        results[i] = OperationResult.Failure.INSTANCE;
-                    }
-                }
+                results[start + i] = toOperationResult(chunk.get(i), cpResults[i]);
             }
+        } catch (TransactionTooLargeException e) {
+            // This may be thrown for the reply, once the provider has committed the chunk:
+            // retrying could apply the operations twice, so report them as failed
+            Log.e(TAG, "Operations too large: " + (end - start), e);
         } catch (OperationApplicationException | RemoteException e) {
             Log.e(TAG, "Error while performing batch operations", e);
         }
+    }
 
-        return results;
+    @NonNull
+    private static OperationResult toOperationResult(@NonNull ContentProviderOperation op,
+                                                     @NonNull ContentProviderResult cpResult) {
+        if (op.isInsert()) {
+            final Uri uri = cpResult.uri;
+            if (uri == null) {
+                return OperationResult.Failure.INSTANCE;
+            } else if (AccessPolicyValues.DENIED_URI.equals(uri)) {
+                return OperationResult.PolicyError.INSTANCE;
+            } else {
+                final Long id = Long.valueOf(uri.getLastPathSegment());
+                return new OperationResult.Success<>(id);
+            }
+        } else {
+            final int count = cpResult.count;
+            if (count == AccessPolicyValues.DENIED_COUNT) {
+                return OperationResult.PolicyError.INSTANCE;
+            } else if (count == 1) {
+                return new OperationResult.Success<>(1);
+            } else {
+                return OperationResult.Failure.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Append samples to the {@link SampleSeries} of a metric.
+     * <p>
+     * The samples are stored compressed in chunks rather than as individual records,
+     * which makes this the most efficient way to store values recorded at a high
+     * frequency, such as the readings of a heart rate sensor. Samples appended in
+     * small groups are merged into the same chunk by the {@link ContentProvider}.
+     *
+     * @param samples the samples to append. Their times must be sorted and not before
+     *                the time of the last sample appended by this app for the metric
+     * @return one of: <ul>
+     *     <li>{@link OperationResult.Success} with the number of appended samples as value
+     *         if the operation completed successfully</li>
+     *     <li>{@link OperationResult.Failure} if the samples are not valid or it was not
+     *         possible to append them. Samples sent before the failure may have
+     *         been appended</li>
+     *     <li>{@link OperationResult.PolicyError} if the operation was blocked by a
+     *         policy. You may want to notify the user about this issue</li>
+     * </ul>
+     */
+    @NonNull
+    public final OperationResult appendSamples(@MetricType int metric,
+                                               @NonNull TimeSeries samples) {
+        final long[] times = samples.getTimes();
+        final double[] values = samples.getValues();
+        if (times.length > 0 && times[0] < 0L) {
+            return OperationResult.Failure.INSTANCE;
+        }
+
+        // Encode everything first, so unsorted samples are rejected before sending any
+        final List<byte[]> chunks = new ArrayList<>();
+        try {
+            for (int start = 0; start < times.length; start += SampleSeries.MAX_CHUNK_SAMPLES) {
+                final int end = Math.min(times.length, start + SampleSeries.MAX_CHUNK_SAMPLES);
+                chunks.add(SampleCodec.encode(times, values, start, end));
+            }
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Invalid samples", e);
+            return OperationResult.Failure.INSTANCE;
+        }
+
+        int appended = 0;
+        for (final byte[] chunk : chunks) {
+            final Bundle extras = new Bundle();
+            extras.putInt(SampleSeries.EXTRA_METRIC, metric);
+            extras.putByteArray(SampleSeries.EXTRA_SAMPLES, chunk);
+
+            final Bundle bundle;
+            try {
+                bundle = contentResolver.call(baseUri, SampleSeries.METHOD_APPEND, null, extras);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "Error while appending samples", e);
+                return OperationResult.Failure.INSTANCE;
+            }
+            if (bundle == null) {
+                return OperationResult.Failure.INSTANCE;
+            }
+
+            final int result = bundle.getInt(SampleSeries.EXTRA_RESULT);
+            if (result == AccessPolicyValues.DENIED_COUNT) {
+                return OperationResult.PolicyError.INSTANCE;
+            }
+            appended += result;
+        }
+        return new OperationResult.Success<>(appended);
+    }
+
+    /**
+     * Get the samples of the {@link SampleSeries} of a metric whose time is within the
+     * given interval as a {@link TimeSeries}, sorted from the oldest to the most recent.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @see #samplesIterator(int, long, long)
+     */
+    @NonNull
+    public final TimeSeries getSamples(@MetricType int metric, long from, long to) {
+        long[] times = new long[0];
+        double[] values = new double[0];
+        int size = 0;
+        try (SamplesIterator it = samplesIterator(metric, from, to)) {
+            while (it.moveToNext()) {
+                if (size == times.length) {
+                    final int capacity = Math.max(SampleSeries.MAX_CHUNK_SAMPLES, size * 2);
+                    times = Arrays.copyOf(times, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                times[size] = it.getTime();
+                values[size] = it.getValue();
+                size++;
+            }
+        }
+        return new TimeSeries(Arrays.copyOf(times, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Obtain an iterator over the samples of the {@link SampleSeries} of a metric whose
+     * time is within the given interval, from the oldest to the most recent.
+     * Only the chunks of samples that overlap the interval are read, and their
+     * samples are decoded as the iterator advances.
+     * The iterator must be closed once it is not needed anymore.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @see SamplesIterator
+     */
+    @NonNull
+    public final SamplesIterator samplesIterator(@MetricType int metric, long from, long to) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        final String[] projection = {SeriesColumns.START_TIME, SeriesColumns.SAMPLES};
+        final Cursor cursor = contentResolver.query(getSeriesUri(metric), projection,
+                queryArgs, null);
+        return new SamplesIterator(cursor, from, to);
+    }
+
+    /**
+     * Remove the samples of the {@link SampleSeries} of a metric whose time is within
+     * the given interval from the {@link ContentProvider} with a single operation.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @return one of: <ul>
+     *     <li>{@link OperationResult.Success} with the number of removed samples as value
+     *         if the operation completed successfully</li>
+     *     <li>{@link OperationResult.PolicyError} if the samples deletion was blocked by a
+     *         policy. You may want to notify the user about this issue</li>
+     * </ul>
+     */
+    @NonNull
+    public final OperationResult deleteSamples(@MetricType int metric, long from, long to) {
+        final Uri uri = getSeriesUri(metric).buildUpon()
+                .appendQueryParameter(CareCacheUri.Param.FROM, String.valueOf(from))
+                .appendQueryParameter(CareCacheUri.Param.TO, String.valueOf(to))
+                .build();
+        return deleteMany(uri);
+    }
+
+    /**
+     * Get the records of all the metrics of this category, sorted from the oldest
+     * to the most recent. The records are obtained with a single query, and the
+     * metrics that can't be read are excluded by the {@link ContentProvider}.
+     *
+     * @hide
+     */
+    @NonNull
+    protected final List<T> getByCategory() {
+        final List<T> list = new ArrayList<>();
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, TIMELINE_ORDER);
+        final Cursor cursor = contentResolver.query(baseUri, null, queryArgs, null);
+        if (cursor == null) {
+            return list;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                list.add(readRow(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return list;
     }
 
     @NonNull
     protected final List<T> getByMetric(@MetricType int metric) {
-        final Uri uri = Uri.withAppendedPath(baseUri, String.valueOf(metric));
-        final Cursor cursor = contentResolver.query(uri, null,
-                null, null, DEFAULT_ORDER);
+        return getByMetric(metric, new Bundle());
+    }
+
+    /**
+     * Get the records of a metric whose time is within the given interval.
+     * The interval is resolved by the {@link ContentProvider}, so only
+     * the matching records are transferred.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     */
+    @NonNull
+    protected final List<T> getByMetric(@MetricType int metric, long from, long to) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        return getByMetric(metric, queryArgs);
+    }
+
+    /**
+     * Get a page of the records of a metric, sorted from the most recent to the oldest.
+     * Each page is obtained with an indexed seek, so it costs the same regardless of
+     * its position in the history.
+     *
+     * @param pageSize Maximum number of records in the page
+     * @param continuationToken {@link RecordsPage#getContinuationToken()} of the previous
+     *                          page or null to obtain the first page
+     */
+    @NonNull
+    public final RecordsPage<T> getPage(@MetricType int metric, int pageSize,
+                                        @Nullable String continuationToken) {
+        return getPage(metric, new Bundle(), pageSize, continuationToken);
+    }
+
+    /**
+     * Get a page of the records of a metric whose time is within the given interval,
+     * sorted from the most recent to the oldest.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @param pageSize Maximum number of records in the page
+     * @param continuationToken {@link RecordsPage#getContinuationToken()} of the previous
+     *                          page or null to obtain the first page
+     * @see #getPage(int, int, String)
+     */
+    @NonNull
+    public final RecordsPage<T> getPage(@MetricType int metric, long from, long to,
+                                        int pageSize, @Nullable String continuationToken) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        return getPage(metric, queryArgs, pageSize, continuationToken);
+    }
+
+    @NonNull
+    private RecordsPage<T> getPage(@MetricType int metric, @NonNull Bundle queryArgs,
+                                   int pageSize, @Nullable String continuationToken) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size " + pageSize);
+        }
+
+        if (continuationToken != null) {
+            final long[] position = RecordsPage.decodeToken(continuationToken);
+            queryArgs.putLong(QueryArgs.SEEK_TIME, position[0]);
+            queryArgs.putLong(QueryArgs.SEEK_ID, position[1]);
+        }
+        // Ask for one more record to know whether there's a following page
+        queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, pageSize + 1);
+
+        final List<T> records = getByMetric(metric, queryArgs);
+        if (records.size() <= pageSize) {
+            return new RecordsPage<>(records, null);
+        }
+
+        records.remove(pageSize);
+        final T last = records.get(pageSize - 1);
+        return new RecordsPage<>(records, RecordsPage.encodeToken(last.getTime(), last.getId()));
+    }
+
+    /**
+     * Get the records of a metric cast to the given type.
+     * The records are cast as they're read from the {@link Cursor},
+     * so no intermediate copy of the result is made.
+     *
+     * @hide
+     */
+    @NonNull
+    protected final <R extends T> List<R> getByMetric(@MetricType int metric,
+                                                      @NonNull Class<R> type) {
+        return getByMetric(metric, new Bundle(), type);
+    }
+
+    /**
+     * @hide
+     * @see #getByMetric(int, long, long)
+     * @see #getByMetric(int, Class)
+     */
+    @NonNull
+    protected final <R extends T> List<R> getByMetric(@MetricType int metric, long from, long to,
+                                                      @NonNull Class<R> type) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        return getByMetric(metric, queryArgs, type);
+    }
+
+    /**
+     * Perform an action on each record of a metric, from the most recent to the oldest.
+     * Records are read from the {@link Cursor} one by one, so only a window of
+     * the result is kept in memory at any time. Prefer this to
+     * {@link #getAll()} when the records don't need to be retained.
+     */
+    public final void forEach(@MetricType int metric, @NonNull Consumer<? super T> action) {
+        forEach(metric, new Bundle(), action);
+    }
+
+    /**
+     * Perform an action on each record of a metric whose time is within the given
+     * interval, from the most recent to the oldest.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @see #forEach(int, Consumer)
+     */
+    public final void forEach(@MetricType int metric, long from, long to,
+                              @NonNull Consumer<? super T> action) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        forEach(metric, queryArgs, action);
+    }
+
+    /**
+     * Obtain an iterator over the records of a metric, from the most recent to the oldest.
+     * Records are read from the {@link Cursor} one by one as the iterator advances.
+     * The iterator must be closed once it is not needed anymore.
+     *
+     * @see RecordsIterator
+     */
+    @NonNull
+    public final RecordsIterator<T> iterator(@MetricType int metric) {
+        return new RecordsIterator<>(query(metric, new Bundle()), this::readRow);
+    }
+
+    /**
+     * Obtain an iterator over the records of a metric whose time is within the given
+     * interval, from the most recent to the oldest.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @see #iterator(int)
+     */
+    @NonNull
+    public final RecordsIterator<T> iterator(@MetricType int metric, long from, long to) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        return new RecordsIterator<>(query(metric, queryArgs), this::readRow);
+    }
+
+    /**
+     * Get only some columns of the records of a metric, from the most recent to the oldest.
+     * The columns that are not part of the projection are not read nor transferred
+     * from the {@link ContentProvider}.
+     *
+     * @param projection Columns to be read, such as {@link RecordProjection#TIME_VALUE}
+     */
+    @NonNull
+    public final <P> List<P> getProjected(@MetricType int metric,
+                                          @NonNull RecordProjection<P> projection) {
+        return getProjected(metric, new Bundle(), projection);
+    }
+
+    /**
+     * Get only some columns of the records of a metric whose time is within the given
+     * interval, from the most recent to the oldest.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @param projection Columns to be read, such as {@link RecordProjection#TIME_VALUE}
+     * @see #getProjected(int, RecordProjection)
+     */
+    @NonNull
+    public final <P> List<P> getProjected(@MetricType int metric, long from, long to,
+                                          @NonNull RecordProjection<P> projection) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        return getProjected(metric, queryArgs, projection);
+    }
+
+    /**
+     * Get the {@link RecordColumns#VALUE} of the records of a metric whose time is within
+     * the given interval as a {@link TimeSeries}, sorted from the oldest to the most recent.
+     *
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @see #getTimeSeries(int, String, long, long)
+     */
+    @NonNull
+    public final TimeSeries getTimeSeries(@MetricType int metric, long from, long to) {
+        return getTimeSeries(metric, RecordColumns.VALUE, from, to);
+    }
+
+    /**
+     * Get a numerical column of the records of a metric whose time is within the given
+     * interval as a {@link TimeSeries}, sorted from the oldest to the most recent.
+     * <p>
+     * The values are copied from the {@link Cursor} directly into primitive arrays,
+     * so no record object is created. Integer columns (such as
+     * {@link RecordColumns#STEPS}) are represented exactly as long as their
+     * values are within &plusmn;2<sup>53</sup>.
+     *
+     * @param column Numerical column to read, such as {@link RecordColumns#VALUE},
+     *               {@link RecordColumns#DURATION} or {@link RecordColumns#STEPS}
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     */
+    @NonNull
+    public final TimeSeries getTimeSeries(@MetricType int metric, @NonNull String column,
+                                          long from, long to) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, TIMELINE_ORDER);
+        final String[] projection = {RecordColumns.TIME, column};
+        final Cursor cursor = contentResolver.query(getUri(metric), projection, queryArgs, null);
+        if (cursor == null) {
+            return new TimeSeries(new long[0], new double[0]);
+        }
+
+        try {
+            final int count = cursor.getCount();
+            final long[] times = new long[count];
+            final double[] values = new double[count];
+            for (int i = 0; i < count && cursor.moveToNext(); i++) {
+                times[i] = cursor.getLong(0);
+                values[i] = cursor.getDouble(1);
+            }
+            return new TimeSeries(times, values);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Get the {@link RecordColumns#VALUE} of the records of a metric whose time is within
+     * the given interval aggregated in buckets, sorted from the oldest to the most recent.
+     *
+     * @param bucket Size of the buckets
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     * @see #getAggregates(int, String, int, long, long)
+     */
+    @NonNull
+    public final List<AggregateBucket> getAggregates(@MetricType int metric,
+                                                     @TimeBucket.Value int bucket,
+                                                     long from, long to) {
+        return getAggregates(metric, RecordColumns.VALUE, bucket, from, to);
+    }
+
+    /**
+     * Get a numerical column of the records of a metric whose time is within the given
+     * interval aggregated in buckets, sorted from the oldest to the most recent.
+     * <p>
+     * The aggregation is performed by the {@link ContentProvider}, so only one row
+     * per bucket is transferred. Buckets without records are omitted.
+     * {@link TimeBucket#UTC_HOUR} and {@link TimeBucket#UTC_DAY} buckets are read from
+     * precomputed aggregates, which makes them the cheapest option for long intervals.
+     *
+     * @param column Numerical column to aggregate, such as {@link RecordColumns#VALUE},
+     *               {@link RecordColumns#DURATION} or {@link RecordColumns#STEPS}
+     * @param bucket Size of the buckets
+     * @param from Lower bound (inclusive) in milliseconds since epoch
+     * @param to Upper bound (exclusive) in milliseconds since epoch
+     */
+    @NonNull
+    public final List<AggregateBucket> getAggregates(@MetricType int metric,
+                                                     @NonNull String column,
+                                                     @TimeBucket.Value int bucket,
+                                                     long from, long to) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putLong(QueryArgs.TIME_FROM, from);
+        queryArgs.putLong(QueryArgs.TIME_TO, to);
+        queryArgs.putInt(QueryArgs.BUCKET, bucket);
+        queryArgs.putString(QueryArgs.AGGREGATE_COLUMN, column);
+
+        final List<AggregateBucket> list = new ArrayList<>();
+        final Uri uri = Uri.withAppendedPath(getUri(metric), AGGREGATE_PATH);
+        final Cursor cursor = contentResolver.query(uri, null, queryArgs, null);
         if (cursor == null) {
-            return new ArrayList<>();
+            return list;
         }
 
         try {
-            return parseCursor(cursor);
+            final int startIndex = cursor.getColumnIndex(AggregateColumns.BUCKET_START);
+            final int countIndex = cursor.getColumnIndex(AggregateColumns.COUNT);
+            final int minIndex = cursor.getColumnIndex(AggregateColumns.MIN);
+            final int maxIndex = cursor.getColumnIndex(AggregateColumns.MAX);
+            final int avgIndex = cursor.getColumnIndex(AggregateColumns.AVG);
+            final int sumIndex = cursor.getColumnIndex(AggregateColumns.SUM);
+            final int lastIndex = cursor.getColumnIndex(AggregateColumns.LAST);
+            while (cursor.moveToNext()) {
+                list.add(new AggregateBucket(
+                        cursor.getLong(startIndex),
+                        cursor.getInt(countIndex),
+                        cursor.getDouble(minIndex),
+                        cursor.getDouble(maxIndex),
+                        cursor.getDouble(avgIndex),
+                        cursor.getDouble(sumIndex),
+                        lastIndex < 0 ? Double.NaN : cursor.getDouble(lastIndex)
+                ));
+            }
         } finally {
             cursor.close();
         }
+        return list;
     }
 
+    /**
+     * Get the most recent record of a metric.
+     * Only one record is read, regardless of the size of the history.
+     *
+     * @return The most recent record or null if there are no records
+     */
     @Nullable
-    protected final T getById(@ActivityMetric int metric, long id) {
-        final Uri uri = getUri(metric, id);
-        final Cursor cursor = contentResolver.query(uri, null, null, null, null);
+    public final T getLatest(@MetricType int metric) {
+        final Bundle queryArgs = new Bundle();
+        queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, 1);
+        final Cursor cursor = query(metric, queryArgs);
         if (cursor == null) {
             return null;
         }
 
         try {
-            return (cursor.moveToFirst() ? parseRow(cursor) : null);
+            return (cursor.moveToFirst() ? readRow(cursor) : null);
         } finally {
             cursor.close();
         }
     }
 
+    /**
+     * Get the summary of the records of a metric: number of records,
+     * time of the oldest record and most recent record.
+     * The summary is maintained by the {@link ContentProvider}, so it
+     * can be obtained without reading the history.
+     */
     @NonNull
-    protected abstract T parseRow(@NonNull Cursor cursor);
+    public final RecordsSummary<T> getSummary(@MetricType int metric) {
+        final Uri uri = Uri.withAppendedPath(getUri(metric), SUMMARY_PATH);
+        final Cursor cursor = contentResolver.query(uri, null, null, null, null);
+        if (cursor == null) {
+            return RecordsSummary.empty();
+        }
+
+        try {
+            if (!cursor.moveToFirst()) {
+                return RecordsSummary.empty();
+            }
+
+            return new RecordsSummary<>(
+                    cursor.getInt(cursor.getColumnIndex(SummaryColumns.SUMMARY_COUNT)),
+                    cursor.getLong(cursor.getColumnIndex(SummaryColumns.SUMMARY_FIRST_TIME)),
+                    readRow(cursor)
+            );
+        } finally {
+            cursor.close();
+        }
+    }
 
     @NonNull
-    private List<T> parseCursor(@NonNull Cursor cursor) {
+    private List<T> getByMetric(@MetricType int metric, @NonNull Bundle queryArgs) {
         final List<T> list = new ArrayList<>();
-        if (!cursor.moveToFirst()) {
+        forEach(metric, queryArgs, list::add);
+        return list;
+    }
+
+    @NonNull
+    private <R extends T> List<R> getByMetric(@MetricType int metric, @NonNull Bundle queryArgs,
+                                              @NonNull Class<R> type) {
+        final List<R> list = new ArrayList<>();
+        forEach(metric, queryArgs, record -> list.add(type.cast(record)));
+        return list;
+    }
+
+    @NonNull
+    private <P> List<P> getProjected(@MetricType int metric, @NonNull Bundle queryArgs,
+                                     @NonNull RecordProjection<P> projection) {
+        final List<P> list = new ArrayList<>();
+        final Cursor cursor = query(metric, projection.getColumns(), queryArgs);
+        if (cursor == null) {
             return list;
         }
 
-        do {
-            list.add(parseRow(cursor));
-        } while (cursor.moveToNext());
+        try {
+            while (cursor.moveToNext()) {
+                list.add(projection.parseRow(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
         return list;
     }
 
+    private void forEach(@MetricType int metric, @NonNull Bundle queryArgs,
+                         @NonNull Consumer<? super T> action) {
+        final Cursor cursor = query(metric, queryArgs);
+        if (cursor == null) {
+            return;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                action.accept(readRow(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Nullable
+    private Cursor query(@MetricType int metric, @NonNull Bundle queryArgs) {
+        return query(metric, null, queryArgs);
+    }
+
+    @Nullable
+    private Cursor query(@MetricType int metric, @Nullable String[] projection,
+                         @NonNull Bundle queryArgs) {
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, DEFAULT_ORDER);
+        return contentResolver.query(getUri(metric), projection, queryArgs, null);
+    }
+
+    @Nullable
+    protected final T getById(@ActivityMetric int metric, long id) {
+        final Uri uri = getUri(metric, id);
+        final Cursor cursor = contentResolver.query(uri, null, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+
+        try {
+            return (cursor.moveToFirst() ? readRow(cursor) : null);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @NonNull
+    protected abstract T parseRow(@NonNull Cursor cursor);
+
+    @NonNull
+    private T readRow(@NonNull Cursor cursor) {
+        final T record = parseRow(cursor);
+        final int externalIdIndex = cursor.getColumnIndex(RecordColumns.EXTERNAL_ID);
+        if (externalIdIndex >= 0) {
+            record.setExternalId(cursor.getString(externalIdIndex));
+        }
+        return record;
+    }
+
     @NonNull
     private Uri getUri(@ActivityMetric int metric) {
         final String path = String.format(Locale.ROOT, "%1$d", metric);
         return Uri.withAppendedPath(baseUri, path);
     }
 
+    @NonNull
+    private Uri getSeriesUri(@MetricType int metric) {
+        return Uri.withAppendedPath(getUri(metric), SERIES_PATH);
+    }
+
+    @NonNull
+    private Uri getUpsertUri(@ActivityMetric int metric) {
+        return Uri.withAppendedPath(getUri(metric), UPSERT_PATH);
+    }
+
+    @NonNull
+    private Uri withGroupCommit(@NonNull Uri uri) {
+        if (!groupCommit) {
+            return uri;
+        }
+        return uri.buildUpon()
+                .appendQueryParameter(CareCacheUri.Param.GROUP_COMMIT, "true")
+                .build();
+    }
+
     @NonNull
     private Uri getUri(@NonNull Record activityRecord) {
         return getUri(activityRecord.getMetric(), activityRecord.getId());
@@ -269,6 +1113,15 @@ public abstract class RecordsRepo<T extends Record> {
         return Uri.withAppendedPath(baseUri, path);
     }
 
+    @NonNull
+    private OperationResult deleteMany(@NonNull Uri uri) {
+        final int result = contentResolver.delete(uri, null, null);
+        if (result == AccessPolicyValues.DENIED_COUNT) {
+            return OperationResult.PolicyError.INSTANCE;
+        }
+        return new OperationResult.Success<>(result);
+    }
+
 
     /* Test only */
 
@@ -278,14 +1131,6 @@ public abstract class RecordsRepo<T extends Record> {
     @RestrictTo(RestrictTo.Scope.TESTS)
     @VisibleForTesting
     public final boolean deleteAll()  {
-        final List<T> records = getAll();
-        final OperationResult[] results = executeBatch(composer ->
-                records.forEach(composer::delete));
-        for (OperationResult result : results) {
-            if (!(result instanceof OperationResult.Success)) {
-                return false;
-            }
-        }
-        return true;
+        return deleteMany(baseUri) instanceof OperationResult.Success;
     }
 }
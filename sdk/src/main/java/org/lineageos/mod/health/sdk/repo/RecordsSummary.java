@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.repo;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.lineageos.mod.health.common.db.SummaryColumns;
+import org.lineageos.mod.health.sdk.model.records.Record;
+
+/**
+ * Summary of the records of a metric.
+ *
+ * @see RecordsRepo#getSummary(int)
+ * @see SummaryColumns
+ */
+@Keep
+public final class RecordsSummary<T extends Record> {
+
+    private final int count;
+    private final long firstTime;
+    @Nullable
+    private final T latest;
+
+    /**
+     * @hide
+     */
+    RecordsSummary(int count, long firstTime, @Nullable T latest) {
+        this.count = count;
+        this.firstTime = firstTime;
+        this.latest = latest;
+    }
+
+    /**
+     * @hide
+     */
+    @NonNull
+    static <T extends Record> RecordsSummary<T> empty() {
+        return new RecordsSummary<>(0, 0L, null);
+    }
+
+    /**
+     * @return Number of records
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Time of the oldest record, or 0 if there are no records
+     */
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    /**
+     * @return Time of the most recent record, or 0 if there are no records
+     */
+    public long getLastTime() {
+        return latest == null ? 0L : latest.getTime();
+    }
+
+    /**
+     * @return The most recent record, or null if there are no records
+     */
+    @Nullable
+    public T getLatest() {
+        return latest;
+    }
+}
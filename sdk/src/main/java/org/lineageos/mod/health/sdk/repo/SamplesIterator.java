@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 The LineageOS Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.lineageos.mod.health.sdk.repo;
+
+import android.database.Cursor;
+
+import androidx.annotation.Keep;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.lineageos.mod.health.common.SampleSeries;
+import org.lineageos.mod.health.common.db.SeriesColumns;
+import org.lineageos.mod.health.common.series.SampleCodec;
+
+import java.io.Closeable;
+import java.util.PriorityQueue;
+
+/**
+ * Iterator over the samples of a {@link SampleSeries}, from the oldest to the most recent.
+ * <p>
+ * The chunks of samples are read one by one from the underlying {@link Cursor} and
+ * their samples are decoded only as the iterator advances, so long intervals
+ * don't need to be loaded in memory. The current sample is read through primitive
+ * getters, so no object is created for each sample.
+ * <p>
+ * The iterator must be closed once it is not needed anymore.
+ * Use it within a try-with-resources statement:
+ * <pre>
+ * try (SamplesIterator it = repo.samplesIterator(metric, from, to)) {
+ *     while (it.moveToNext()) {
+ *         draw(it.getTime(), it.getValue());
+ *     }
+ * }
+ * </pre>
+ *
+ * @see RecordsRepo#samplesIterator(int, long, long)
+ */
+@Keep
+public final class SamplesIterator implements Closeable {
+    @Nullable
+    private final Cursor cursor;
+    private final long from;
+    private final long to;
+    private final int startTimeIndex;
+    private final int samplesIndex;
+
+    /**
+     * Chunks that have been opened and still have samples, by time of their next sample.
+     * Chunks of different apps may overlap, so more than one can be open at once.
+     */
+    @NonNull
+    private final PriorityQueue<ChunkReader> openChunks = new PriorityQueue<>(
+            (a, b) -> Long.compare(a.time, b.time));
+    private boolean hasPendingChunk;
+
+    private long time;
+    private double value;
+
+    /**
+     * @param cursor Chunks of samples sorted by {@link SeriesColumns#START_TIME}
+     * @hide
+     */
+    SamplesIterator(@Nullable Cursor cursor, long from, long to) {
+        this.cursor = cursor;
+        this.from = from;
+        this.to = to;
+        if (cursor == null) {
+            startTimeIndex = -1;
+            samplesIndex = -1;
+        } else {
+            startTimeIndex = cursor.getColumnIndexOrThrow(SeriesColumns.START_TIME);
+            samplesIndex = cursor.getColumnIndexOrThrow(SeriesColumns.SAMPLES);
+        }
+    }
+
+    /**
+     * Move to the next sample.
+     *
+     * @return Whether there is a next sample
+     */
+    public boolean moveToNext() {
+        // Open all the chunks that may contain a sample before the next one of the open chunks
+        //noinspection ConstantConditions cursor is not null if nextChunk() is true
+        while (nextChunk() && (openChunks.isEmpty() ||
+                cursor.getLong(startTimeIndex) <= openChunks.peek().time)) {
+            final ChunkReader reader = new ChunkReader(cursor.getBlob(samplesIndex));
+            hasPendingChunk = false;
+            if (reader.advance()) {
+                openChunks.add(reader);
+            }
+        }
+
+        final ChunkReader reader = openChunks.poll();
+        if (reader == null) {
+            return false;
+        }
+
+        time = reader.time;
+        value = reader.value;
+        if (reader.advance()) {
+            openChunks.add(reader);
+        }
+        return true;
+    }
+
+    /**
+     * @return The time of the current sample in milliseconds since epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return The value of the current sample
+     */
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Move the cursor to the next chunk that has not been opened yet, if needed.
+     *
+     * @return Whether the cursor is on a chunk that has not been opened yet
+     */
+    private boolean nextChunk() {
+        if (!hasPendingChunk && cursor != null && !cursor.isClosed()) {
+            hasPendingChunk = cursor.moveToNext();
+        }
+        return hasPendingChunk;
+    }
+
+    private final class ChunkReader {
+        @NonNull
+        private final SampleCodec.Decoder decoder;
+        private long time;
+        private double value;
+
+        ChunkReader(@NonNull byte[] samples) {
+            decoder = new SampleCodec.Decoder(samples);
+        }
+
+        /**
+         * @return Whether the chunk has another sample within the interval
+         */
+        boolean advance() {
+            while (decoder.hasNext()) {
+                decoder.next();
+                final long sampleTime = decoder.getTime();
+                if (sampleTime >= to) {
+                    return false;
+                } else if (sampleTime >= from) {
+                    time = sampleTime;
+                    value = decoder.getValue();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}